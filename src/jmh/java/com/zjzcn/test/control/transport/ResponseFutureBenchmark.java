@@ -0,0 +1,100 @@
+package com.zjzcn.test.control.transport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResponseFuture的完成和等待开销。
+ * <pre>
+ * 		completeThenGet  响应先到，get直接返回，对应快路径
+ * 		listeners        完成时通知N个listener，对应sendAsync和统计的监听
+ * 		handoff          另一个线程完成，调用线程在get上等待，对应同步send的唤醒延迟
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@State(Scope.Thread)
+public class ResponseFutureBenchmark {
+
+	@State(Scope.Thread)
+	public static class Listeners {
+
+		@Param({"0", "1", "4"})
+		public int count;
+	}
+
+	private Request request;
+	private Response response;
+	private ExecutorService completer;
+
+	@Setup
+	public void setup() {
+		request = new Request();
+		request.setRequestId(RequestId.newLongId());
+		request.setMessageType("/api/robot_status");
+		response = new Response();
+		response.setRequestId(request.getRequestId());
+		response.setData("{}");
+		completer = Executors.newSingleThreadExecutor();
+	}
+
+	@TearDown
+	public void tearDown() {
+		completer.shutdownNow();
+	}
+
+	@Benchmark
+	public Response completeThenGet() {
+		ResponseFuture future = new ResponseFuture(request, 1000);
+		future.onSuccess(response);
+		return future.get();
+	}
+
+	@Benchmark
+	public Response listeners(Listeners listeners, final Blackhole blackhole) {
+		ResponseFuture future = new ResponseFuture(request, 1000);
+		for (int i = 0; i < listeners.count; i++) {
+			future.addListener(new FutureListener() {
+				@Override
+				public void onComplete(ResponseFuture future) {
+					blackhole.consume(future);
+				}
+			});
+		}
+		future.onSuccess(response);
+		return future.get();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Response handoff() {
+		final ResponseFuture future = new ResponseFuture(request, 1000);
+		completer.execute(new Runnable() {
+			@Override
+			public void run() {
+				future.onSuccess(response);
+			}
+		});
+		return future.get();
+	}
+
+}
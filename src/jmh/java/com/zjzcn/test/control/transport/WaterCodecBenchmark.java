@@ -0,0 +1,111 @@
+package com.zjzcn.test.control.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 水务JSON协议的NettyEncoder和NettyDecoder，经过EmbeddedChannel走完整的pipeline。
+ * <pre>
+ * 		payloadSize对编码是参数值的总长度，对解码是一行JSON响应的长度
+ * 		128对应普通命令，1024对应robot_status，16384对应marker列表
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@State(Scope.Thread)
+public class WaterCodecBenchmark {
+
+	private static final int CHUNK_SIZE = 1460;
+
+	@Param({"128", "1024", "16384"})
+	public int payloadSize;
+
+	private EmbeddedChannel encodeChannel;
+	private EmbeddedChannel decodeChannel;
+	private Request request;
+	private ByteBuf responseBytes;
+
+	@Setup
+	public void setup() {
+		encodeChannel = new EmbeddedChannel(new NettyEncoder());
+		decodeChannel = new EmbeddedChannel(new NettyDecoder());
+
+		Map<String, Object> params = new LinkedHashMap<>();
+		params.put("marker", "m1");
+		params.put("max_continuous_retries", 5);
+		params.put("distance_tolerance", 0.5);
+		params.put("data", padding(payloadSize));
+		request = new Request();
+		request.setMessageType("/api/move");
+		request.setAttachments(params);
+
+		String json = "{\"type\":\"response\",\"command\":\"/api/robot_status\",\"uuid\":" + RequestId.newLongId()
+				+ ",\"status\":\"OK\",\"error_message\":\"\",\"results\":{\"data\":\"";
+		String tail = "\"}}\n";
+		json = json + padding(Math.max(0, payloadSize - json.length() - tail.length())) + tail;
+		responseBytes = Unpooled.unreleasableBuffer(Unpooled.directBuffer().writeBytes(json.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@TearDown
+	public void tearDown() {
+		encodeChannel.finishAndReleaseAll();
+		decodeChannel.finishAndReleaseAll();
+	}
+
+	@Benchmark
+	public int encode() {
+		request.setRequestId(RequestId.newLongId());
+		encodeChannel.writeOutbound(request);
+		ByteBuf out = encodeChannel.readOutbound();
+		int length = out.readableBytes();
+		out.release();
+		return length;
+	}
+
+	@Benchmark
+	public Object decode() {
+		decodeChannel.writeInbound(responseBytes.duplicate());
+		return decodeChannel.readInbound();
+	}
+
+	/**
+	 * 按MSS大小分多次到达，大响应在这里才能看出是否重复扫描
+	 */
+	@Benchmark
+	public Object decodeChunked() {
+		ByteBuf bytes = responseBytes.duplicate();
+		while (bytes.isReadable()) {
+			decodeChannel.writeInbound(bytes.readSlice(Math.min(CHUNK_SIZE, bytes.readableBytes())));
+		}
+		return decodeChannel.readInbound();
+	}
+
+	private static String padding(int length) {
+		char[] chars = new char[length];
+		Arrays.fill(chars, 'x');
+		return new String(chars);
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.zjzcn.test.transport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RequestId.newId单线程和多线程争用时的开销，多线程时所有线程竞争同一个AtomicLong
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+public class RequestIdBenchmark {
+
+	@Benchmark
+	@Threads(1)
+	public long newId() {
+		return RequestId.newId();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public long newIdContended() {
+		return RequestId.newId();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public long newWaterId() {
+		return com.zjzcn.test.control.transport.RequestId.newLongId();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public long newWaterIdContended() {
+		return com.zjzcn.test.control.transport.RequestId.newLongId();
+	}
+
+}
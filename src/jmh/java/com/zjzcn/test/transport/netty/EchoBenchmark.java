@@ -0,0 +1,151 @@
+package com.zjzcn.test.transport.netty;
+
+import com.zjzcn.test.transport.Decoder;
+import com.zjzcn.test.transport.Encoder;
+import com.zjzcn.test.transport.Message;
+import com.zjzcn.test.transport.MessageHandler;
+import com.zjzcn.test.transport.Request;
+import com.zjzcn.test.transport.RequestId;
+import com.zjzcn.test.transport.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 本机回环的NettyClient到NettyServer回显。
+ * <pre>
+ * 		echo       同步send，并发度由线程数决定，用 -t 指定
+ * 		pipelined  每个线程保持window个异步请求在途，一次操作是发出一个请求
+ * 		payloadSize和nativeTransport是参数，NIO和epoll可以直接对比
+ * </pre>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@State(Scope.Benchmark)
+public class EchoBenchmark {
+
+	private static final Encoder ENCODER = new Encoder() {
+		@Override
+		public byte[] encode(Message msg) {
+			return (byte[]) msg.getData();
+		}
+	};
+
+	@Param({"128", "1024", "16384"})
+	public int payloadSize;
+
+	@Param({"false", "true"})
+	public boolean nativeTransport;
+
+	private NettyServer server;
+	private NettyClient client;
+	private byte[] payload;
+
+	@Setup
+	public void setup() throws Exception {
+		NettyConfig config = new NettyConfig();
+		config.setNativeTransport(nativeTransport);
+
+		server = new NettyServer(1, 1, ENCODER, new Decoder() {
+			@Override
+			public Message decode(byte[] data) {
+				Request request = new Request();
+				request.setData(data);
+				return request;
+			}
+		}, new MessageHandler() {
+			@Override
+			public Response handleRequest(Request request) {
+				Response response = new Response();
+				response.setRequestId(request.getRequestId());
+				response.setData(request.getData());
+				return response;
+			}
+
+			@Override
+			public void handleResponse(Response response) {
+			}
+		}, config);
+		server.bind("127.0.0.1", 0);
+		int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+
+		client = new NettyClient("127.0.0.1", port, ENCODER, new Decoder() {
+			@Override
+			public Message decode(byte[] data) {
+				Response response = new Response();
+				response.setData(data);
+				return response;
+			}
+		}, config);
+		client.connect();
+		payload = new byte[payloadSize];
+	}
+
+	@TearDown
+	public void tearDown() {
+		client.close();
+		server.close();
+	}
+
+	@State(Scope.Thread)
+	public static class Window {
+
+		@Param({"1", "16", "128"})
+		public int window;
+
+		private Semaphore permits;
+
+		@Setup(Level.Iteration)
+		public void setup() {
+			permits = new Semaphore(window);
+		}
+
+		@TearDown(Level.Iteration)
+		public void drain() throws InterruptedException {
+			// 等在途请求全部返回，不把上一轮的响应算进下一轮
+			permits.acquire(window);
+		}
+	}
+
+	@Benchmark
+	public Response echo() {
+		return client.send(newRequest());
+	}
+
+	@Benchmark
+	public void pipelined(final Window window) throws InterruptedException {
+		window.permits.acquire();
+		client.sendAsync(newRequest()).whenComplete(new BiConsumer<Response, Throwable>() {
+			@Override
+			public void accept(Response response, Throwable t) {
+				window.permits.release();
+			}
+		});
+	}
+
+	private Request newRequest() {
+		Request request = new Request();
+		request.setRequestId(RequestId.newId());
+		request.setData(payload);
+		return request;
+	}
+
+}
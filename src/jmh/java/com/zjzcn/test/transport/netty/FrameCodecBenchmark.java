@@ -0,0 +1,113 @@
+package com.zjzcn.test.transport.netty;
+
+import com.zjzcn.test.transport.Decoder;
+import com.zjzcn.test.transport.Encoder;
+import com.zjzcn.test.transport.Message;
+import com.zjzcn.test.transport.Request;
+import com.zjzcn.test.transport.RequestId;
+import com.zjzcn.test.transport.Response;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分帧协议的NettyFrameEncoder和NettyFrameDecoder，以及不分帧的NettyEncoder和NettyDecoder。
+ * 消息体是原样的byte[]，测的是帧头和pipeline本身的开销。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@State(Scope.Thread)
+public class FrameCodecBenchmark {
+
+	private static final Encoder ENCODER = new Encoder() {
+		@Override
+		public byte[] encode(Message msg) {
+			return (byte[]) msg.getData();
+		}
+	};
+
+	private static final Decoder DECODER = new Decoder() {
+		@Override
+		public Message decode(byte[] data) {
+			Response response = new Response();
+			response.setData(data);
+			return response;
+		}
+	};
+
+	@Param({"128", "1024", "16384"})
+	public int payloadSize;
+
+	private EmbeddedChannel framedChannel;
+	private EmbeddedChannel rawChannel;
+	private Request request;
+	private ByteBuf frame;
+
+	@Setup
+	public void setup() {
+		framedChannel = new EmbeddedChannel(new NettyFrameEncoder(ENCODER), new NettyFrameDecoder(DECODER));
+		rawChannel = new EmbeddedChannel(new NettyEncoder(ENCODER), new NettyDecoder(DECODER));
+
+		request = new Request();
+		request.setRequestId(RequestId.newId());
+		request.setData(new byte[payloadSize]);
+
+		framedChannel.writeOutbound(request);
+		frame = framedChannel.readOutbound();
+	}
+
+	@TearDown
+	public void tearDown() {
+		frame.release();
+		framedChannel.finishAndReleaseAll();
+		rawChannel.finishAndReleaseAll();
+	}
+
+	@Benchmark
+	public int encodeFramed() {
+		return encode(framedChannel);
+	}
+
+	@Benchmark
+	public int encodeRaw() {
+		return encode(rawChannel);
+	}
+
+	@Benchmark
+	public Object decodeFramed() {
+		framedChannel.writeInbound(frame.retainedDuplicate());
+		return framedChannel.readInbound();
+	}
+
+	@Benchmark
+	public Object decodeRaw() {
+		// 不分帧时整个buffer就是消息体
+		rawChannel.writeInbound(frame.retainedSlice(frame.readerIndex() + frame.readableBytes() - payloadSize, payloadSize));
+		return rawChannel.readInbound();
+	}
+
+	private int encode(EmbeddedChannel channel) {
+		channel.writeOutbound(request);
+		ByteBuf out = channel.readOutbound();
+		int length = out.readableBytes();
+		out.release();
+		return length;
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.zjzcn.test.transport.serialization;
+
+import com.alibaba.fastjson.JSON;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * fastjson和AttachmentsSerializer编解码一次attachments的耗时。
+ * <pre>
+ * 		command是move、joy_control、set_current_map三个命令的典型参数
+ * 		binary使用带schema的AttachmentsSerializer，inline使用没有schema的默认Serializer
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@State(Scope.Thread)
+public class SerializerBenchmark {
+
+	private static final AttachmentsSerializer SCHEMA = new AttachmentsSerializer("marker", "map_name", "floor", "linear_velocity", "angular_velocity");
+
+	@Param({"move", "joy_control", "set_current_map"})
+	public String command;
+
+	private Map<String, Object> data;
+
+	@Setup
+	public void setup() {
+		data = new HashMap<>();
+		if ("move".equals(command)) {
+			data.put("marker", "lobby_elevator_3");
+		} else if ("joy_control".equals(command)) {
+			data.put("linear_velocity", 0.35);
+			data.put("angular_velocity", -0.2);
+		} else {
+			data.put("map_name", "hotel_1001");
+			data.put("floor", 12);
+		}
+	}
+
+	@Benchmark
+	public Object json() {
+		byte[] bytes = JSON.toJSONString(data).getBytes(StandardCharsets.UTF_8);
+		return JSON.parseObject(new String(bytes, StandardCharsets.UTF_8));
+	}
+
+	@Benchmark
+	public Object binary() {
+		return roundTrip(SCHEMA);
+	}
+
+	@Benchmark
+	public Object inline() {
+		return roundTrip(SerializerFactory.create(null));
+	}
+
+	private Object roundTrip(Serializer<Map<String, Object>> serializer) {
+		ByteBuf buf = PooledByteBufAllocator.DEFAULT.buffer(64);
+		try {
+			serializer.serialize(data, buf);
+			return serializer.deserialize(buf, null);
+		} finally {
+			buf.release();
+		}
+	}
+
+}
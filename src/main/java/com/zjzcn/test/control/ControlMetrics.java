@@ -0,0 +1,62 @@
+package com.zjzcn.test.control;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 微调过程的统计：控制周期数、网络往返数，每次微调开始时reset
+ */
+public class ControlMetrics {
+
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder roundTrips = new LongAdder();
+    private volatile long startNanos = System.nanoTime();
+
+    public void reset() {
+        ticks.reset();
+        roundTrips.reset();
+        startNanos = System.nanoTime();
+    }
+
+    void recordTick() {
+        ticks.increment();
+    }
+
+    void recordRoundTrip() {
+        roundTrips.increment();
+    }
+
+    public long getTickCount() {
+        return ticks.sum();
+    }
+
+    public long getRoundTripCount() {
+        return roundTrips.sum();
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 从reset开始平均每秒的控制周期数
+     */
+    public double getTicksPerSecond() {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        return elapsedNanos <= 0 ? 0 : getTickCount() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * 平均每个控制周期的网络往返数，包括运动命令
+     */
+    public double getRoundTripsPerTick() {
+        long tickCount = getTickCount();
+        return tickCount == 0 ? 0 : (double) getRoundTripCount() / tickCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ticks=%d, roundTrips=%d, elapsed=%dms, ticksPerSecond=%.1f, roundTripsPerTick=%.2f",
+                getTickCount(), getRoundTripCount(), getElapsedMillis(), getTicksPerSecond(), getRoundTripsPerTick());
+    }
+}
@@ -0,0 +1,75 @@
+package com.zjzcn.test.control;
+
+import com.zjzcn.test.control.waterapi.MarkerTable;
+import com.zjzcn.test.control.waterapi.RobotState;
+
+/**
+ * 一个控制周期用到的全部输入：机器人位姿和目标标记点位姿，不可变。
+ * 每个周期只取一次，周期内的计算都基于同一份数据，见MotionController。
+ */
+public final class ControlSnapshot {
+
+    private final double robotX;
+    private final double robotY;
+    private final double robotTheta;
+    private final double markerX;
+    private final double markerY;
+    private final double markerTheta;
+    private final long stateNanos;
+
+    public ControlSnapshot(double robotX, double robotY, double robotTheta,
+                           double markerX, double markerY, double markerTheta, long stateNanos) {
+        this.robotX = robotX;
+        this.robotY = robotY;
+        this.robotTheta = robotTheta;
+        this.markerX = markerX;
+        this.markerY = markerY;
+        this.markerTheta = markerTheta;
+        this.stateNanos = stateNanos;
+    }
+
+    public static ControlSnapshot of(RobotState robotState, MarkerTable markers, int marker) {
+        return new ControlSnapshot(robotState.getX(), robotState.getY(), robotState.getTheta(),
+                markers.getX(marker), markers.getY(marker), markers.getTheta(marker), robotState.getUpdateNanos());
+    }
+
+    public double getRobotX() {
+        return robotX;
+    }
+
+    public double getRobotY() {
+        return robotY;
+    }
+
+    public double getRobotTheta() {
+        return robotTheta;
+    }
+
+    public double getMarkerX() {
+        return markerX;
+    }
+
+    public double getMarkerY() {
+        return markerY;
+    }
+
+    /**
+     * 标记点朝向，已由四元数换算成弧度
+     */
+    public double getMarkerTheta() {
+        return markerTheta;
+    }
+
+    /**
+     * 机器人状态的更新时间，System.nanoTime()
+     */
+    public long getStateNanos() {
+        return stateNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ControlSnapshot{robot=(" + robotX + ", " + robotY + ", " + robotTheta + "), marker=("
+                + markerX + ", " + markerY + ", " + markerTheta + ")}";
+    }
+}
@@ -0,0 +1,124 @@
+package com.zjzcn.test.control;
+
+/**
+ * 闭环运动控制的参数，速度单位为米/秒和弧度/秒。
+ * <pre>
+ * 		每个控制周期的速度 = 增益 * 误差，再限制在最大速度以内
+ * 		朝向误差大于headingTolerance时只转不走
+ * 		机器人状态超过maxStateAgeMillis没有更新时本周期不发运动命令
+ * </pre>
+ */
+public class MotionConfig {
+
+    private int rateHz = 20;
+    private double linearGain = 1.0;
+    private double angularGain = 1.5;
+    private double maxLinearVelocity = 0.3;
+    private double maxAngularVelocity = 1.0;
+    private double stopDistance = 0.03;
+    private double stopRadians = 0.04;
+    private double headingTolerance = 0.3;
+    private long maxStateAgeMillis = 200;
+    private long commandTimeoutMillis = 500;
+    private long timeoutMillis = 30000;
+
+    public int getRateHz() {
+        return rateHz;
+    }
+
+    public void setRateHz(int rateHz) {
+        this.rateHz = rateHz;
+    }
+
+    public double getLinearGain() {
+        return linearGain;
+    }
+
+    public void setLinearGain(double linearGain) {
+        this.linearGain = linearGain;
+    }
+
+    public double getAngularGain() {
+        return angularGain;
+    }
+
+    public void setAngularGain(double angularGain) {
+        this.angularGain = angularGain;
+    }
+
+    public double getMaxLinearVelocity() {
+        return maxLinearVelocity;
+    }
+
+    public void setMaxLinearVelocity(double maxLinearVelocity) {
+        this.maxLinearVelocity = maxLinearVelocity;
+    }
+
+    public double getMaxAngularVelocity() {
+        return maxAngularVelocity;
+    }
+
+    public void setMaxAngularVelocity(double maxAngularVelocity) {
+        this.maxAngularVelocity = maxAngularVelocity;
+    }
+
+    public double getStopDistance() {
+        return stopDistance;
+    }
+
+    public void setStopDistance(double stopDistance) {
+        this.stopDistance = stopDistance;
+    }
+
+    public double getStopRadians() {
+        return stopRadians;
+    }
+
+    public void setStopRadians(double stopRadians) {
+        this.stopRadians = stopRadians;
+    }
+
+    public double getHeadingTolerance() {
+        return headingTolerance;
+    }
+
+    public void setHeadingTolerance(double headingTolerance) {
+        this.headingTolerance = headingTolerance;
+    }
+
+    public long getMaxStateAgeMillis() {
+        return maxStateAgeMillis;
+    }
+
+    public void setMaxStateAgeMillis(long maxStateAgeMillis) {
+        this.maxStateAgeMillis = maxStateAgeMillis;
+    }
+
+    public long getCommandTimeoutMillis() {
+        return commandTimeoutMillis;
+    }
+
+    public void setCommandTimeoutMillis(long commandTimeoutMillis) {
+        this.commandTimeoutMillis = commandTimeoutMillis;
+    }
+
+    /**
+     * 一次运动的最长时间，超过时停车并以TIMEOUT结束
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "MotionConfig{rateHz=" + rateHz + ", linearGain=" + linearGain + ", angularGain=" + angularGain
+                + ", maxLinearVelocity=" + maxLinearVelocity + ", maxAngularVelocity=" + maxAngularVelocity
+                + ", stopDistance=" + stopDistance + ", stopRadians=" + stopRadians + ", headingTolerance=" + headingTolerance
+                + ", maxStateAgeMillis=" + maxStateAgeMillis + ", timeoutMillis=" + timeoutMillis + "}";
+    }
+
+}
@@ -0,0 +1,288 @@
+package com.zjzcn.test.control;
+
+import com.zjzcn.test.control.transport.WaterResult;
+import com.zjzcn.test.control.waterapi.MarkerTable;
+import com.zjzcn.test.control.waterapi.MathUtils;
+import com.zjzcn.test.control.waterapi.RobotState;
+import com.zjzcn.test.control.waterapi.RobotStatus;
+import com.zjzcn.test.control.waterapi.WaterApi;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 固定频率的闭环运动控制，把机器人移动到标记点的位置和朝向。
+ * <pre>
+ * 		控制循环在单独的调度线程上按MotionConfig.rateHz执行，同一时间只有一个运动
+ * 		每个周期从RobotStateCache读状态，按比例控制计算速度，用joyControlAsync发出，不等待响应
+ * 		状态变旧时（没有订阅推送或推送中断）同时发出一个异步查询，查询结果进入缓存，供后面的周期使用
+ * 		上一个运动命令还没有响应时本周期不再发送，不会在连接上堆积命令
+ * 		先走到距离小于stopDistance，再原地转到朝向误差小于stopRadians，结束时发出停车命令
+ * </pre>
+ */
+public class MotionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(MotionController.class);
+
+    private final WaterApi waterApi;
+    private final MotionConfig config;
+    private final ControlMetrics metrics;
+    private final ScheduledExecutorService scheduler;
+
+    // 只在调度线程上读写
+    private Motion current;
+
+    public MotionController(WaterApi waterApi, MotionConfig config) {
+        this(waterApi, config, new ControlMetrics());
+    }
+
+    public MotionController(WaterApi waterApi, MotionConfig config, ControlMetrics metrics) {
+        if (config.getRateHz() <= 0 || config.getRateHz() > 1000) {
+            throw new IllegalArgumentException("rateHz must be in (0, 1000]: " + config.getRateHz());
+        }
+        this.waterApi = waterApi;
+        this.config = config;
+        this.metrics = metrics;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("motion-controller", true));
+    }
+
+    /**
+     * 标记点从MarkerCache中取
+     */
+    public CompletableFuture<MotionResult> moveTo(String markerName) {
+        MarkerTable markers = waterApi.getMarkerCache().get();
+        return moveTo(markers, markers.require(markerName));
+    }
+
+    /**
+     * 开始新的运动，正在进行的运动以CANCELLED结束；
+     * 返回的future被取消时停车
+     */
+    public CompletableFuture<MotionResult> moveTo(MarkerTable markers, int marker) {
+        final Motion motion = new Motion(markers, marker);
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (current != null) {
+                    current.finish(MotionResult.Status.CANCELLED, null);
+                }
+                current = motion;
+                metrics.reset();
+                long periodMicros = TimeUnit.SECONDS.toMicros(1) / config.getRateHz();
+                motion.task = scheduler.scheduleAtFixedRate(motion, 0, periodMicros, TimeUnit.MICROSECONDS);
+            }
+        });
+        return motion.promise;
+    }
+
+    /**
+     * 停止当前的运动
+     */
+    public void stop() {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                if (current != null) {
+                    current.finish(MotionResult.Status.CANCELLED, null);
+                }
+            }
+        });
+    }
+
+    public void close() {
+        stop();
+        scheduler.shutdown();
+    }
+
+    public MotionConfig getConfig() {
+        return config;
+    }
+
+    public ControlMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void execute(Runnable task) {
+        try {
+            scheduler.execute(task);
+        } catch (RejectedExecutionException e) {
+            // 已经close
+        }
+    }
+
+    private static double clamp(double value, double max) {
+        return Math.max(-max, Math.min(max, value));
+    }
+
+    /**
+     * 一次运动的全部状态，除promise外只在调度线程上访问
+     */
+    private final class Motion implements Runnable {
+
+        private final MarkerTable markers;
+        private final int marker;
+        private final CompletableFuture<MotionResult> promise = new CompletableFuture<>();
+        private final long startNanos = System.nanoTime();
+
+        private ScheduledFuture<?> task;
+        private boolean finished = false;
+        private boolean positioning = true;
+        private boolean commandInFlight = false;
+        private boolean statusInFlight = false;
+        private int ticks;
+        private int steps;
+        private double distanceError = Double.NaN;
+        private double angleError = Double.NaN;
+
+        Motion(MarkerTable markers, int marker) {
+            this.markers = markers;
+            this.marker = marker;
+        }
+
+        @Override
+        public void run() {
+            if (finished) {
+                return;
+            }
+            if (promise.isDone()) {
+                // 调用方取消了future
+                finish(MotionResult.Status.CANCELLED, null);
+                return;
+            }
+            try {
+                tick();
+            } catch (Exception e) {
+                logger.error("Motion control tick error, marker={}", markers.getName(marker), e);
+                finish(MotionResult.Status.FAILED, e);
+            }
+        }
+
+        private void tick() {
+            ticks++;
+            metrics.recordTick();
+            if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) > config.getTimeoutMillis()) {
+                finish(MotionResult.Status.TIMEOUT, null);
+                return;
+            }
+
+            RobotState state = waterApi.getRobotStateCache().get();
+            long periodMillis = Math.max(1, 1000 / config.getRateHz());
+            if (state == null || state.getAgeMillis() > periodMillis) {
+                requestState();
+            }
+            if (state == null || state.getAgeMillis() > config.getMaxStateAgeMillis()) {
+                return;
+            }
+
+            ControlSnapshot snapshot = ControlSnapshot.of(state, markers, marker);
+            distanceError = BaseControl.diffDistance(snapshot);
+            angleError = BaseControl.diffAngleWithMarker(snapshot);
+
+            if (positioning && distanceError <= config.getStopDistance()) {
+                positioning = false;
+            } else if (!positioning && distanceError > config.getStopDistance() * 2) {
+                // 转向时被带离了目标点
+                positioning = true;
+            }
+
+            double linear = 0;
+            double angular;
+            if (positioning) {
+                double heading = BaseControl.diffAngleWithMove(snapshot);
+                double direction = 1;
+                if (Math.abs(heading) > Math.PI / 2) {
+                    // 目标在身后时倒车，少转半圈
+                    heading = MathUtils.turnToAcuteAngle(heading - Math.PI);
+                    direction = -1;
+                }
+                angular = clamp(config.getAngularGain() * heading, config.getMaxAngularVelocity());
+                if (Math.abs(heading) <= config.getHeadingTolerance()) {
+                    linear = direction * clamp(config.getLinearGain() * distanceError, config.getMaxLinearVelocity());
+                }
+            } else {
+                if (Math.abs(angleError) <= config.getStopRadians()) {
+                    finish(MotionResult.Status.CONVERGED, null);
+                    return;
+                }
+                angular = clamp(config.getAngularGain() * angleError, config.getMaxAngularVelocity());
+            }
+            sendCommand(linear, angular);
+        }
+
+        private void requestState() {
+            if (statusInFlight) {
+                return;
+            }
+            statusInFlight = true;
+            metrics.recordRoundTrip();
+            waterApi.queryRobotStatusAsync(config.getCommandTimeoutMillis()).whenComplete(new BiConsumer<RobotStatus, Throwable>() {
+                @Override
+                public void accept(RobotStatus status, Throwable t) {
+                    // 结果已由WaterApi写入RobotStateCache
+                    execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            statusInFlight = false;
+                        }
+                    });
+                }
+            });
+        }
+
+        private void sendCommand(double linear, double angular) {
+            if (commandInFlight) {
+                return;
+            }
+            commandInFlight = true;
+            steps++;
+            metrics.recordRoundTrip();
+            waterApi.joyControlAsync(linear, angular, config.getCommandTimeoutMillis()).whenComplete(new BiConsumer<WaterResult<Object>, Throwable>() {
+                @Override
+                public void accept(WaterResult<Object> result, Throwable t) {
+                    if (t != null) {
+                        logger.warn("Joy control command failed: {}", t.toString());
+                    }
+                    execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            commandInFlight = false;
+                        }
+                    });
+                }
+            });
+        }
+
+        void finish(MotionResult.Status status, Throwable exception) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (task != null) {
+                task.cancel(false);
+            }
+            if (current == this) {
+                current = null;
+            }
+            try {
+                waterApi.joyControlAsync(0, 0, config.getCommandTimeoutMillis());
+            } catch (Exception e) {
+                logger.warn("Stop command failed: {}", e.toString());
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            MotionResult result = new MotionResult(markers.getName(marker), status, elapsedMillis, ticks, steps,
+                    distanceError, angleError, exception);
+            if (promise.complete(result)) {
+                logger.info("Motion finished: {}, {}", result, metrics);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.zjzcn.test.control;
+
+/**
+ * 一次闭环运动的结果
+ */
+public class MotionResult {
+
+    public enum Status {
+        CONVERGED,
+        TIMEOUT,
+        CANCELLED,
+        FAILED
+    }
+
+    private final String markerName;
+    private final Status status;
+    private final long elapsedMillis;
+    private final int ticks;
+    private final int steps;
+    private final double distanceError;
+    private final double angleError;
+    private final Throwable exception;
+
+    public MotionResult(String markerName, Status status, long elapsedMillis, int ticks, int steps,
+                        double distanceError, double angleError, Throwable exception) {
+        this.markerName = markerName;
+        this.status = status;
+        this.elapsedMillis = elapsedMillis;
+        this.ticks = ticks;
+        this.steps = steps;
+        this.distanceError = distanceError;
+        this.angleError = angleError;
+        this.exception = exception;
+    }
+
+    public boolean isConverged() {
+        return status == Status.CONVERGED;
+    }
+
+    public String getMarkerName() {
+        return markerName;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * 从开始到结束的时间，CONVERGED时即收敛时间
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * 执行的控制周期数
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * 发出的运动命令数，不含结束时的停车命令
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * 结束时的距离误差，没有拿到过机器人状态时为NaN
+     */
+    public double getDistanceError() {
+        return distanceError;
+    }
+
+    public double getAngleError() {
+        return angleError;
+    }
+
+    public Throwable getException() {
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return "MotionResult{marker=" + markerName + ", status=" + status + ", elapsed=" + elapsedMillis + "ms, ticks=" + ticks
+                + ", steps=" + steps + ", distanceError=" + distanceError + ", angleError=" + angleError
+                + (exception == null ? "" : ", exception=" + exception) + "}";
+    }
+}
@@ -0,0 +1,36 @@
+package com.zjzcn.test.control;
+
+/**
+ * 移动在超时时间内没有结束，机器人可能仍在移动。
+ * <pre>
+ * 		移动可能来自moveTo也可能来自track，没有对应的请求，所以只带目标和耗时
+ * 		和RequestCancelledException一样不填充堆栈
+ * </pre>
+ */
+public class MoveTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String markerName;
+    private final long costMillis;
+
+    public MoveTimeoutException(String markerName, long costMillis) {
+        super(null, null, false, false);
+        this.markerName = markerName;
+        this.costMillis = costMillis;
+    }
+
+    @Override
+    public String getMessage() {
+        return "Move timeout: marker=" + markerName + ", costTimeMs=" + costMillis;
+    }
+
+    public String getMarkerName() {
+        return markerName;
+    }
+
+    public long getCostMillis() {
+        return costMillis;
+    }
+
+}
@@ -0,0 +1,263 @@
+package com.zjzcn.test.control;
+
+import com.zjzcn.test.control.BaseControl.MoveStatus;
+import com.zjzcn.test.control.transport.JsonFrame;
+import com.zjzcn.test.control.transport.PushListener;
+import com.zjzcn.test.control.transport.WaterResult;
+import com.zjzcn.test.control.waterapi.RobotState;
+import com.zjzcn.test.control.waterapi.RobotStateCache;
+import com.zjzcn.test.control.waterapi.RobotStatus;
+import com.zjzcn.test.control.waterapi.WaterApi;
+import com.zjzcn.test.transport.RequestTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * 跟踪一个机器人上未完成的移动，move_status变为succeeded、failed或canceled时完成对应的future。
+ * <pre>
+ * 		不占用线程：状态来自RobotStateCache的更新，推送和任何地方的查询都会触发检查
+ * 		有未完成的移动且推送的状态不够新时，按pollIntervalMillis低频查询一次，所有移动共用这一个查询
+ * 		收到notification推送时立即查询一次
+ * 		只认移动登记之后得到的状态；moveTo记下发命令前缓存的状态，和它目标、move_status都相同的状态
+ * 		可能是上一次移动留下的，在看到这个目标的其他状态（通常是running）之前不作数
+ * 		机器人转去其他目标时以canceled完成
+ * 		超时以MoveTimeoutException完成，定时任务都在RequestTimer上
+ * </pre>
+ */
+public class MoveTracker implements RobotStateCache.Listener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MoveTracker.class);
+
+    public static final long DEFAULT_POLL_INTERVAL_MS = 1000;
+    public static final long COMMAND_TIMEOUT_MS = 5000;
+
+    private final WaterApi waterApi;
+    private final long pollIntervalMillis;
+
+    private final Set<PendingMove> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pollScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean polling = new AtomicBoolean(false);
+
+    private final PushListener notificationListener = new PushListener() {
+        @Override
+        public void onPush(String topic, JsonFrame frame) {
+            if (!pending.isEmpty()) {
+                poll();
+            }
+        }
+    };
+
+    public MoveTracker(WaterApi waterApi) {
+        this(waterApi, DEFAULT_POLL_INTERVAL_MS);
+    }
+
+    public MoveTracker(WaterApi waterApi, long pollIntervalMillis) {
+        this.waterApi = waterApi;
+        this.pollIntervalMillis = pollIntervalMillis;
+        waterApi.getRobotStateCache().addListener(this);
+        waterApi.getPushDispatcher().subscribe(JsonFrame.TYPE_NOTIFICATION, notificationListener);
+    }
+
+    /**
+     * 发出移动命令，命令被拒绝时以RuntimeException完成
+     *
+     * @param timeoutMillis 小于等于0时不超时
+     */
+    public CompletableFuture<MoveStatus> moveTo(final String markerName, long timeoutMillis) {
+        final PendingMove move = new PendingMove(markerName, timeoutMillis, waterApi.getRobotStateCache().get());
+        waterApi.moveToMarkerAsync(markerName, COMMAND_TIMEOUT_MS).whenComplete(new BiConsumer<WaterResult<Object>, Throwable>() {
+            @Override
+            public void accept(WaterResult<Object> result, Throwable t) {
+                if (t != null) {
+                    move.promise.completeExceptionally(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+                } else if (!result.isOk()) {
+                    move.promise.completeExceptionally(new RuntimeException("Move to marker rejected: " + markerName
+                            + ", error=" + result.getErrorMessage()));
+                } else {
+                    register(move);
+                }
+            }
+        });
+        return move.promise;
+    }
+
+    /**
+     * 不发命令，只等待已经发出的移动结束，登记之后这个目标的状态都认为属于这次移动
+     */
+    public CompletableFuture<MoveStatus> track(String markerName, long timeoutMillis) {
+        PendingMove move = new PendingMove(markerName, timeoutMillis, null);
+        register(move);
+        return move.promise;
+    }
+
+    /**
+     * 未完成的移动全部以取消结束，不影响机器人
+     */
+    public void cancelAll() {
+        for (PendingMove move : pending) {
+            move.promise.cancel(false);
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public void close() {
+        waterApi.getRobotStateCache().removeListener(this);
+        waterApi.getPushDispatcher().unsubscribe(JsonFrame.TYPE_NOTIFICATION, notificationListener);
+        cancelAll();
+    }
+
+    @Override
+    public void onUpdate(RobotState state) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        MoveStatus status = parseStatus(state.getMoveStatus());
+        if (status == null) {
+            return;
+        }
+        for (PendingMove move : pending) {
+            if (state.getUpdateNanos() - move.sinceNanos <= 0) {
+                continue;
+            }
+            if (!move.started && move.isLeftover(state)) {
+                continue;
+            }
+            if (!move.markerName.equals(state.getMoveTarget())) {
+                if (status == MoveStatus.running) {
+                    // 被新的移动命令取代
+                    move.promise.complete(MoveStatus.canceled);
+                }
+                continue;
+            }
+            move.started = true;
+            if (status == MoveStatus.succeeded || status == MoveStatus.failed || status == MoveStatus.canceled) {
+                move.promise.complete(status);
+            }
+        }
+    }
+
+    private static MoveStatus parseStatus(String moveStatus) {
+        if (moveStatus == null) {
+            return null;
+        }
+        try {
+            return MoveStatus.valueOf(moveStatus);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void register(PendingMove move) {
+        move.sinceNanos = System.nanoTime();
+        boolean first = pending.isEmpty();
+        pending.add(move);
+        if (move.promise.isDone()) {
+            // 登记前已经超时或被取消
+            pending.remove(move);
+            return;
+        }
+        if (first) {
+            // 之后登记的移动等下一次定时查询或推送，不各自查询
+            poll();
+        }
+        schedulePoll();
+    }
+
+    /**
+     * 查询结果经RobotStateCache回到onUpdate，同一时间最多一个查询
+     */
+    private void poll() {
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            waterApi.queryRobotStatusAsync(COMMAND_TIMEOUT_MS).whenComplete(new BiConsumer<RobotStatus, Throwable>() {
+                @Override
+                public void accept(RobotStatus status, Throwable t) {
+                    polling.set(false);
+                    if (t != null) {
+                        logger.debug("Move tracker poll failed: {}", t.toString());
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            polling.set(false);
+            logger.debug("Move tracker poll failed: {}", e.toString());
+        }
+    }
+
+    private void schedulePoll() {
+        if (pending.isEmpty() || !pollScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        RequestTimer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                pollScheduled.set(false);
+                if (pending.isEmpty()) {
+                    return;
+                }
+                if (waterApi.getRobotStateCache().getIfFresh(pollIntervalMillis) == null) {
+                    poll();
+                }
+                schedulePoll();
+            }
+        }, pollIntervalMillis);
+    }
+
+    private final class PendingMove {
+
+        private final String markerName;
+        private final CompletableFuture<MoveStatus> promise = new CompletableFuture<>();
+        private final long startNanos = System.nanoTime();
+        private volatile long sinceNanos;
+        // 发命令前缓存的状态，track时为null
+        private final RobotState before;
+        // 已经看到这个目标上和before不同的状态，之后的状态都属于这次移动
+        private volatile boolean started;
+
+        PendingMove(String markerName, long timeoutMillis, RobotState before) {
+            this.markerName = markerName;
+            this.before = before;
+            final Timeout timeoutHandle = timeoutMillis <= 0 ? null : RequestTimer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                    long costMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    promise.completeExceptionally(new MoveTimeoutException(markerName, costMillis));
+                }
+            }, timeoutMillis);
+            promise.whenComplete(new BiConsumer<MoveStatus, Throwable>() {
+                @Override
+                public void accept(MoveStatus status, Throwable t) {
+                    pending.remove(PendingMove.this);
+                    if (timeoutHandle != null) {
+                        timeoutHandle.cancel();
+                    }
+                }
+            });
+        }
+
+        /**
+         * 目标和move_status都和发命令前一样，可能是上一次移动留下的
+         */
+        boolean isLeftover(RobotState state) {
+            return before != null && Objects.equals(before.getMoveTarget(), state.getMoveTarget())
+                    && Objects.equals(before.getMoveStatus(), state.getMoveStatus());
+        }
+    }
+
+}
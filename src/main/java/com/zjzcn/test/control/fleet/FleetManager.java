@@ -0,0 +1,291 @@
+package com.zjzcn.test.control.fleet;
+
+import com.zjzcn.test.control.transport.NettyClient;
+import com.zjzcn.test.control.transport.WaterResult;
+import com.zjzcn.test.control.waterapi.RobotStatus;
+import com.zjzcn.test.control.waterapi.WaterApi;
+import com.zjzcn.test.transport.RequestCancelledException;
+import com.zjzcn.test.transport.RequestTimer;
+import com.zjzcn.test.transport.netty.NettyConfig;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * 同时管理多个机器人的连接，提供批量操作。
+ * <pre>
+ * 		批量操作同时向所有机器人发出异步请求，不按机器人数量串行等待
+ * 		每次操作有一个截止时间，到期时未返回的机器人记为超时，结果不会晚于截止时间太多
+ * 		所有连接共享一个EventLoopGroup（见TransportResources），连接在后台建立，添加机器人不阻塞
+ * 		每个机器人记录最近的成功、失败和延迟，见getHealth
+ * </pre>
+ */
+public class FleetManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetManager.class);
+
+    public static final long DEFAULT_DEADLINE_MS = 200;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 3000;
+
+    private final NettyConfig nettyConfig;
+    private final ConcurrentMap<String, Robot> robots = new ConcurrentHashMap<>();
+
+    public FleetManager() {
+        this(newDefaultConfig());
+    }
+
+    /**
+     * @param nettyConfig 所有机器人连接共用的配置
+     */
+    public FleetManager(NettyConfig nettyConfig) {
+        this.nettyConfig = nettyConfig;
+    }
+
+    public static NettyConfig newDefaultConfig() {
+        NettyConfig config = new NettyConfig();
+        config.setBlockingConnect(false);
+        config.setConnectTimeoutMillis(DEFAULT_CONNECT_TIMEOUT_MS);
+        return config;
+    }
+
+    public void addRobot(String robotId, String serverHost, int serverPort) {
+        NettyClient client = new NettyClient(serverHost, serverPort, null, nettyConfig);
+        addRobot(robotId, new WaterApi(client));
+    }
+
+    public void addRobot(String robotId, WaterApi waterApi) {
+        if (robots.putIfAbsent(robotId, new Robot(robotId, waterApi)) != null) {
+            waterApi.getClient().close();
+            throw new RuntimeException("Robot already exists: " + robotId);
+        }
+    }
+
+    /**
+     * 移除并关闭连接，不存在时返回false
+     */
+    public boolean removeRobot(String robotId) {
+        Robot robot = robots.remove(robotId);
+        if (robot == null) {
+            return false;
+        }
+        robot.waterApi.getClient().close();
+        return true;
+    }
+
+    public WaterApi getWaterApi(String robotId) {
+        Robot robot = robots.get(robotId);
+        return robot == null ? null : robot.waterApi;
+    }
+
+    public List<String> getRobotIds() {
+        return new ArrayList<>(robots.keySet());
+    }
+
+    public int size() {
+        return robots.size();
+    }
+
+    public FleetResult<RobotStatus> statusAll() {
+        return statusAll(DEFAULT_DEADLINE_MS);
+    }
+
+    public FleetResult<RobotStatus> statusAll(long deadlineMillis) {
+        return statusAsync(getRobotIds(), deadlineMillis).join();
+    }
+
+    public CompletableFuture<FleetResult<RobotStatus>> statusAsync(Collection<String> robotIds, long deadlineMillis) {
+        return fanOut(robotIds, deadlineMillis, new RobotCall<RobotStatus>() {
+            @Override
+            public CompletableFuture<RobotStatus> call(String robotId, WaterApi waterApi, long timeoutMillis) {
+                return waterApi.queryRobotStatusAsync(timeoutMillis);
+            }
+        });
+    }
+
+    /**
+     * @param targets 机器人到目标标记点，结果只表示命令是否被接受
+     */
+    public FleetResult<WaterResult<Object>> moveToMarkers(Map<String, String> targets, long deadlineMillis) {
+        return moveToMarkersAsync(targets, deadlineMillis).join();
+    }
+
+    public CompletableFuture<FleetResult<WaterResult<Object>>> moveToMarkersAsync(final Map<String, String> targets, long deadlineMillis) {
+        return fanOut(targets.keySet(), deadlineMillis, new RobotCall<WaterResult<Object>>() {
+            @Override
+            public CompletableFuture<WaterResult<Object>> call(String robotId, WaterApi waterApi, long timeoutMillis) {
+                return waterApi.moveToMarkerAsync(targets.get(robotId), timeoutMillis);
+            }
+        });
+    }
+
+    /**
+     * 按机器人id排序
+     */
+    public Map<String, RobotHealth> getHealth() {
+        Map<String, RobotHealth> health = new TreeMap<>();
+        for (Robot robot : robots.values()) {
+            health.put(robot.robotId, robot.snapshot());
+        }
+        return health;
+    }
+
+    public void close() {
+        for (String robotId : getRobotIds()) {
+            removeRobot(robotId);
+        }
+        logger.info("Fleet manager closed.");
+    }
+
+    private <T> CompletableFuture<FleetResult<T>> fanOut(Collection<String> robotIds, long deadlineMillis, RobotCall<T> call) {
+        final FleetCall<T> fleetCall = new FleetCall<>(new ArrayList<>(new LinkedHashSet<>(robotIds)));
+        fleetCall.armDeadline(deadlineMillis);
+        for (final String robotId : fleetCall.robotIds) {
+            final Robot robot = robots.get(robotId);
+            if (robot == null) {
+                fleetCall.complete(robotId, null, new RuntimeException("Unknown robot: " + robotId), 0);
+                continue;
+            }
+
+            final long start = System.nanoTime();
+            CompletableFuture<T> future;
+            try {
+                future = call.call(robotId, robot.waterApi, deadlineMillis);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete(new BiConsumer<T, Throwable>() {
+                @Override
+                public void accept(T value, Throwable t) {
+                    long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                    robot.record(cause, latencyMillis);
+                    fleetCall.complete(robotId, value, cause, latencyMillis);
+                }
+            });
+        }
+        return fleetCall.promise;
+    }
+
+    private interface RobotCall<T> {
+
+        CompletableFuture<T> call(String robotId, WaterApi waterApi, long timeoutMillis);
+    }
+
+    /**
+     * 汇总一次批量操作，全部返回或截止时间到时完成，只完成一次
+     */
+    private static final class FleetCall<T> {
+
+        private final List<String> robotIds;
+        private final ConcurrentMap<String, FleetResult.RobotResult<T>> results = new ConcurrentHashMap<>();
+        private final AtomicInteger remaining;
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        private final CompletableFuture<FleetResult<T>> promise = new CompletableFuture<>();
+        private final long startNanos = System.nanoTime();
+        private volatile Timeout deadlineHandle;
+
+        FleetCall(List<String> robotIds) {
+            this.robotIds = robotIds;
+            this.remaining = new AtomicInteger(robotIds.size());
+        }
+
+        void armDeadline(long deadlineMillis) {
+            if (robotIds.isEmpty()) {
+                finish();
+                return;
+            }
+            deadlineHandle = RequestTimer.newTimeout(new TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                    finish();
+                }
+            }, deadlineMillis);
+        }
+
+        void complete(String robotId, T value, Throwable exception, long latencyMillis) {
+            if (finished.get()) {
+                return;
+            }
+            results.put(robotId, new FleetResult.RobotResult<>(robotId, value, exception, latencyMillis));
+            if (remaining.decrementAndGet() == 0) {
+                finish();
+            }
+        }
+
+        private void finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            Timeout handle = deadlineHandle;
+            if (handle != null) {
+                handle.cancel();
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            Map<String, FleetResult.RobotResult<T>> ordered = new LinkedHashMap<>();
+            for (String robotId : robotIds) {
+                FleetResult.RobotResult<T> result = results.get(robotId);
+                if (result == null) {
+                    result = new FleetResult.RobotResult<>(robotId, null,
+                            new RequestCancelledException(RequestCancelledException.TIMEOUT, 0, elapsedMillis), elapsedMillis);
+                }
+                ordered.put(robotId, result);
+            }
+            promise.complete(new FleetResult<>(ordered, elapsedMillis));
+        }
+    }
+
+    private static final class Robot {
+
+        private final String robotId;
+        private final WaterApi waterApi;
+
+        private long successCount;
+        private long failureCount;
+        private int consecutiveFailures;
+        private long lastLatencyMillis;
+        private long lastSuccessTime;
+        private String lastError;
+
+        Robot(String robotId, WaterApi waterApi) {
+            this.robotId = robotId;
+            this.waterApi = waterApi;
+        }
+
+        synchronized void record(Throwable exception, long latencyMillis) {
+            lastLatencyMillis = latencyMillis;
+            if (exception == null) {
+                successCount++;
+                consecutiveFailures = 0;
+                lastSuccessTime = System.currentTimeMillis();
+            } else {
+                failureCount++;
+                consecutiveFailures++;
+                lastError = exception.toString();
+            }
+        }
+
+        synchronized RobotHealth snapshot() {
+            return new RobotHealth(robotId, waterApi.getClient().isConnected(), successCount, failureCount,
+                    consecutiveFailures, lastLatencyMillis, lastSuccessTime, lastError);
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.zjzcn.test.control.fleet;
+
+import com.zjzcn.test.transport.RequestCancelledException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次批量操作的结果，每个机器人一项，顺序和请求时的机器人顺序相同
+ */
+public class FleetResult<T> {
+
+    private final Map<String, RobotResult<T>> results;
+    private final long elapsedMillis;
+
+    FleetResult(Map<String, RobotResult<T>> results, long elapsedMillis) {
+        this.results = Collections.unmodifiableMap(results);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public RobotResult<T> get(String robotId) {
+        return results.get(robotId);
+    }
+
+    public Map<String, RobotResult<T>> getResults() {
+        return results;
+    }
+
+    /**
+     * 成功的机器人和对应的值
+     */
+    public Map<String, T> getValues() {
+        Map<String, T> values = new LinkedHashMap<>();
+        for (RobotResult<T> result : results.values()) {
+            if (result.isSuccess()) {
+                values.put(result.getRobotId(), result.getValue());
+            }
+        }
+        return values;
+    }
+
+    public List<String> getFailedRobotIds() {
+        List<String> failed = new ArrayList<>();
+        for (RobotResult<T> result : results.values()) {
+            if (!result.isSuccess()) {
+                failed.add(result.getRobotId());
+            }
+        }
+        return failed;
+    }
+
+    public int getSuccessCount() {
+        return results.size() - getFailedRobotIds().size();
+    }
+
+    public boolean isAllSuccess() {
+        return getFailedRobotIds().isEmpty();
+    }
+
+    /**
+     * 从发出到结果汇总完成的时间，不超过截止时间太多
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public static class RobotResult<T> {
+
+        private final String robotId;
+        private final T value;
+        private final Throwable exception;
+        private final long latencyMillis;
+
+        RobotResult(String robotId, T value, Throwable exception, long latencyMillis) {
+            this.robotId = robotId;
+            this.value = value;
+            this.exception = exception;
+            this.latencyMillis = latencyMillis;
+        }
+
+        public String getRobotId() {
+            return robotId;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public Throwable getException() {
+            return exception;
+        }
+
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        public boolean isSuccess() {
+            return exception == null;
+        }
+
+        public boolean isTimeout() {
+            return exception instanceof RequestCancelledException && ((RequestCancelledException) exception).isTimeout();
+        }
+
+        @Override
+        public String toString() {
+            return isSuccess() ? robotId + "=" + value : robotId + " failed: " + exception;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.zjzcn.test.control.fleet;
+
+/**
+ * 单个机器人的健康状况快照，由FleetManager.getHealth生成
+ */
+public class RobotHealth {
+
+    private final String robotId;
+    private final boolean connected;
+    private final long successCount;
+    private final long failureCount;
+    private final int consecutiveFailures;
+    private final long lastLatencyMillis;
+    private final long lastSuccessTime;
+    private final String lastError;
+
+    public RobotHealth(String robotId, boolean connected, long successCount, long failureCount,
+                       int consecutiveFailures, long lastLatencyMillis, long lastSuccessTime, String lastError) {
+        this.robotId = robotId;
+        this.connected = connected;
+        this.successCount = successCount;
+        this.failureCount = failureCount;
+        this.consecutiveFailures = consecutiveFailures;
+        this.lastLatencyMillis = lastLatencyMillis;
+        this.lastSuccessTime = lastSuccessTime;
+        this.lastError = lastError;
+    }
+
+    /**
+     * 连接正常并且最近一次请求没有失败
+     */
+    public boolean isHealthy() {
+        return connected && consecutiveFailures == 0;
+    }
+
+    public String getRobotId() {
+        return robotId;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getSuccessCount() {
+        return successCount;
+    }
+
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public long getLastLatencyMillis() {
+        return lastLatencyMillis;
+    }
+
+    /**
+     * 最近一次成功的时间戳，从未成功时为0
+     */
+    public long getLastSuccessTime() {
+        return lastSuccessTime;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public String toString() {
+        return "RobotHealth{robotId=" + robotId + ", connected=" + connected + ", success=" + successCount
+                + ", failure=" + failureCount + ", consecutiveFailures=" + consecutiveFailures
+                + ", lastLatencyMs=" + lastLatencyMillis + ", lastError=" + lastError + "}";
+    }
+
+}
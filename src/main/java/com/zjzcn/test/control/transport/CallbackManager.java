@@ -1,62 +1,57 @@
 package com.zjzcn.test.control.transport;
 
+import com.zjzcn.test.transport.ConcurrentLongMap;
+import com.zjzcn.test.transport.RequestTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
 
-public class CallbackManager {
 
-    private static Logger logger = LoggerFactory.getLogger(NettyClient.class);
+public class CallbackManager {
 
-    public static final int CLIENT_MAX_REQUEST = 2000;
-    public static final int TIMEOUT_CHECK_MS = 100;
+    private static Logger logger = LoggerFactory.getLogger(CallbackManager.class);
 
-    // 回收过期任务
-    private static ScheduledExecutorService requestTimeoutExecutor = Executors.newScheduledThreadPool(2);
     // 异步的request，需要注册callback future
-    // 触发remove的操作有： 1) service的返回结果处理。 2) timeout thread cancel
-    private ConcurrentMap<String, ResponseFuture> callbacks = new ConcurrentHashMap<>();
-    private ScheduledFuture<?> requestTimeoutFuture = null;
+    // 触发remove的操作有： 1) service的返回结果处理。 2) 时间轮上的超时任务
+    private ConcurrentLongMap<ResponseFuture> callbacks = new ConcurrentLongMap<>();
 
-    public CallbackManager() {
-        requestTimeoutFuture = requestTimeoutExecutor.scheduleWithFixedDelay( new Runnable() {
+    public void registerCallback(final long requestId, ResponseFuture responseFuture) {
+        callbacks.put(requestId, responseFuture);
+
+        // 完成时由ResponseFuture取消超时任务
+        responseFuture.setTimeoutHandle(RequestTimer.newTimeout(new TimerTask() {
             @Override
-            public void run() {
-                long currentTime = System.currentTimeMillis();
-                for (String requestId : callbacks.keySet()) {
-                    try {
-                        ResponseFuture future = callbacks.get(requestId);
-                        if (future.getCreateTime() + future.getTimeoutMillis() < currentTime) {
-                            removeCallback(requestId);
-                            future.cancel();
-                        }
-                    } catch (Exception e) {
-                        logger.error("Client clear timeout future, requestId=" + requestId, e);
-                    }
+            public void run(Timeout timeout) {
+                ResponseFuture future = removeCallback(requestId);
+                if (future != null) {
+                    logger.debug("Client request timeout, requestId={}", requestId);
+                    future.cancel();
                 }
             }
-        }, TIMEOUT_CHECK_MS, TIMEOUT_CHECK_MS, TimeUnit.MILLISECONDS);
+        }, responseFuture.getTimeoutMillis()));
     }
 
-    public void registerCallback(String requestId, ResponseFuture nettyResponseFuture) {
-        if (callbacks.size() >= CLIENT_MAX_REQUEST) {
-            throw new RuntimeException("Client over max concurrent request, drop request, requestId=" + requestId);
-        }
-        callbacks.put(requestId, nettyResponseFuture);
+    public ResponseFuture removeCallback(long requestId) {
+        return callbacks.remove(requestId);
     }
 
-    public ResponseFuture removeCallback(String requestId) {
-        return callbacks.remove(requestId);
+    public int getCallbackCount() {
+        return callbacks.size();
     }
 
-    public void cancelTimeoutChecker() {
-        requestTimeoutFuture.cancel(true);
+    /**
+     * 连接断开时让所有未完成的请求立即失败，不必等到超时
+     * @return 失败的请求数
+     */
+    public int failAll(Exception cause) {
+        List<ResponseFuture> futures = callbacks.drain();
+        for (ResponseFuture future : futures) {
+            future.onFailure(cause);
+        }
+        return futures.size();
     }
 
     public void clearCallback() {
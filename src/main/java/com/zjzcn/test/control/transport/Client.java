@@ -2,6 +2,7 @@ package com.zjzcn.test.control.transport;
 
 
 import java.net.SocketAddress;
+import java.util.concurrent.CompletableFuture;
 
 public interface Client {
 
@@ -19,4 +20,11 @@ public interface Client {
 
     Response send(Request req, long timeoutMillis);
 
+    /**
+     * 异步发送，不阻塞调用线程，结果在IO线程中完成
+     */
+    CompletableFuture<Response> sendAsync(Request req);
+
+    CompletableFuture<Response> sendAsync(Request req, long timeoutMillis);
+
 }
@@ -0,0 +1,232 @@
+package com.zjzcn.test.control.transport;
+
+import com.zjzcn.test.transport.RequestCancelledException;
+
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * 合并相同的幂等请求：messageType在配置中且参数相同的请求，如果已经有一个在途，
+ * 就挂在它上面等结果，不再发新的请求。
+ * <pre>
+ * 		只合并同时在途的请求，结果返回后就从表里移除，不做缓存
+ * 		所有等待者拿到的是同一个Response对象，调用方不能修改它
+ * 		跟随者各自取消或超时不影响在途的请求
+ * </pre>
+ */
+public class CoalescingClient implements Client {
+
+    private final Client client;
+    private final Set<String> idempotentTypes;
+
+    private final ConcurrentMap<Key, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+
+    public CoalescingClient(Client client, String... idempotentTypes) {
+        this.client = client;
+        this.idempotentTypes = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(idempotentTypes)));
+    }
+
+    @Override
+    public void reconnect() {
+        client.reconnect();
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return client.getLocalAddress();
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return client.getRemoteAddress();
+    }
+
+    @Override
+    public Response send(Request req) {
+        if (!isIdempotent(req)) {
+            return client.send(req);
+        }
+        return await(coalesce(req, -1), req, -1);
+    }
+
+    @Override
+    public Response send(Request req, long timeoutMillis) {
+        if (!isIdempotent(req)) {
+            return client.send(req, timeoutMillis);
+        }
+        return await(coalesce(req, timeoutMillis), req, timeoutMillis);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(Request req) {
+        if (!isIdempotent(req)) {
+            return client.sendAsync(req);
+        }
+        return follow(coalesce(req, -1));
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(Request req, long timeoutMillis) {
+        if (!isIdempotent(req)) {
+            return client.sendAsync(req, timeoutMillis);
+        }
+        return follow(coalesce(req, timeoutMillis));
+    }
+
+    public Set<String> getIdempotentTypes() {
+        return idempotentTypes;
+    }
+
+    /**
+     * 实际发出的幂等请求数
+     */
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    /**
+     * 挂在在途请求上、没有发出的请求数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    public Client getClient() {
+        return client;
+    }
+
+    private boolean isIdempotent(Request req) {
+        return req.getMessageType() != null && idempotentTypes.contains(req.getMessageType());
+    }
+
+    /**
+     * @param timeoutMillis 小于0时使用被包装客户端的默认超时
+     */
+    private CompletableFuture<Response> coalesce(Request req, long timeoutMillis) {
+        final Key key = new Key(req.getMessageType(), req.getAttachments());
+        CompletableFuture<Response> existing = inFlight.get(key);
+        if (existing != null) {
+            coalescedCount.increment();
+            return existing;
+        }
+
+        final CompletableFuture<Response> shared = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            coalescedCount.increment();
+            return existing;
+        }
+
+        sentCount.increment();
+        CompletableFuture<Response> sent;
+        try {
+            sent = timeoutMillis < 0 ? client.sendAsync(req) : client.sendAsync(req, timeoutMillis);
+        } catch (RuntimeException e) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+            return shared;
+        }
+        sent.whenComplete(new BiConsumer<Response, Throwable>() {
+            @Override
+            public void accept(Response response, Throwable t) {
+                // 先移除再完成，等待者的回调里再发请求时不会拿到已完成的future
+                inFlight.remove(key, shared);
+                if (t != null) {
+                    shared.completeExceptionally(t);
+                } else {
+                    shared.complete(response);
+                }
+            }
+        });
+        return shared;
+    }
+
+    /**
+     * 每个调用方拿到独立的future，取消只影响自己
+     */
+    private static CompletableFuture<Response> follow(CompletableFuture<Response> shared) {
+        final CompletableFuture<Response> own = new CompletableFuture<>();
+        shared.whenComplete(new BiConsumer<Response, Throwable>() {
+            @Override
+            public void accept(Response response, Throwable t) {
+                if (t != null) {
+                    own.completeExceptionally(t);
+                } else {
+                    own.complete(response);
+                }
+            }
+        });
+        return own;
+    }
+
+    private static Response await(CompletableFuture<Response> shared, Request req, long timeoutMillis) {
+        try {
+            return timeoutMillis < 0 ? shared.get() : shared.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RequestCancelledException(RequestCancelledException.TIMEOUT, req.getRequestId(), timeoutMillis);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestCancelledException(RequestCancelledException.INTERRUPTED, req.getRequestId(), 0);
+        }
+    }
+
+    private static final class Key {
+
+        private final String messageType;
+        private final Map<String, Object> attachments;
+        private final int hash;
+
+        Key(String messageType, Map<String, Object> attachments) {
+            this.messageType = messageType;
+            this.attachments = attachments == null || attachments.isEmpty() ? null : attachments;
+            this.hash = 31 * messageType.hashCode() + Objects.hashCode(this.attachments);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && messageType.equals(other.messageType) && Objects.equals(attachments, other.attachments);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
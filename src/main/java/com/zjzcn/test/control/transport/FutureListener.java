@@ -0,0 +1,10 @@
+package com.zjzcn.test.control.transport;
+
+public interface FutureListener {
+
+    /**
+     * future完成或被取消时调用
+     */
+    void onComplete(ResponseFuture future);
+
+}
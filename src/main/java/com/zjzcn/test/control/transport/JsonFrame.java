@@ -0,0 +1,306 @@
+package com.zjzcn.test.control.transport;
+
+import com.alibaba.fastjson.JSON;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 水务协议的一帧JSON，保存原始的UTF-8字节。
+ * <pre>
+ * 		解码时只扫描顶层的type、uuid和topic用于路由，不做完整解析，只有topic会生成String
+ * 		其余内容在第一次读取时才直接从字节解析，结果缓存，同一帧不会解析第二次
+ * 		一帧可能被多个调用方共享（见CoalescingClient），解析出的对象不能修改
+ * </pre>
+ */
+public class JsonFrame {
+
+    public static final String TYPE_RESPONSE = "response";
+    public static final String TYPE_NOTIFICATION = "notification";
+    public static final String TYPE_CALLBACK = "callback";
+
+    private static final byte[] KEY_TYPE = "type".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_UUID = "uuid".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_TOPIC = "topic".getBytes(StandardCharsets.US_ASCII);
+    private static final String[] KNOWN_TYPES = {TYPE_RESPONSE, TYPE_NOTIFICATION, TYPE_CALLBACK};
+
+    private final byte[] bytes;
+    private final String type;
+    private final long uuid;
+    private final String topic;
+
+    private volatile String text;
+    private volatile Parsed parsed;
+
+    private JsonFrame(byte[] bytes, String type, long uuid, String topic) {
+        this.bytes = bytes;
+        this.type = type;
+        this.uuid = uuid;
+        this.topic = topic;
+    }
+
+    /**
+     * 扫描路由字段并复制帧的字节，frame的readerIndex不变
+     */
+    public static JsonFrame scan(ByteBuf frame) {
+        Scanner scanner = new Scanner(frame);
+        scanner.scan();
+        byte[] bytes = new byte[frame.readableBytes()];
+        frame.getBytes(frame.readerIndex(), bytes);
+        return new JsonFrame(bytes, scanner.type, scanner.uuid, scanner.topic);
+    }
+
+    public static JsonFrame wrap(byte[] bytes) {
+        Scanner scanner = new Scanner(Unpooled.wrappedBuffer(bytes));
+        scanner.scan();
+        return new JsonFrame(bytes, scanner.type, scanner.uuid, scanner.topic);
+    }
+
+    /**
+     * 顶层的type字段，不是已知类型时为null
+     */
+    public String getType() {
+        return type;
+    }
+
+    public boolean isResponse() {
+        return TYPE_RESPONSE.equals(type);
+    }
+
+    /**
+     * 顶层的uuid字段，没有时为0
+     */
+    public long getUuid() {
+        return uuid;
+    }
+
+    /**
+     * 推送帧顶层的topic字段，没有时为null，响应帧一般没有
+     */
+    public String getTopic() {
+        return topic;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    /**
+     * 按{@link WaterResult}解析整帧
+     *
+     * @param resultType WaterResult&lt;T&gt;的完整类型，用TypeReference构造后保存为常量
+     */
+    @SuppressWarnings("unchecked")
+    public <T> WaterResult<T> parse(Type resultType) {
+        Parsed p = parsed;
+        if (p == null || !p.type.equals(resultType)) {
+            // 并发读取时可能解析两次，结果相同，不加锁
+            p = new Parsed(resultType, JSON.<WaterResult<T>>parseObject(bytes, resultType));
+            parsed = p;
+        }
+        return (WaterResult<T>) p.value;
+    }
+
+    /**
+     * 原始的JSON文本，第一次调用时才生成
+     */
+    @Override
+    public String toString() {
+        String s = text;
+        if (s == null) {
+            s = new String(bytes, StandardCharsets.UTF_8);
+            text = s;
+        }
+        return s;
+    }
+
+    private static final class Parsed {
+
+        private final Type type;
+        private final Object value;
+
+        Parsed(Type type, Object value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 只认顶层对象的键，跳过字符串和嵌套的对象、数组，type和uuid都找到就停止，
+     * 推送帧没有uuid，会扫描完整个顶层
+     */
+    private static final class Scanner {
+
+        private final ByteBuf buf;
+        private final int end;
+        private int index;
+        private int depth;
+
+        private String type;
+        private long uuid;
+        private String topic;
+        private boolean typeFound;
+        private boolean uuidFound;
+        private boolean topicFound;
+
+        Scanner(ByteBuf buf) {
+            this.buf = buf;
+            this.index = buf.readerIndex();
+            this.end = buf.writerIndex();
+        }
+
+        void scan() {
+            boolean expectKey = false;
+            while (index < end && !(typeFound && uuidFound)) {
+                byte b = buf.getByte(index);
+                switch (b) {
+                    case '{':
+                        depth++;
+                        expectKey = depth == 1;
+                        index++;
+                        break;
+                    case '[':
+                        depth++;
+                        index++;
+                        break;
+                    case '}':
+                    case ']':
+                        depth--;
+                        index++;
+                        break;
+                    case ',':
+                        expectKey = depth == 1;
+                        index++;
+                        break;
+                    case '"':
+                        if (expectKey) {
+                            expectKey = false;
+                            int keyStart = index + 1;
+                            skipString();
+                            onKey(keyStart, index - 1 - keyStart);
+                        } else {
+                            skipString();
+                        }
+                        break;
+                    default:
+                        index++;
+                        break;
+                }
+            }
+        }
+
+        private void onKey(int start, int length) {
+            skipColon();
+            if (!typeFound && matches(start, length, KEY_TYPE)) {
+                typeFound = true;
+                type = readType();
+            } else if (!uuidFound && matches(start, length, KEY_UUID)) {
+                uuidFound = true;
+                uuid = readLong();
+            } else if (!topicFound && matches(start, length, KEY_TOPIC)) {
+                topicFound = true;
+                topic = readString();
+            }
+        }
+
+        private void skipColon() {
+            while (index < end) {
+                byte b = buf.getByte(index);
+                if (b != ':' && b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                    return;
+                }
+                index++;
+            }
+        }
+
+        private String readType() {
+            if (index >= end || buf.getByte(index) != '"') {
+                return null;
+            }
+            int start = index + 1;
+            skipString();
+            int length = index - 1 - start;
+            for (String known : KNOWN_TYPES) {
+                if (known.length() == length && matchesAscii(start, known)) {
+                    return known;
+                }
+            }
+            return null;
+        }
+
+        private String readString() {
+            if (index >= end || buf.getByte(index) != '"') {
+                return null;
+            }
+            int start = index + 1;
+            skipString();
+            return buf.toString(start, index - 1 - start, StandardCharsets.UTF_8);
+        }
+
+        private long readLong() {
+            // uuid可能是数字，也可能被引号包住
+            int quote = index;
+            boolean quoted = index < end && buf.getByte(index) == '"';
+            if (quoted) {
+                index++;
+            }
+            long value = 0;
+            boolean negative = index < end && buf.getByte(index) == '-';
+            if (negative) {
+                index++;
+            }
+            while (index < end) {
+                byte b = buf.getByte(index);
+                if (b < '0' || b > '9') {
+                    break;
+                }
+                value = value * 10 + (b - '0');
+                index++;
+            }
+            if (quoted) {
+                index = quote;
+                skipString();
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * index指向开头的引号，返回时指向结尾引号之后
+         */
+        private void skipString() {
+            index++;
+            while (index < end) {
+                byte b = buf.getByte(index++);
+                if (b == '\\') {
+                    index++;
+                } else if (b == '"') {
+                    return;
+                }
+            }
+        }
+
+        private boolean matches(int start, int length, byte[] key) {
+            if (length != key.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (buf.getByte(start + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matchesAscii(int start, String s) {
+            for (int i = 0; i < s.length(); i++) {
+                if (buf.getByte(start + i) != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -8,17 +8,17 @@ public class Message implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
-	private String requestId;
+	private long requestId;
 	private String messageType;
 	private Object data;
 	private Map<String, Object> attachments = new HashMap<>();
 
 	/////////////////////////////////////////////////////
-	public String getRequestId() {
+	public long getRequestId() {
 		return requestId;
 	}
 
-	public void setRequestId(String requestId) {
+	public void setRequestId(long requestId) {
 		this.requestId = requestId;
 	}
 
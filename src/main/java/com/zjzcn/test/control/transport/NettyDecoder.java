@@ -1,53 +1,45 @@
 package com.zjzcn.test.control.transport;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONObject;
+import com.zjzcn.test.transport.LineFrameDecoder;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageDecoder;
-import me.ele.ai.adam.control.waterapi.JsonUtil;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-
-public class NettyDecoder extends ByteToMessageDecoder {
+/**
+ * 水务协议的响应一行一个JSON，分帧见LineFrameDecoder。
+ * 只扫描type和uuid用于路由，响应以JsonFrame放在data中，内容在读取时才解析。
+ * 通知和回调等推送帧以JsonFrame原样传给NettyClientHandler，由PushDispatcher按topic分发。
+ */
+public class NettyDecoder extends LineFrameDecoder {
 
 	private Logger logger = LoggerFactory.getLogger(this.getClass());
 
 	@Override
-	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        in.markReaderIndex();
-		byte[] bytes = new byte[in.readableBytes()];
-		in.readBytes(bytes);
-
-		String data = new String(bytes);
-		logger.info("Server received data: {}", data);
-
-        String[] array = data.split("\n");
-        if (!JsonUtil.isValidJson(array[array.length-1])) {
-            in.resetReaderIndex();
-            logger.info("Invalid json data, data: {}", data);
-            return;
+	protected Object decodeFrame(ChannelHandlerContext ctx, ByteBuf frame) throws Exception {
+		JsonFrame jsonFrame = JsonFrame.scan(frame);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Client received data: {}", jsonFrame);
+		}
+
+        if (!jsonFrame.isResponse()) {
+            if (jsonFrame.getType() == null) {
+                logger.debug("unknown type: {}", jsonFrame);
+                return null;
+            }
+            return jsonFrame;
         }
 
-        for (String json : array) {
-            JSONObject jo = JSON.parseObject(json);
-            if ("response".equals(jo.getString("type"))) {
-                String uuid = jo.getString("uuid");
-                if (uuid == null) {
-                    logger.warn("uuid is null, data: {}", json);
-                    return;
-                }
-                Response response = new Response();
-                response.setRequestId(uuid);
-                response.setData(json);
-                out.add(response);
-            } else {
-                logger.info("not response type: {}", json);
-            }
+        long uuid = jsonFrame.getUuid();
+        if (uuid == 0) {
+            logger.warn("uuid is null, data: {}", jsonFrame);
+            return null;
         }
+        Response response = new Response();
+        response.setRequestId(uuid);
+        response.setData(jsonFrame);
+        return response;
     }
 
 }
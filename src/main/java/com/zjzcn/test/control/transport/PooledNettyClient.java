@@ -0,0 +1,189 @@
+package com.zjzcn.test.control.transport;
+
+import com.zjzcn.test.transport.netty.NettyConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.SocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 到同一个服务端的多连接客户端，请求分散到多个channel上，
+ * 避免一个慢的大响应（如/api/markers/query_list）阻塞其它请求。
+ */
+public class PooledNettyClient implements Client {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledNettyClient.class);
+
+    public enum SelectStrategy {
+        /** 轮询 **/
+        ROUND_ROBIN,
+        /** 选择未完成请求最少的连接 **/
+        LEAST_IN_FLIGHT
+    }
+
+    private final NettyClient[] clients;
+    private final SelectStrategy selectStrategy;
+    private final AtomicInteger nextIndex = new AtomicInteger(0);
+    // 所有连接共用，推送从哪个连接到达都分发给同一组订阅者
+    private final PushDispatcher pushDispatcher = new PushDispatcher();
+
+    public PooledNettyClient(String serverHost, int serverPort, int poolSize) {
+        this(serverHost, serverPort, poolSize, SelectStrategy.LEAST_IN_FLIGHT);
+    }
+
+    public PooledNettyClient(String serverHost, int serverPort, int poolSize, SelectStrategy selectStrategy) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("poolSize must be > 0, poolSize=" + poolSize);
+        }
+        this.selectStrategy = selectStrategy;
+        this.clients = new NettyClient[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            clients[i] = new NettyClient(serverHost, serverPort, null, new NettyConfig(), pushDispatcher);
+        }
+        int healthy = warmup();
+        logger.info("Pooled client started, remote={}:{}, poolSize={}, healthy={}, strategy={}",
+                serverHost, serverPort, poolSize, healthy, selectStrategy);
+    }
+
+    /**
+     * 预热：保证每个连接都已建立，返回可用的连接数；
+     * 正在后台重连的连接由NettyClient.reconnect跳过，等退避重连完成
+     */
+    public int warmup() {
+        int healthy = 0;
+        for (NettyClient client : clients) {
+            if (!client.isConnected()) {
+                client.reconnect();
+            }
+            if (client.isConnected()) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    @Override
+    public void reconnect() {
+        for (NettyClient client : clients) {
+            client.reconnect();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (NettyClient client : clients) {
+            client.close();
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        for (NettyClient client : clients) {
+            if (client.isConnected()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return select().getLocalAddress();
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return select().getRemoteAddress();
+    }
+
+    @Override
+    public Response send(Request req) {
+        return select().send(req);
+    }
+
+    @Override
+    public Response send(Request req, long timeoutMillis) {
+        return select().send(req, timeoutMillis);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(Request req) {
+        return select().sendAsync(req);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(Request req, long timeoutMillis) {
+        return select().sendAsync(req, timeoutMillis);
+    }
+
+    /**
+     * 所有连接共用的推送分发器
+     */
+    public PushDispatcher getPushDispatcher() {
+        return pushDispatcher;
+    }
+
+    public int getPoolSize() {
+        return clients.length;
+    }
+
+    public int getHealthyCount() {
+        int healthy = 0;
+        for (NettyClient client : clients) {
+            if (client.isConnected()) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    public int getInFlightCount() {
+        int inFlight = 0;
+        for (NettyClient client : clients) {
+            inFlight += client.getInFlightCount();
+        }
+        return inFlight;
+    }
+
+    NettyClient getMember(int index) {
+        return clients[index];
+    }
+
+    /**
+     * 只在已连接的channel中选择，全部断开时退化为轮询，由单个client负责报错和重连
+     */
+    private NettyClient select() {
+        int length = clients.length;
+        int start = (nextIndex.getAndIncrement() & Integer.MAX_VALUE) % length;
+        if (selectStrategy == SelectStrategy.ROUND_ROBIN) {
+            for (int i = 0; i < length; i++) {
+                NettyClient client = clients[(start + i) % length];
+                if (client.isConnected()) {
+                    return client;
+                }
+            }
+        } else {
+            NettyClient selected = null;
+            int minInFlight = Integer.MAX_VALUE;
+            // 从轮转的起点开始比较，相同负载时请求也能分散开
+            for (int i = 0; i < length; i++) {
+                NettyClient client = clients[(start + i) % length];
+                if (!client.isConnected()) {
+                    continue;
+                }
+                int inFlight = client.getInFlightCount();
+                if (inFlight < minInFlight) {
+                    minInFlight = inFlight;
+                    selected = client;
+                }
+            }
+            if (selected != null) {
+                return selected;
+            }
+        }
+        return clients[start];
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.zjzcn.test.control.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 把服务端推送的帧按topic分发给订阅者。
+ * <pre>
+ * 		topic取帧顶层的topic字段，没有时取type，例如没有topic的通知按"notification"分发
+ * 		订阅关系很少变化，分发时不加锁，订阅者列表是CopyOnWriteArrayList
+ * 		分发在IO线程上执行，一个订阅者抛出的异常只记录日志，不影响其他订阅者
+ * </pre>
+ */
+public class PushDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushDispatcher.class);
+
+    private final ConcurrentMap<String, List<PushListener>> listeners = new ConcurrentHashMap<>();
+
+    private final LongAdder dispatchedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    public void subscribe(String topic, PushListener listener) {
+        List<PushListener> topicListeners = listeners.get(topic);
+        if (topicListeners == null) {
+            List<PushListener> created = new CopyOnWriteArrayList<>();
+            topicListeners = listeners.putIfAbsent(topic, created);
+            if (topicListeners == null) {
+                topicListeners = created;
+            }
+        }
+        topicListeners.add(listener);
+    }
+
+    public boolean unsubscribe(String topic, PushListener listener) {
+        List<PushListener> topicListeners = listeners.get(topic);
+        return topicListeners != null && topicListeners.remove(listener);
+    }
+
+    public static String topicOf(JsonFrame frame) {
+        return frame.getTopic() != null ? frame.getTopic() : frame.getType();
+    }
+
+    public void dispatch(JsonFrame frame) {
+        String topic = topicOf(frame);
+        List<PushListener> topicListeners = topic == null ? null : listeners.get(topic);
+        if (topicListeners == null || topicListeners.isEmpty()) {
+            droppedCount.increment();
+            logger.debug("No listener for topic {}, data: {}", topic, frame);
+            return;
+        }
+        dispatchedCount.increment();
+        for (PushListener listener : topicListeners) {
+            try {
+                listener.onPush(topic, frame);
+            } catch (RuntimeException e) {
+                logger.error("Push listener error, topic={}", topic, e);
+            }
+        }
+    }
+
+    public long getDispatchedCount() {
+        return dispatchedCount.sum();
+    }
+
+    /**
+     * 没有订阅者而被丢弃的帧数
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+}
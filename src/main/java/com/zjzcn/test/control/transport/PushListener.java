@@ -0,0 +1,10 @@
+package com.zjzcn.test.control.transport;
+
+public interface PushListener {
+
+    /**
+     * 订阅的topic每收到一帧推送调用一次，在IO线程上调用，不能阻塞
+     */
+    void onPush(String topic, JsonFrame frame);
+
+}
@@ -0,0 +1,73 @@
+package com.zjzcn.test.control.transport;
+
+import com.alibaba.fastjson.annotation.JSONField;
+
+/**
+ * 水务协议的响应，results的类型由调用方决定，见JsonFrame.parse
+ */
+public class WaterResult<T> {
+
+    public static final String STATUS_OK = "OK";
+
+    private String type;
+    private String command;
+    private long uuid;
+    private String status;
+    private String errorMessage;
+    private T results;
+
+    public boolean isOk() {
+        return STATUS_OK.equals(status);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    public long getUuid() {
+        return uuid;
+    }
+
+    public void setUuid(long uuid) {
+        this.uuid = uuid;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    @JSONField(name = "error_message")
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    @JSONField(name = "error_message")
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public T getResults() {
+        return results;
+    }
+
+    public void setResults(T results) {
+        this.results = results;
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.zjzcn.test.control.waterapi;
+
+import com.alibaba.fastjson.annotation.JSONField;
+
+/**
+ * /api/map/get_current_map的results
+ */
+public class CurrentMap {
+
+    private String mapName;
+    private int floor;
+
+    @JSONField(name = "map_name")
+    public String getMapName() {
+        return mapName;
+    }
+
+    @JSONField(name = "map_name")
+    public void setMapName(String mapName) {
+        this.mapName = mapName;
+    }
+
+    public int getFloor() {
+        return floor;
+    }
+
+    public void setFloor(int floor) {
+        this.floor = floor;
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.zjzcn.test.control.waterapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /api/map/list的results，地图名称到楼层列表
+ */
+public class MapList {
+
+    private final Map<String, List<Integer>> maps;
+
+    public MapList(Map<String, List<Integer>> maps) {
+        this.maps = maps == null ? Collections.<String, List<Integer>>emptyMap() : Collections.unmodifiableMap(maps);
+    }
+
+    public List<Integer> getFloors(String mapName) {
+        List<Integer> floors = maps.get(mapName);
+        return floors == null ? Collections.<Integer>emptyList() : Collections.unmodifiableList(floors);
+    }
+
+    public Map<String, List<Integer>> getMaps() {
+        return maps;
+    }
+
+    /**
+     * 每个地图的每一层一项，格式为"地图名,楼层"
+     */
+    public List<String> toMapFloorList() {
+        List<String> ret = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> entry : maps.entrySet()) {
+            for (Integer floor : entry.getValue()) {
+                ret.add(entry.getKey() + "," + floor);
+            }
+        }
+        return ret;
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.zjzcn.test.control.waterapi;
+
+import com.alibaba.fastjson.annotation.JSONField;
+
+/**
+ * /api/markers/query_list中的一个标记点
+ */
+public class Marker {
+
+    private String markerName;
+    private int floor;
+    private int key;
+    private Pose pose;
+
+    @JSONField(name = "marker_name")
+    public String getMarkerName() {
+        return markerName;
+    }
+
+    @JSONField(name = "marker_name")
+    public void setMarkerName(String markerName) {
+        this.markerName = markerName;
+    }
+
+    public int getFloor() {
+        return floor;
+    }
+
+    public void setFloor(int floor) {
+        this.floor = floor;
+    }
+
+    public int getKey() {
+        return key;
+    }
+
+    public void setKey(int key) {
+        this.key = key;
+    }
+
+    public Pose getPose() {
+        return pose;
+    }
+
+    public void setPose(Pose pose) {
+        this.pose = pose;
+    }
+
+    public static class Pose {
+
+        private Position position;
+        private Orientation orientation;
+
+        public Position getPosition() {
+            return position;
+        }
+
+        public void setPosition(Position position) {
+            this.position = position;
+        }
+
+        public Orientation getOrientation() {
+            return orientation;
+        }
+
+        public void setOrientation(Orientation orientation) {
+            this.orientation = orientation;
+        }
+    }
+
+    public static class Position {
+
+        private double x;
+        private double y;
+        private double z;
+
+        public double getX() {
+            return x;
+        }
+
+        public void setX(double x) {
+            this.x = x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public void setY(double y) {
+            this.y = y;
+        }
+
+        public double getZ() {
+            return z;
+        }
+
+        public void setZ(double z) {
+            this.z = z;
+        }
+    }
+
+    /**
+     * 四元组
+     */
+    public static class Orientation {
+
+        private double x;
+        private double y;
+        private double z;
+        private double w;
+
+        public double getX() {
+            return x;
+        }
+
+        public void setX(double x) {
+            this.x = x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public void setY(double y) {
+            this.y = y;
+        }
+
+        public double getZ() {
+            return z;
+        }
+
+        public void setZ(double z) {
+            this.z = z;
+        }
+
+        public double getW() {
+            return w;
+        }
+
+        public void setW(double w) {
+            this.w = w;
+        }
+    }
+
+}
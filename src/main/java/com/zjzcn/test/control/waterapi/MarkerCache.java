@@ -0,0 +1,182 @@
+package com.zjzcn.test.control.waterapi;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 标记点缓存，按（地图，楼层）保存MarkerTable。
+ * <pre>
+ * 		标记点只在切换地图时变化：WaterApi.setCurrentMap在发送前和确认后各调用一次onMapChanged，下次get重新加载
+ * 		超过ttl的表在下次get时重新加载，ttl&lt;=0时不过期
+ * 		可选后台刷新，在单独的守护线程上定时加载当前地图，加载失败时保留旧表
+ * 		加载期间调用了onMapChanged或invalidate时，加载结果被丢弃
+ * </pre>
+ */
+public class MarkerCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkerCache.class);
+
+    public static final long DEFAULT_TTL_MS = 10 * 60 * 1000;
+
+    private final WaterApi waterApi;
+    private final long ttlMillis;
+
+    private final ConcurrentMap<String, MarkerTable> tables = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    // 加载结果的检查和写入与地图切换互斥，切换之后不会再写入切换之前开始的加载
+    private final Object mapLock = new Object();
+
+    // 当前的地图和楼层，为null时先查询一次
+    private volatile CurrentMap currentMap;
+
+    private ScheduledExecutorService refresher;
+
+    public MarkerCache(WaterApi waterApi) {
+        this(waterApi, DEFAULT_TTL_MS);
+    }
+
+    public MarkerCache(WaterApi waterApi, long ttlMillis) {
+        this.waterApi = waterApi;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 当前地图楼层的标记点，缓存有效时不经过网络
+     */
+    public MarkerTable get() {
+        for (;;) {
+            CurrentMap map = currentMap();
+            MarkerTable table = tables.get(key(map));
+            if (table != null && !isExpired(table)) {
+                return table;
+            }
+            table = load(map);
+            if (table != null) {
+                return table;
+            }
+            // 加载期间切换了地图，按新地图重来
+        }
+    }
+
+    /**
+     * 表仍是当前地图的最新版本时返回true
+     */
+    public boolean isCurrent(MarkerTable table) {
+        CurrentMap map = currentMap;
+        return map != null && tables.get(key(map)) == table && !isExpired(table);
+    }
+
+    /**
+     * 切换到新的地图楼层，之前开始的加载都被丢弃；同一地图重复调用也会丢弃之前开始的加载
+     */
+    public void onMapChanged(String mapName, int floor) {
+        CurrentMap map = new CurrentMap();
+        map.setMapName(mapName);
+        map.setFloor(floor);
+        synchronized (mapLock) {
+            currentMap = map;
+            tables.remove(key(map));
+        }
+        logger.info("Marker cache invalidated, map={}, floor={}", mapName, floor);
+    }
+
+    /**
+     * 丢弃全部缓存，下次get时重新查询当前地图
+     */
+    public void invalidate() {
+        synchronized (mapLock) {
+            currentMap = null;
+            tables.clear();
+        }
+    }
+
+    /**
+     * 每periodMillis在后台加载一次当前地图，重复调用时只保留最后一次的周期
+     */
+    public synchronized void startBackgroundRefresh(long periodMillis) {
+        stopBackgroundRefresh();
+        refresher = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("marker-cache-refresh", true));
+        refresher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refresh();
+                } catch (Exception e) {
+                    logger.warn("Marker cache refresh failed, keep the old table.", e);
+                }
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopBackgroundRefresh() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    /**
+     * 立即重新加载当前地图
+     */
+    public MarkerTable refresh() {
+        for (;;) {
+            MarkerTable table = load(currentMap());
+            if (table != null) {
+                return table;
+            }
+        }
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    private CurrentMap currentMap() {
+        CurrentMap map = currentMap;
+        if (map == null) {
+            CurrentMap queried = waterApi.queryCurrentMap();
+            // 查询期间调用了onMapChanged时以它为准，查询结果可能是切换前的地图
+            synchronized (mapLock) {
+                if (currentMap == null) {
+                    currentMap = queried;
+                }
+                map = currentMap;
+            }
+        }
+        return map;
+    }
+
+    /**
+     * @return 加载期间调用了onMapChanged或invalidate时返回null
+     */
+    private MarkerTable load(CurrentMap map) {
+        MarkerList markerList = waterApi.queryMarkerList();
+        MarkerTable table;
+        synchronized (mapLock) {
+            if (currentMap != map) {
+                return null;
+            }
+            table = new MarkerTable(map.getMapName(), map.getFloor(), version.incrementAndGet(), markerList.getMarkers());
+            tables.put(key(map), table);
+        }
+        logger.debug("Marker cache loaded: {}", table);
+        return table;
+    }
+
+    private boolean isExpired(MarkerTable table) {
+        return ttlMillis > 0 && table.getAgeMillis() > ttlMillis;
+    }
+
+    private static String key(CurrentMap map) {
+        return map.getMapName() + "," + map.getFloor();
+    }
+
+}
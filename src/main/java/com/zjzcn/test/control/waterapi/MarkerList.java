@@ -0,0 +1,40 @@
+package com.zjzcn.test.control.waterapi;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * /api/markers/query_list的results，按标记点名称索引
+ */
+public class MarkerList {
+
+    private final Map<String, Marker> markers;
+
+    public MarkerList(Map<String, Marker> markers) {
+        this.markers = markers == null ? Collections.<String, Marker>emptyMap() : Collections.unmodifiableMap(markers);
+    }
+
+    /**
+     * 不存在时抛出RuntimeException
+     */
+    public Marker getMarker(String markerName) {
+        Marker marker = markers.get(markerName);
+        if (marker == null) {
+            throw new RuntimeException("Marker not found: " + markerName);
+        }
+        return marker;
+    }
+
+    public boolean contains(String markerName) {
+        return markers.containsKey(markerName);
+    }
+
+    public Map<String, Marker> getMarkers() {
+        return markers;
+    }
+
+    public int size() {
+        return markers.size();
+    }
+
+}
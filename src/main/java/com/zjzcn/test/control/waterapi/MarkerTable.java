@@ -0,0 +1,130 @@
+package com.zjzcn.test.control.waterapi;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个地图楼层的全部标记点，加载后不可变。
+ * <pre>
+ * 		位姿按下标存放在并列的基本类型数组中，朝向已由四元数换算成弧度
+ * 		按名称查找只是一次HashMap查找，得到下标后直接读数组
+ * 		version每次加载递增，用于判断拿到的表是否已经过期，见MarkerCache.isCurrent
+ * </pre>
+ */
+public final class MarkerTable {
+
+    private final String mapName;
+    private final int floor;
+    private final long version;
+    private final long loadNanos;
+
+    private final Map<String, Integer> index;
+    private final String[] names;
+    private final int[] floors;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] thetas;
+
+    public MarkerTable(String mapName, int floor, long version, Map<String, Marker> markers) {
+        this.mapName = mapName;
+        this.floor = floor;
+        this.version = version;
+        this.loadNanos = System.nanoTime();
+
+        int size = markers == null ? 0 : markers.size();
+        index = new HashMap<>(size * 4 / 3 + 1);
+        names = new String[size];
+        floors = new int[size];
+        xs = new double[size];
+        ys = new double[size];
+        thetas = new double[size];
+        if (markers == null) {
+            return;
+        }
+        int i = 0;
+        for (Map.Entry<String, Marker> entry : markers.entrySet()) {
+            Marker marker = entry.getValue();
+            Marker.Pose pose = marker.getPose();
+            names[i] = entry.getKey();
+            floors[i] = marker.getFloor();
+            if (pose != null && pose.getPosition() != null) {
+                xs[i] = pose.getPosition().getX();
+                ys[i] = pose.getPosition().getY();
+            }
+            if (pose != null && pose.getOrientation() != null) {
+                thetas[i] = MathUtils.quadruplesRad(pose.getOrientation().getZ(), pose.getOrientation().getW());
+            }
+            index.put(names[i], i);
+            i++;
+        }
+    }
+
+    /**
+     * 不存在时返回-1
+     */
+    public int indexOf(String markerName) {
+        Integer i = index.get(markerName);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * 不存在时抛出RuntimeException
+     */
+    public int require(String markerName) {
+        Integer i = index.get(markerName);
+        if (i == null) {
+            throw new RuntimeException("Marker not found: " + markerName + ", map=" + mapName + ", floor=" + floor);
+        }
+        return i;
+    }
+
+    public boolean contains(String markerName) {
+        return index.containsKey(markerName);
+    }
+
+    public String getName(int i) {
+        return names[i];
+    }
+
+    public int getMarkerFloor(int i) {
+        return floors[i];
+    }
+
+    public double getX(int i) {
+        return xs[i];
+    }
+
+    public double getY(int i) {
+        return ys[i];
+    }
+
+    public double getTheta(int i) {
+        return thetas[i];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getMapName() {
+        return mapName;
+    }
+
+    public int getFloor() {
+        return floor;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getAgeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "MarkerTable{map=" + mapName + ", floor=" + floor + ", version=" + version + ", size=" + names.length + "}";
+    }
+}
@@ -0,0 +1,76 @@
+package com.zjzcn.test.control.waterapi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 控制逻辑关心的机器人状态，不可变，由RobotStateCache整体替换
+ */
+public final class RobotState {
+
+    private final double x;
+    private final double y;
+    private final double theta;
+    private final String moveStatus;
+    private final String moveTarget;
+    private final int currentFloor;
+    private final long updateNanos;
+
+    public RobotState(double x, double y, double theta, String moveStatus, String moveTarget, int currentFloor, long updateNanos) {
+        this.x = x;
+        this.y = y;
+        this.theta = theta;
+        this.moveStatus = moveStatus;
+        this.moveTarget = moveTarget;
+        this.currentFloor = currentFloor;
+        this.updateNanos = updateNanos;
+    }
+
+    public static RobotState of(RobotStatus status, long updateNanos) {
+        RobotStatus.Pose pose = status.getCurrentPose();
+        return pose == null
+                ? new RobotState(0, 0, 0, status.getMoveStatus(), status.getMoveTarget(), status.getCurrentFloor(), updateNanos)
+                : new RobotState(pose.getX(), pose.getY(), pose.getTheta(), status.getMoveStatus(), status.getMoveTarget(),
+                        status.getCurrentFloor(), updateNanos);
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getTheta() {
+        return theta;
+    }
+
+    public String getMoveStatus() {
+        return moveStatus;
+    }
+
+    public String getMoveTarget() {
+        return moveTarget;
+    }
+
+    public int getCurrentFloor() {
+        return currentFloor;
+    }
+
+    /**
+     * System.nanoTime()，只用于计算新旧
+     */
+    public long getUpdateNanos() {
+        return updateNanos;
+    }
+
+    public long getAgeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - updateNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "RobotState{x=" + x + ", y=" + y + ", theta=" + theta + ", moveStatus=" + moveStatus
+                + ", moveTarget=" + moveTarget + ", currentFloor=" + currentFloor + ", ageMillis=" + getAgeMillis() + "}";
+    }
+}
@@ -0,0 +1,94 @@
+package com.zjzcn.test.control.waterapi;
+
+import com.zjzcn.test.control.transport.JsonFrame;
+import com.zjzcn.test.control.transport.PushListener;
+import com.zjzcn.test.control.transport.WaterResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 机器人状态的最新值。
+ * <pre>
+ * 		订阅robot_status推送后由IO线程更新，查询robot_status的响应也会更新
+ * 		读取只是一次volatile读，不加锁，不经过网络
+ * 		以到达的先后为准，推送停止后状态会变旧，读取时用getIfFresh判断
+ * 		每次更新通知Listener，推送和查询得到的状态都会通知
+ * </pre>
+ */
+public class RobotStateCache implements PushListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RobotStateCache.class);
+
+    public static final String TOPIC_ROBOT_STATUS = "robot_status";
+
+    private volatile RobotState state;
+
+    private final LongAdder pushCount = new LongAdder();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public interface Listener {
+
+        /**
+         * 在更新状态的线程上调用，一般是IO线程，不能阻塞
+         */
+        void onUpdate(RobotState state);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public boolean removeListener(Listener listener) {
+        return listeners.remove(listener);
+    }
+
+    /**
+     * 还没有收到过状态时为null
+     */
+    public RobotState get() {
+        return state;
+    }
+
+    /**
+     * 状态超过maxAgeMillis没有更新时返回null
+     */
+    public RobotState getIfFresh(long maxAgeMillis) {
+        RobotState s = state;
+        return s != null && s.getAgeMillis() <= maxAgeMillis ? s : null;
+    }
+
+    public void update(RobotStatus status) {
+        if (status == null) {
+            return;
+        }
+        RobotState s = RobotState.of(status, System.nanoTime());
+        state = s;
+        for (Listener listener : listeners) {
+            try {
+                listener.onUpdate(s);
+            } catch (RuntimeException e) {
+                logger.error("Robot state listener error.", e);
+            }
+        }
+    }
+
+    @Override
+    public void onPush(String topic, JsonFrame frame) {
+        WaterResult<RobotStatus> result = frame.parse(WaterApi.ROBOT_STATUS_RESULT);
+        pushCount.increment();
+        update(result.getResults());
+    }
+
+    /**
+     * 收到的推送次数
+     */
+    public long getPushCount() {
+        return pushCount.sum();
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.zjzcn.test.control.waterapi;
+
+import com.alibaba.fastjson.annotation.JSONField;
+
+/**
+ * /api/robot_status的results，未列出的字段解析时忽略
+ */
+public class RobotStatus {
+
+    private String moveTarget;
+    private String moveStatus;
+    private String runningStatus;
+    private int moveRetryTimes;
+    private boolean chargeState;
+    private boolean softEstopState;
+    private boolean hardEstopState;
+    private int powerPercent;
+    private int currentFloor;
+    private Pose currentPose;
+
+    @JSONField(name = "move_target")
+    public String getMoveTarget() {
+        return moveTarget;
+    }
+
+    @JSONField(name = "move_target")
+    public void setMoveTarget(String moveTarget) {
+        this.moveTarget = moveTarget;
+    }
+
+    @JSONField(name = "move_status")
+    public String getMoveStatus() {
+        return moveStatus;
+    }
+
+    @JSONField(name = "move_status")
+    public void setMoveStatus(String moveStatus) {
+        this.moveStatus = moveStatus;
+    }
+
+    @JSONField(name = "running_status")
+    public String getRunningStatus() {
+        return runningStatus;
+    }
+
+    @JSONField(name = "running_status")
+    public void setRunningStatus(String runningStatus) {
+        this.runningStatus = runningStatus;
+    }
+
+    @JSONField(name = "move_retry_times")
+    public int getMoveRetryTimes() {
+        return moveRetryTimes;
+    }
+
+    @JSONField(name = "move_retry_times")
+    public void setMoveRetryTimes(int moveRetryTimes) {
+        this.moveRetryTimes = moveRetryTimes;
+    }
+
+    @JSONField(name = "charge_state")
+    public boolean isChargeState() {
+        return chargeState;
+    }
+
+    @JSONField(name = "charge_state")
+    public void setChargeState(boolean chargeState) {
+        this.chargeState = chargeState;
+    }
+
+    @JSONField(name = "soft_estop_state")
+    public boolean isSoftEstopState() {
+        return softEstopState;
+    }
+
+    @JSONField(name = "soft_estop_state")
+    public void setSoftEstopState(boolean softEstopState) {
+        this.softEstopState = softEstopState;
+    }
+
+    @JSONField(name = "hard_estop_state")
+    public boolean isHardEstopState() {
+        return hardEstopState;
+    }
+
+    @JSONField(name = "hard_estop_state")
+    public void setHardEstopState(boolean hardEstopState) {
+        this.hardEstopState = hardEstopState;
+    }
+
+    @JSONField(name = "power_percent")
+    public int getPowerPercent() {
+        return powerPercent;
+    }
+
+    @JSONField(name = "power_percent")
+    public void setPowerPercent(int powerPercent) {
+        this.powerPercent = powerPercent;
+    }
+
+    @JSONField(name = "current_floor")
+    public int getCurrentFloor() {
+        return currentFloor;
+    }
+
+    @JSONField(name = "current_floor")
+    public void setCurrentFloor(int currentFloor) {
+        this.currentFloor = currentFloor;
+    }
+
+    @JSONField(name = Constants.CURRENT_POSE)
+    public Pose getCurrentPose() {
+        return currentPose;
+    }
+
+    @JSONField(name = Constants.CURRENT_POSE)
+    public void setCurrentPose(Pose currentPose) {
+        this.currentPose = currentPose;
+    }
+
+    /**
+     * 地图坐标系下的位置，theta为弧度
+     */
+    public static class Pose {
+
+        private double x;
+        private double y;
+        private double theta;
+
+        public double getX() {
+            return x;
+        }
+
+        public void setX(double x) {
+            this.x = x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public void setY(double y) {
+            this.y = y;
+        }
+
+        public double getTheta() {
+            return theta;
+        }
+
+        public void setTheta(double theta) {
+            this.theta = theta;
+        }
+    }
+
+}
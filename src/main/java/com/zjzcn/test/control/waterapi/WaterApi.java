@@ -1,47 +1,148 @@
 package com.zjzcn.test.control.waterapi;
 
+import com.alibaba.fastjson.TypeReference;
 import com.zjzcn.test.control.transport.Client;
+import com.zjzcn.test.control.transport.CoalescingClient;
+import com.zjzcn.test.control.transport.JsonFrame;
 import com.zjzcn.test.control.transport.NettyClient;
+import com.zjzcn.test.control.transport.PooledNettyClient;
+import com.zjzcn.test.control.transport.PushDispatcher;
 import com.zjzcn.test.control.transport.Request;
 import com.zjzcn.test.control.transport.RequestId;
 import com.zjzcn.test.control.transport.Response;
+import com.zjzcn.test.control.transport.WaterResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Type;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public class WaterApi {
 
     private static final Logger logger = LoggerFactory.getLogger(WaterApi.class);
 
+    /**
+     * 只读命令，同时在途的相同请求合并成一个
+     */
+    public static final String[] IDEMPOTENT_COMMANDS = {
+            "/api/robot_status",
+            "/api/markers/query_list",
+            "/api/map/list",
+            "/api/map/get_current_map"
+    };
+
+    static final Type ROBOT_STATUS_RESULT = new TypeReference<WaterResult<RobotStatus>>() {}.getType();
+    private static final Type MARKER_LIST_RESULT = new TypeReference<WaterResult<Map<String, Marker>>>() {}.getType();
+    private static final Type MAP_LIST_RESULT = new TypeReference<WaterResult<Map<String, List<Integer>>>>() {}.getType();
+    private static final Type CURRENT_MAP_RESULT = new TypeReference<WaterResult<CurrentMap>>() {}.getType();
+
     private Client client;
 
+    private PushDispatcher pushDispatcher;
+
+    private RobotStateCache robotStateCache = new RobotStateCache();
+
+    private MarkerCache markerCache = new MarkerCache(this);
+
     public Client getClient() {
         return client;
     }
 
     public WaterApi(String serverHost, int serverPort) {
-        client = new NettyClient(serverHost, serverPort);
+        this(new NettyClient(serverHost, serverPort));
     }
 
-    private String send(String command, Map<String, Object> params) {
+    public WaterApi(NettyClient nettyClient) {
+        this(new CoalescingClient(nettyClient, IDEMPOTENT_COMMANDS), nettyClient.getPushDispatcher());
+    }
+
+    public WaterApi(PooledNettyClient pooledClient) {
+        this(new CoalescingClient(pooledClient, IDEMPOTENT_COMMANDS), pooledClient.getPushDispatcher());
+    }
+
+    /**
+     * client是NettyClient或PooledNettyClient时订阅它的推送，其它Client的推送由调用方通过getPushDispatcher分发
+     */
+    public WaterApi(Client client) {
+        this(client, pushDispatcherOf(client));
+    }
+
+    /**
+     * @param pushDispatcher client所在连接的推送分发器，见NettyClient.getPushDispatcher和PooledNettyClient.getPushDispatcher
+     */
+    public WaterApi(Client client, PushDispatcher pushDispatcher) {
+        this.client = client;
+        this.pushDispatcher = pushDispatcher;
+        pushDispatcher.subscribe(RobotStateCache.TOPIC_ROBOT_STATUS, robotStateCache);
+    }
+
+    private static PushDispatcher pushDispatcherOf(Client client) {
+        if (client instanceof NettyClient) {
+            return ((NettyClient) client).getPushDispatcher();
+        }
+        if (client instanceof PooledNettyClient) {
+            return ((PooledNettyClient) client).getPushDispatcher();
+        }
+        return new PushDispatcher();
+    }
+
+    public PushDispatcher getPushDispatcher() {
+        return pushDispatcher;
+    }
+
+    /**
+     * 最新的机器人状态，先调用subscribeRobotStatus让服务端推送
+     */
+    public RobotStateCache getRobotStateCache() {
+        return robotStateCache;
+    }
+
+    /**
+     * 当前地图的标记点，setCurrentMap时自动失效
+     */
+    public MarkerCache getMarkerCache() {
+        return markerCache;
+    }
+
+    private static final Function<Response, JsonFrame> TO_FRAME = new Function<Response, JsonFrame>() {
+        @Override
+        public JsonFrame apply(Response response) {
+            return (JsonFrame)response.getData();
+        }
+    };
+
+    private static Request newRequest(String command, Map<String, Object> params) {
         Request request = new Request();
-        request.setRequestId(RequestId.newStringId());
+        request.setRequestId(RequestId.newLongId());
         request.setMessageType(command);
         request.setAttachments(params);
-        Response response = client.send(request);
-        return (String)response.getData();
+        return request;
+    }
+
+    private JsonFrame sendFrame(String command, Map<String, Object> params) {
+        Response response = client.send(newRequest(command, params));
+        return (JsonFrame)response.getData();
+    }
+
+    private CompletableFuture<JsonFrame> sendFrameAsync(String command, Map<String, Object> params, long timeoutMillis) {
+        return client.sendAsync(newRequest(command, params), timeoutMillis).thenApply(TO_FRAME);
+    }
+
+    private String send(String command, Map<String, Object> params) {
+        return sendFrame(command, params).toString();
     }
     private String send(String command) {
         return send(command, null);
     }
 
-    public String robotStatus() {
+    private JsonFrame robotStatusFrame() {
         for (int i=0; i<3; i++) {
             try {
-                String response = send("/api/robot_status");
-                return response;
+                return sendFrame("/api/robot_status", null);
             } catch (Exception e) {
                 logger.error("Get robotStatus error.", e);
             }
@@ -50,6 +151,53 @@ public class WaterApi {
         throw new RuntimeException("Retry 3 count.");
     }
 
+    public String robotStatus() {
+        return robotStatusFrame().toString();
+    }
+
+    /**
+     * 直接从响应的字节解析results，返回的对象可能和其他调用方共享，不能修改
+     */
+    public RobotStatus queryRobotStatus() {
+        WaterResult<RobotStatus> result = robotStatusFrame().parse(ROBOT_STATUS_RESULT);
+        robotStateCache.update(result.getResults());
+        return result.getResults();
+    }
+
+    /**
+     * 不阻塞调用线程，results在IO线程上解析，超时时以RequestCancelledException完成
+     */
+    public CompletableFuture<RobotStatus> queryRobotStatusAsync(long timeoutMillis) {
+        return sendFrameAsync("/api/robot_status", null, timeoutMillis).thenApply(new Function<JsonFrame, RobotStatus>() {
+            @Override
+            public RobotStatus apply(JsonFrame frame) {
+                WaterResult<RobotStatus> result = frame.parse(ROBOT_STATUS_RESULT);
+                robotStateCache.update(result.getResults());
+                return result.getResults();
+            }
+        });
+    }
+
+    /**
+     * 让服务端按frequency（次/秒）推送robot_status，推送更新robotStateCache，断线重连后需要重新订阅
+     */
+    public String subscribeRobotStatus(double frequency) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("topic", RobotStateCache.TOPIC_ROBOT_STATUS);
+        params.put("switch", "on");
+        params.put("frequency", frequency);
+        String response = send("/api/request_data", params);
+        return response;
+    }
+
+    public String unsubscribeRobotStatus() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("topic", RobotStateCache.TOPIC_ROBOT_STATUS);
+        params.put("switch", "off");
+        String response = send("/api/request_data", params);
+        return response;
+    }
+
     public String moveToMarker(String markerName) {
         Map<String, Object> params = new HashMap<>();
         params.put("marker", markerName);
@@ -57,6 +205,20 @@ public class WaterApi {
         return response;
     }
 
+    /**
+     * 只表示命令已被接受，移动是否完成见robot_status的move_status
+     */
+    public CompletableFuture<WaterResult<Object>> moveToMarkerAsync(String markerName, long timeoutMillis) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("marker", markerName);
+        return sendFrameAsync("/api/move", params, timeoutMillis).thenApply(new Function<JsonFrame, WaterResult<Object>>() {
+            @Override
+            public WaterResult<Object> apply(JsonFrame frame) {
+                return frame.parse(WaterResult.class);
+            }
+        });
+    }
+
     public String moveToLocation(double x, double y, double theta) {
         Map<String, Object> params = new HashMap<>();
         params.put("location", x + "," + "," + theta);
@@ -72,12 +234,41 @@ public class WaterApi {
         return response;
     }
 
+    /**
+     * 不等待响应，用于固定频率的闭环控制
+     */
+    public CompletableFuture<WaterResult<Object>> joyControlAsync(double linearVelocity, double angularVelocity, long timeoutMillis) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("angular_velocity", angularVelocity);
+        params.put("linear_velocity", linearVelocity);
+        return sendFrameAsync("/api/joy_control", params, timeoutMillis).thenApply(new Function<JsonFrame, WaterResult<Object>>() {
+            @Override
+            public WaterResult<Object> apply(JsonFrame frame) {
+                return frame.parse(WaterResult.class);
+            }
+        });
+    }
+
     public String setCurrentMap(String hotelId, int floor) {
         Map<String, Object> params = new HashMap<>();
         params.put("map_name", hotelId);
         params.put("floor", floor);
-        String response = send("/api/map/set_current_map", params);
-        return response;
+        // 先切换缓存让旧地图的表立即失效；发送期间机器人可能还在旧地图上，
+        // 这时开始的加载会读到旧地图的标记点，确认之后再切换一次把它们丢弃
+        markerCache.onMapChanged(hotelId, floor);
+        JsonFrame frame;
+        try {
+            frame = sendFrame("/api/map/set_current_map", params);
+        } catch (RuntimeException e) {
+            markerCache.invalidate();
+            throw e;
+        }
+        if (frame.parse(WaterResult.class).isOk()) {
+            markerCache.onMapChanged(hotelId, floor);
+        } else {
+            markerCache.invalidate();
+        }
+        return frame.toString();
     }
 
     public String getCurrentMap() {
@@ -98,6 +289,24 @@ public class WaterApi {
         return response;
     }
 
+    public MarkerList queryMarkerList() {
+        WaterResult<Map<String, Marker>> result = sendFrame("/api/markers/query_list", null).parse(MARKER_LIST_RESULT);
+        return new MarkerList(result.getResults());
+    }
+
+    public CurrentMap queryCurrentMap() {
+        WaterResult<CurrentMap> result = sendFrame("/api/map/get_current_map", null).parse(CURRENT_MAP_RESULT);
+        if (result.getResults() == null) {
+            throw new RuntimeException("Get current map failed: " + result.getErrorMessage());
+        }
+        return result.getResults();
+    }
+
+    public MapList queryMapList() {
+        WaterResult<Map<String, List<Integer>>> result = sendFrame("/api/map/list", null).parse(MAP_LIST_RESULT);
+        return new MapList(result.getResults());
+    }
+
 
     public static void main(String[] args) {
 
@@ -0,0 +1,277 @@
+package com.zjzcn.test.transport;
+
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 客户端请求的准入控制，在途请求数未满且channel可写时才放行。
+ * <pre>
+ * 		FAIL_FAST  不满足立即拒绝，和原来超过CLIENT_MAX_REQUEST就抛异常的行为一致
+ * 		BLOCK      同步发送的调用线程最多阻塞maxWaitMillis，超时拒绝；异步发送不阻塞，同FAIL_FAST
+ * 		ASYNC      不阻塞调用线程，返回的future在放行或等待超时时完成，按先来先放行
+ * 		放行的请求完成时必须调用release，可写性由客户端在channelWritabilityChanged时更新
+ * 		没有等待者时放行和释放都只有一次CAS，不加锁
+ * </pre>
+ */
+public class AdmissionController {
+
+    public enum Policy {
+        BLOCK,
+        FAIL_FAST,
+        ASYNC
+    }
+
+    public static final long DEFAULT_MAX_WAIT_MS = 1000;
+
+    private final int maxInFlight;
+    private final Policy policy;
+    private final long maxWaitMillis;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean writable = true;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition admittable = lock.newCondition();
+    // 阻塞和异步等待者的总数，为0时release不需要加锁
+    private final AtomicInteger waiters = new AtomicInteger();
+    // 由lock保护
+    private final ArrayDeque<AsyncWaiter> asyncWaiters = new ArrayDeque<>();
+
+    private final AdmissionStats stats = new AdmissionStats();
+
+    public AdmissionController(int maxInFlight) {
+        this(maxInFlight, Policy.FAIL_FAST, 0);
+    }
+
+    public AdmissionController(int maxInFlight, Policy policy, long maxWaitMillis) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        this.policy = policy;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * 不等待，能放行返回true
+     */
+    public boolean tryAcquire() {
+        if (waiters.get() == 0 && tryAcquirePermit()) {
+            stats.recordAdmitted();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 按策略放行，FAIL_FAST立即拒绝，BLOCK和ASYNC都阻塞当前线程最多maxWaitMillis
+     * @throws RuntimeException 被拒绝时
+     */
+    public void acquire() {
+        if (tryAcquire()) {
+            return;
+        }
+        if (policy == Policy.FAIL_FAST) {
+            stats.recordRejected();
+            throw rejected(0);
+        }
+
+        long startNanos = System.nanoTime();
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        lock.lock();
+        waiters.incrementAndGet();
+        try {
+            while (!tryAcquirePermit()) {
+                if (remainingNanos <= 0) {
+                    stats.recordRejected();
+                    throw rejected(System.nanoTime() - startNanos);
+                }
+                try {
+                    remainingNanos = admittable.awaitNanos(remainingNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stats.recordRejected();
+                    throw new RuntimeException("Interrupted while waiting for admission", e);
+                }
+            }
+        } finally {
+            waiters.decrementAndGet();
+            lock.unlock();
+        }
+        stats.recordWaited(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 按策略放行但不阻塞，FAIL_FAST和BLOCK被拒绝时返回异常完成的future，
+     * ASYNC时排队等待，放行或超时时完成，完成的回调在释放名额的线程上执行
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        if (tryAcquire()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (policy != Policy.ASYNC) {
+            stats.recordRejected();
+            future.completeExceptionally(rejected(0));
+            return future;
+        }
+
+        final AsyncWaiter waiter = new AsyncWaiter(future);
+        lock.lock();
+        try {
+            // 已有等待者时不插队
+            if (asyncWaiters.isEmpty() && tryAcquirePermit()) {
+                stats.recordAdmitted();
+                future.complete(null);
+                return future;
+            }
+            waiters.incrementAndGet();
+            asyncWaiters.addLast(waiter);
+        } finally {
+            lock.unlock();
+        }
+        waiter.timeoutHandle = RequestTimer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                expire(waiter);
+            }
+        }, maxWaitMillis);
+        return future;
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+        if (waiters.get() > 0) {
+            signalWaiters();
+        }
+    }
+
+    public void setWritable(boolean writable) {
+        this.writable = writable;
+        if (writable && waiters.get() > 0) {
+            signalWaiters();
+        }
+    }
+
+    public boolean isWritable() {
+        return writable;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 正在阻塞或排队等待放行的请求数
+     */
+    public int getWaiting() {
+        return waiters.get();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public AdmissionStats getStats() {
+        return stats;
+    }
+
+    private boolean tryAcquirePermit() {
+        if (!writable) {
+            return false;
+        }
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void signalWaiters() {
+        List<AsyncWaiter> admitted = null;
+        lock.lock();
+        try {
+            while (!asyncWaiters.isEmpty() && tryAcquirePermit()) {
+                waiters.decrementAndGet();
+                if (admitted == null) {
+                    admitted = new ArrayList<>();
+                }
+                admitted.add(asyncWaiters.pollFirst());
+            }
+            admittable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        // 在锁外完成future，后续的发送不占用锁
+        if (admitted != null) {
+            for (AsyncWaiter waiter : admitted) {
+                Timeout timeoutHandle = waiter.timeoutHandle;
+                if (timeoutHandle != null) {
+                    timeoutHandle.cancel();
+                }
+                stats.recordWaited(System.nanoTime() - waiter.startNanos);
+                if (!waiter.future.complete(null)) {
+                    // 调用方已经取消，名额还回去
+                    release();
+                }
+            }
+        }
+    }
+
+    private void expire(AsyncWaiter waiter) {
+        boolean removed;
+        lock.lock();
+        try {
+            removed = asyncWaiters.remove(waiter);
+            if (removed) {
+                waiters.decrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (removed) {
+            stats.recordRejected();
+            waiter.future.completeExceptionally(rejected(System.nanoTime() - waiter.startNanos));
+        }
+    }
+
+    private RuntimeException rejected(long waitNanos) {
+        return new RuntimeException("Client request not admitted, policy=" + policy + ", inFlight=" + inFlight.get()
+                + ", maxInFlight=" + maxInFlight + ", writable=" + writable
+                + ", waitMs=" + TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+
+    private static final class AsyncWaiter {
+
+        private final CompletableFuture<Void> future;
+        private final long startNanos = System.nanoTime();
+        private volatile Timeout timeoutHandle;
+
+        AsyncWaiter(CompletableFuture<Void> future) {
+            this.future = future;
+        }
+    }
+
+}
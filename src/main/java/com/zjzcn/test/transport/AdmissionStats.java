@@ -0,0 +1,54 @@
+package com.zjzcn.test.transport;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 准入控制的统计：等待时间只记录没有走快路径、需要排队的请求。
+ */
+public class AdmissionStats {
+
+    private final LongAdder admittedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder waitedCount = new LongAdder();
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+
+    void recordAdmitted() {
+        admittedCount.increment();
+    }
+
+    void recordWaited(long waitNanos) {
+        admittedCount.increment();
+        waitedCount.increment();
+        waitTime.record(waitNanos);
+    }
+
+    void recordRejected() {
+        rejectedCount.increment();
+    }
+
+    public long getAdmittedCount() {
+        return admittedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 排队等待后才准入的请求数
+     */
+    public long getWaitedCount() {
+        return waitedCount.sum();
+    }
+
+    public LatencyHistogram.Snapshot getWaitTime() {
+        return waitTime.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return "AdmissionStats{admitted=" + getAdmittedCount() + ", rejected=" + getRejectedCount()
+                + ", waited=" + getWaitedCount() + ", waitTime=" + getWaitTime() + "}";
+    }
+
+}
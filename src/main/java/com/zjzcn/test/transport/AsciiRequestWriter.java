@@ -0,0 +1,119 @@
+package com.zjzcn.test.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.AsciiString;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 把请求按 command?key=value&amp;...&amp;uuid=id 的格式直接写入ByteBuf。
+ * <pre>
+ * 		命令前缀"command?"预先编码成字节，已知命令在构造时缓存，其他命令第一次出现时缓存
+ * 		整数和uuid逐位写入，字符串用ByteBufUtil.writeUtf8写入，ASCII时和逐字节写入相同
+ * 		除浮点数等需要String.valueOf的值外，写一个请求不产生临时对象
+ * </pre>
+ * 线程安全，同一个实例可以被多个channel的encoder共享。
+ */
+public class AsciiRequestWriter {
+
+	// 命令不是固定集合时缓存不会无限增长
+	public static final int MAX_CACHED_COMMANDS = 256;
+
+	private static final AsciiString UUID_KEY = AsciiString.of("uuid=");
+	private static final AsciiString NULL = AsciiString.of("null");
+	private static final AsciiString TRUE = AsciiString.of("true");
+	private static final AsciiString FALSE = AsciiString.of("false");
+	private static final AsciiString LONG_MIN = AsciiString.of(String.valueOf(Long.MIN_VALUE));
+
+	private final ConcurrentMap<String, AsciiString> prefixes = new ConcurrentHashMap<>();
+
+	public AsciiRequestWriter(String... knownCommands) {
+		for (String command : knownCommands) {
+			prefixes.put(command, newPrefix(command));
+		}
+	}
+
+	public void write(ByteBuf out, String command, Map<String, Object> params, long requestId) {
+		writePrefix(out, command);
+		if (params != null && !params.isEmpty()) {
+			for (Map.Entry<String, Object> entry : params.entrySet()) {
+				ByteBufUtil.writeUtf8(out, entry.getKey());
+				out.writeByte('=');
+				writeValue(out, entry.getValue());
+				out.writeByte('&');
+			}
+		}
+		writeAscii(out, UUID_KEY);
+		writeLong(out, requestId);
+	}
+
+	public int getCachedCommandCount() {
+		return prefixes.size();
+	}
+
+	private void writePrefix(ByteBuf out, String command) {
+		AsciiString prefix = command == null ? null : prefixes.get(command);
+		if (prefix == null) {
+			if (command == null || prefixes.size() >= MAX_CACHED_COMMANDS) {
+				ByteBufUtil.writeUtf8(out, String.valueOf(command));
+				out.writeByte('?');
+				return;
+			}
+			prefix = newPrefix(command);
+			prefixes.putIfAbsent(command, prefix);
+		}
+		writeAscii(out, prefix);
+	}
+
+	private static AsciiString newPrefix(String command) {
+		return new AsciiString((command + "?").getBytes(StandardCharsets.UTF_8), false);
+	}
+
+	/**
+	 * 和StringBuilder.append(Object)的结果一致
+	 */
+	private static void writeValue(ByteBuf out, Object value) {
+		if (value == null) {
+			writeAscii(out, NULL);
+		} else if (value instanceof CharSequence) {
+			ByteBufUtil.writeUtf8(out, (CharSequence) value);
+		} else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			writeLong(out, ((Number) value).longValue());
+		} else if (value instanceof Boolean) {
+			writeAscii(out, (Boolean) value ? TRUE : FALSE);
+		} else {
+			ByteBufUtil.writeUtf8(out, String.valueOf(value));
+		}
+	}
+
+	private static void writeAscii(ByteBuf out, AsciiString s) {
+		out.writeBytes(s.array(), s.arrayOffset(), s.length());
+	}
+
+	static void writeLong(ByteBuf out, long value) {
+		if (value == Long.MIN_VALUE) {
+			writeAscii(out, LONG_MIN);
+			return;
+		}
+		if (value < 0) {
+			out.writeByte('-');
+			value = -value;
+		}
+		int digits = 1;
+		for (long v = value; v >= 10; v /= 10) {
+			digits++;
+		}
+		out.ensureWritable(digits);
+		int index = out.writerIndex() + digits;
+		do {
+			out.setByte(--index, (int) ('0' + value % 10));
+			value /= 10;
+		} while (value != 0);
+		out.writerIndex(out.writerIndex() + digits);
+	}
+
+}
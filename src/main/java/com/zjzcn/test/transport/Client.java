@@ -1,6 +1,7 @@
 package com.zjzcn.test.transport;
 
 import java.net.SocketAddress;
+import java.util.concurrent.CompletableFuture;
 
 public interface Client {
 
@@ -15,6 +16,15 @@ public interface Client {
 	SocketAddress getRemoteAddress();
 	
 	Response send(Request req);
+
+	Response send(Request req, long timeoutMillis);
+
+	/**
+	 * Send without blocking the caller, the future is completed from the I/O thread.
+	 */
+	CompletableFuture<Response> sendAsync(Request req);
+
+	CompletableFuture<Response> sendAsync(Request req, long timeoutMillis);
 	
 	boolean isConnected();
 	
@@ -0,0 +1,166 @@
+package com.zjzcn.test.transport;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端的调用统计，按命令(messageType)分别计数并记录延迟直方图。
+ * <pre>
+ * 		记录路径只有LongAdder和直方图的原子加，不加锁
+ * 		在途请求数、写队列大小这类瞬时值由客户端在snapshot时传入
+ * 		监控方定时拉取snapshot即可
+ * </pre>
+ */
+public class ClientMetrics {
+
+    private static final String UNKNOWN_COMMAND = "unknown";
+
+    public enum Outcome {
+        SUCCESS,
+        ERROR,
+        TIMEOUT
+    }
+
+    private final ConcurrentMap<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+    private final LongAdder reconnectCount = new LongAdder();
+    private final LongAdder disconnectCount = new LongAdder();
+
+    public void record(String command, long latencyNanos, Outcome outcome) {
+        CommandMetrics metrics = commandMetrics(command == null ? UNKNOWN_COMMAND : command);
+        metrics.requests.increment();
+        switch (outcome) {
+            case SUCCESS:
+                metrics.latency.record(latencyNanos);
+                break;
+            case ERROR:
+                metrics.errors.increment();
+                metrics.latency.record(latencyNanos);
+                break;
+            case TIMEOUT:
+                // 超时的耗时就是超时时间，不计入直方图
+                metrics.timeouts.increment();
+                break;
+        }
+    }
+
+    public void recordReconnect() {
+        reconnectCount.increment();
+    }
+
+    public void recordDisconnect() {
+        disconnectCount.increment();
+    }
+
+    public Snapshot snapshot(int inFlight, long pendingWriteBytes) {
+        Map<String, CommandSnapshot> commandSnapshots = new TreeMap<>();
+        for (Map.Entry<String, CommandMetrics> entry : commands.entrySet()) {
+            CommandMetrics metrics = entry.getValue();
+            commandSnapshots.put(entry.getKey(), new CommandSnapshot(metrics.requests.sum(), metrics.errors.sum(),
+                    metrics.timeouts.sum(), metrics.latency.snapshot()));
+        }
+        return new Snapshot(commandSnapshots, inFlight, pendingWriteBytes, reconnectCount.sum(), disconnectCount.sum());
+    }
+
+    private CommandMetrics commandMetrics(String command) {
+        // 先get，避免computeIfAbsent在key已存在时也加锁
+        CommandMetrics metrics = commands.get(command);
+        if (metrics == null) {
+            CommandMetrics newMetrics = new CommandMetrics();
+            metrics = commands.putIfAbsent(command, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    private static final class CommandMetrics {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    public static class CommandSnapshot {
+
+        private final long requests;
+        private final long errors;
+        private final long timeouts;
+        private final LatencyHistogram.Snapshot latency;
+
+        CommandSnapshot(long requests, long errors, long timeouts, LatencyHistogram.Snapshot latency) {
+            this.requests = requests;
+            this.errors = errors;
+            this.timeouts = timeouts;
+            this.latency = latency;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public LatencyHistogram.Snapshot getLatency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return "{requests=" + requests + ", errors=" + errors + ", timeouts=" + timeouts + ", latency=" + latency + "}";
+        }
+    }
+
+    public static class Snapshot {
+
+        private final Map<String, CommandSnapshot> commands;
+        private final int inFlight;
+        private final long pendingWriteBytes;
+        private final long reconnectCount;
+        private final long disconnectCount;
+
+        Snapshot(Map<String, CommandSnapshot> commands, int inFlight, long pendingWriteBytes, long reconnectCount, long disconnectCount) {
+            this.commands = Collections.unmodifiableMap(commands);
+            this.inFlight = inFlight;
+            this.pendingWriteBytes = pendingWriteBytes;
+            this.reconnectCount = reconnectCount;
+            this.disconnectCount = disconnectCount;
+        }
+
+        public Map<String, CommandSnapshot> getCommands() {
+            return commands;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public long getPendingWriteBytes() {
+            return pendingWriteBytes;
+        }
+
+        public long getReconnectCount() {
+            return reconnectCount;
+        }
+
+        public long getDisconnectCount() {
+            return disconnectCount;
+        }
+
+        @Override
+        public String toString() {
+            return "ClientMetrics{inFlight=" + inFlight + ", pendingWriteBytes=" + pendingWriteBytes + ", reconnects=" + reconnectCount
+                    + ", disconnects=" + disconnectCount + ", commands=" + commands + "}";
+        }
+    }
+}
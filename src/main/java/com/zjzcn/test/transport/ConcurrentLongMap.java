@@ -0,0 +1,242 @@
+package com.zjzcn.test.transport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * long为key的并发哈希表，用于按requestId关联回调。
+ * <pre>
+ * 		分段加锁，每段是开放寻址（线性探测）的原始数组，key不装箱，也没有节点对象
+ * 		删除时做backward shift，不留墓碑，所以表不会因为频繁增删而退化
+ * 		key 0 保留为空槽标记，不能使用
+ * </pre>
+ */
+public class ConcurrentLongMap<V> {
+
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+
+    public ConcurrentLongMap() {
+        this(16, 256);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongMap(int concurrencyLevel, int initialCapacity) {
+        int segmentCount = nextPowerOfTwo(Math.max(1, concurrencyLevel));
+        int segmentCapacity = nextPowerOfTwo(Math.max(4, (int) (initialCapacity / segmentCount / LOAD_FACTOR)));
+        segments = (Segment<V>[]) new Segment<?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentCapacity);
+        }
+        segmentMask = segmentCount - 1;
+    }
+
+    public V put(long key, V value) {
+        checkKey(key);
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        long h = hash(key);
+        return segmentFor(h).put(key, value, h);
+    }
+
+    public V get(long key) {
+        checkKey(key);
+        long h = hash(key);
+        return segmentFor(h).get(key, h);
+    }
+
+    public V remove(long key) {
+        checkKey(key);
+        long h = hash(key);
+        return segmentFor(h).remove(key, h);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * 移除并返回所有value。逐段加锁，不是整张表的原子快照，
+     * 但每个value只会被一次drain或remove拿到。
+     */
+    public List<V> drain() {
+        List<V> drained = new ArrayList<>(size());
+        for (Segment<V> segment : segments) {
+            segment.drainTo(drained);
+        }
+        return drained;
+    }
+
+    private Segment<V> segmentFor(long h) {
+        // 高位选段，低位在段内寻址，两者互不相关
+        return segments[(int) (h >>> 48) & segmentMask];
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("key 0 is reserved");
+        }
+    }
+
+    /**
+     * murmur3 fmix64，requestId的低位是自增计数，高位是时间戳，需要充分打散
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private static final class Segment<V> {
+
+        private long[] keys;
+        private Object[] values;
+        private int mask;
+        private int resizeThreshold;
+        private volatile int size;
+
+        Segment(int capacity) {
+            init(capacity);
+        }
+
+        private void init(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+            resizeThreshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V get(long key, long h) {
+            for (int i = (int) h & mask; ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) {
+                    return (V) values[i];
+                }
+                if (k == EMPTY) {
+                    return null;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V put(long key, V value, long h) {
+            int i = (int) h & mask;
+            for (; ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) {
+                    V old = (V) values[i];
+                    values[i] = value;
+                    return old;
+                }
+                if (k == EMPTY) {
+                    break;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            if (++size > resizeThreshold) {
+                rehash(keys.length << 1);
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V remove(long key, long h) {
+            for (int i = (int) h & mask; ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) {
+                    V old = (V) values[i];
+                    shiftBackward(i);
+                    size--;
+                    return old;
+                }
+                if (k == EMPTY) {
+                    return null;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized void drainTo(List<V> drained) {
+            if (size == 0) {
+                return;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    drained.add((V) values[i]);
+                }
+            }
+            clear();
+        }
+
+        synchronized void clear() {
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(values, null);
+            size = 0;
+        }
+
+        /**
+         * 把空出来的槽位之后、同一探测链上的元素前移，保证查找不会提前遇到空槽
+         */
+        private void shiftBackward(int hole) {
+            int i = (hole + 1) & mask;
+            while (keys[i] != EMPTY) {
+                int ideal = (int) hash(keys[i]) & mask;
+                // ideal 不在 (hole, i] 区间内时可以前移到 hole
+                boolean movable = hole <= i ? (ideal <= hole || ideal > i) : (ideal <= hole && ideal > i);
+                if (movable) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    hole = i;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[hole] = EMPTY;
+            values[hole] = null;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            init(capacity);
+            for (int j = 0; j < oldKeys.length; j++) {
+                long k = oldKeys[j];
+                if (k != EMPTY) {
+                    int i = (int) hash(k) & mask;
+                    while (keys[i] != EMPTY) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = k;
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+}
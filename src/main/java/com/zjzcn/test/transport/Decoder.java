@@ -1,6 +1,18 @@
 package com.zjzcn.test.transport;
 
+import io.netty.buffer.ByteBuf;
+
 public interface Decoder {
 
     Message decode(byte[] data);
+
+    /**
+     * Decode a frame body. The buffer is a slice of the inbound cumulation and is only valid
+     * for the duration of the call, so implementations must not keep a reference to it.
+     */
+    default Message decode(ByteBuf body) {
+        byte[] data = new byte[body.readableBytes()];
+        body.readBytes(data);
+        return decode(data);
+    }
 }
@@ -1,6 +1,15 @@
 package com.zjzcn.test.transport;
 
+import io.netty.buffer.ByteBuf;
+
 public interface Encoder {
 
     byte[] encode(Message msg);
+
+    /**
+     * Encode the message body straight into the outbound buffer.
+     */
+    default void encode(Message msg, ByteBuf out) {
+        out.writeBytes(encode(msg));
+    }
 }
@@ -0,0 +1,118 @@
+package com.zjzcn.test.transport;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数分桶的延迟直方图，无锁，记录一次只有几次原子加。
+ * <pre>
+ * 		以微秒为单位，0-7us每微秒一个桶，之后每个2的幂区间等分为8个子桶，相对误差不超过12.5%
+ * 		上限2^36us(约19小时)，超出的计入最后一个桶
+ * 		快照是逐桶读取的，和并发的记录之间不是严格一致，用于监控足够
+ * </pre>
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        buckets.incrementAndGet(bucketIndex(micros));
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, totalMicros.sum(), maxMicros.get());
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        int index = (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * 桶内的最大值(微秒)，百分位取桶的上界，宁可高估
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (1L << exponent) + ((long) (sub + 1) << shift) - 1;
+    }
+
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long totalMicros;
+        private final long maxMicros;
+
+        Snapshot(long[] counts, long count, long totalMicros, long maxMicros) {
+            this.counts = counts;
+            this.count = count;
+            this.totalMicros = totalMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMicros() {
+            return count == 0 ? 0 : (double) totalMicros / count;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+
+        /**
+         * @param percentile 0到100之间，比如99.9
+         */
+        public long getPercentileMicros(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) {
+                    return Math.min(bucketUpperBound(i), maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count + ", meanUs=" + String.format("%.1f", getMeanMicros())
+                    + ", p50Us=" + getPercentileMicros(50) + ", p90Us=" + getPercentileMicros(90)
+                    + ", p99Us=" + getPercentileMicros(99) + ", p999Us=" + getPercentileMicros(99.9)
+                    + ", maxUs=" + maxMicros + "}";
+        }
+    }
+}
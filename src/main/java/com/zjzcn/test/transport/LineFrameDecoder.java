@@ -0,0 +1,102 @@
+package com.zjzcn.test.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.ByteProcessor;
+
+import java.util.List;
+
+/**
+ * 按换行分帧的增量解码器。
+ * <pre>
+ * 		记住上次扫描到的位置，每次只扫描新到的字节，大响应分多次到达时不会重复扫描
+ * 		完整的一帧以slice交给decodeFrame，不复制，帧不含结尾的\n和\r
+ * 		一帧超过maxFrameLength时丢弃到下一个换行，并抛出TooLongFrameException
+ * </pre>
+ */
+public class LineFrameDecoder extends ByteToMessageDecoder {
+
+	public static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+	private final int maxFrameLength;
+
+	// 相对readerIndex已经扫描过、确认没有换行的字节数
+	private int scanned;
+
+	private boolean discarding;
+	private long discardedBytes;
+
+	public LineFrameDecoder() {
+		this(DEFAULT_MAX_FRAME_LENGTH);
+	}
+
+	public LineFrameDecoder(int maxFrameLength) {
+		this.maxFrameLength = maxFrameLength;
+	}
+
+	@Override
+	protected final void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+		for (;;) {
+			int start = in.readerIndex();
+			int end = in.writerIndex();
+			int eol = in.forEachByte(start + scanned, end - start - scanned, ByteProcessor.FIND_LF);
+			if (eol < 0) {
+				scanned = end - start;
+				if (scanned > maxFrameLength) {
+					discardedBytes += scanned;
+					discarding = true;
+					in.skipBytes(scanned);
+					scanned = 0;
+				}
+				return;
+			}
+
+			scanned = 0;
+			if (discarding) {
+				long length = discardedBytes + eol - start;
+				discarding = false;
+				discardedBytes = 0;
+				in.readerIndex(eol + 1);
+				throw new TooLongFrameException("Line frame length exceeds " + maxFrameLength + ": " + length);
+			}
+
+			int length = eol - start;
+			if (length > 0 && in.getByte(eol - 1) == '\r') {
+				length--;
+			}
+			if (length > maxFrameLength) {
+				in.readerIndex(eol + 1);
+				throw new TooLongFrameException("Line frame length exceeds " + maxFrameLength + ": " + length);
+			}
+
+			ByteBuf frame = in.slice(start, length);
+			in.readerIndex(eol + 1);
+			if (length == 0) {
+				continue;
+			}
+			Object msg = decodeFrame(ctx, frame);
+			if (msg != null) {
+				out.add(msg);
+			}
+		}
+	}
+
+	/**
+	 * frame只在本次调用内有效，默认实现retain后原样传给下一个handler
+	 *
+	 * @return 为null时丢弃这一帧
+	 */
+	protected Object decodeFrame(ChannelHandlerContext ctx, ByteBuf frame) throws Exception {
+		return frame.retain();
+	}
+
+	@Override
+	protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+		scanned = 0;
+		discarding = false;
+		discardedBytes = 0;
+	}
+
+}
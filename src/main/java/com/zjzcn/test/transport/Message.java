@@ -6,7 +6,7 @@ public class Message implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
-	private String requestId;
+	private long requestId;
 	private String messageType;
 	private Object data;
 
@@ -25,11 +25,11 @@ public class Message implements Serializable {
 		this.messageType = messageType;
 	}
 
-	public String getRequestId() {
+	public long getRequestId() {
 		return requestId;
 	}
 
-	public void setRequestId(String requestId) {
+	public void setRequestId(long requestId) {
 		this.requestId = requestId;
 	}
 
@@ -1,19 +1,22 @@
 package com.zjzcn.test.transport;
 
+import com.zjzcn.test.transport.netty.NettyConfig;
+import com.zjzcn.test.transport.netty.NettyTransport;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.SocketAddress;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 public class NettyClient implements Client{
 	
@@ -42,11 +45,10 @@ public class NettyClient implements Client{
 
 		callbackManager = new CallbackManager();
 
-		bootstrap = new Bootstrap();
-		eventLoopGroup = new NioEventLoopGroup();
-		bootstrap.group(eventLoopGroup)
-		.channel(NioSocketChannel.class)
-		.handler(new ChannelInitializer<SocketChannel>() {
+		NettyConfig config = new NettyConfig();
+		eventLoopGroup = NettyTransport.newEventLoopGroup(0, "netty-client", config);
+		bootstrap = NettyTransport.newBootstrap(eventLoopGroup, config);
+		bootstrap.handler(new ChannelInitializer<SocketChannel>() {
 			@Override
 			public void initChannel(SocketChannel ch) throws Exception {
 				ChannelPipeline pipeline = ch.pipeline();
@@ -70,6 +72,13 @@ public class NettyClient implements Client{
 	}
 
 
+    @Override
+    public synchronized void connect() {
+        if (!isConnected()) {
+            doConnect();
+        }
+    }
+
     private void doConnect() {
         logger.info("Netty client connecting...");
         if (isConnecting) {
@@ -102,8 +111,6 @@ public class NettyClient implements Client{
 	public synchronized void close() {
 		logger.info("Netty client closing...");
 		try {
-			// 取消定期的回收任务
-			callbackManager.cancelTimeoutChecker();
 			// 关闭连接池
 			eventLoopGroup.shutdownGracefully();
 			// 清空回调
@@ -122,7 +129,7 @@ public class NettyClient implements Client{
 
     @Override
     public Response send(Request request, long timeoutMillis) {
-        ResponseFuture newResponseFuture = new ResponseFuture(request, timeoutMillis);
+        ResponseFuture newResponseFuture = new ResponseFuture(request, (int) timeoutMillis);
         callbackManager.registerCallback(request.getRequestId(), newResponseFuture);
 
         ChannelFuture writeFuture = channel.write(request);
@@ -131,7 +138,8 @@ public class NettyClient implements Client{
         boolean result = writeFuture.awaitUninterruptibly(timeoutMillis, TimeUnit.MILLISECONDS);
 
         if(result && writeFuture.isSuccess()) {
-            return newResponseFuture.get();
+            newResponseFuture.get();
+            return newResponseFuture.getResponse();
         } else {
             ResponseFuture responseFuture = callbackManager.removeCallback(request.getRequestId());
 
@@ -149,6 +157,59 @@ public class NettyClient implements Client{
         }
     }
 
+    @Override
+    public CompletableFuture<Response> sendAsync(Request request) {
+        return sendAsync(request, REQUEST_TIMEOUT_MS);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(final Request request, long timeoutMillis) {
+        final CompletableFuture<Response> promise = new CompletableFuture<>();
+        final ResponseFuture responseFuture = new ResponseFuture(request, (int) timeoutMillis);
+        responseFuture.addListener(new FutureListener() {
+            @Override
+            public void onComplete(Future future) {
+                if (future.isSuccess()) {
+                    promise.complete(responseFuture.getResponse());
+                } else {
+                    promise.completeExceptionally(future.getException());
+                }
+            }
+        });
+        // 调用方取消时同时移除回调
+        promise.whenComplete(new BiConsumer<Response, Throwable>() {
+            @Override
+            public void accept(Response response, Throwable t) {
+                if (promise.isCancelled() && callbackManager.removeCallback(request.getRequestId()) != null) {
+                    responseFuture.cancel();
+                }
+            }
+        });
+
+        try {
+            callbackManager.registerCallback(request.getRequestId(), responseFuture);
+        } catch (Exception e) {
+            promise.completeExceptionally(e);
+            return promise;
+        }
+
+        channel.writeAndFlush(request).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture writeFuture) {
+                if (writeFuture.isSuccess()) {
+                    return;
+                }
+                String errorMsg = "Error while sending request to server, remoteAddress=" + remoteAddress
+                        + ", localAddress=" + localAddress + ", requestId=" + request.getRequestId();
+                promise.completeExceptionally(new RuntimeException(errorMsg, writeFuture.cause()));
+                if (callbackManager.removeCallback(request.getRequestId()) != null) {
+                    responseFuture.cancel();
+                }
+            }
+        });
+        return promise;
+    }
+
 	@Override
 	public boolean isConnected() {
 		if(channel == null) {
@@ -4,50 +4,46 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageDecoder;
-import me.ele.ai.adam.control.waterapi.JsonUtil;
+import io.netty.util.CharsetUtil;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-
-public class NettyDecoder extends ByteToMessageDecoder {
+/**
+ * 水务协议的响应一行一个JSON，分帧见LineFrameDecoder，每帧只解析一次。
+ */
+public class NettyDecoder extends LineFrameDecoder {
 
 	private Logger logger = LoggerFactory.getLogger(this.getClass());
 
 	@Override
-	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        in.markReaderIndex();
-		byte[] bytes = new byte[in.readableBytes()];
-		in.readBytes(bytes);
-
-		String data = new String(bytes);
-		logger.info("Server received data: {}", data);
-
-        String[] array = data.split("\n");
-        if (!JsonUtil.isValidJson(array[array.length-1])) {
-            in.resetReaderIndex();
-            logger.info("Invalid json data, data: {}", data);
-            return;
+	protected Object decodeFrame(ChannelHandlerContext ctx, ByteBuf frame) throws Exception {
+		String json = frame.toString(CharsetUtil.UTF_8);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Client received data: {}", json);
+		}
+
+        JSONObject jo;
+        try {
+            jo = JSON.parseObject(json);
+        } catch (RuntimeException e) {
+            logger.warn("Invalid json data, data: {}", json, e);
+            return null;
+        }
+        if (jo == null || !"response".equals(jo.getString("type"))) {
+            logger.debug("not response type: {}", json);
+            return null;
         }
 
-        for (String json : array) {
-            JSONObject jo = JSON.parseObject(json);
-            if ("response".equals(jo.getString("type"))) {
-                String uuid = jo.getString("uuid");
-                if (uuid == null) {
-                    logger.warn("uuid is null, data: {}", json);
-                    return;
-                }
-                Response response = new Response();
-                response.setRequestId(uuid);
-                response.setData(json);
-                out.add(response);
-            } else {
-                logger.info("not response type: {}", json);
-            }
+        long uuid = jo.getLongValue("uuid");
+        if (uuid == 0) {
+            logger.warn("uuid is null, data: {}", json);
+            return null;
         }
+        Response response = new Response();
+        response.setRequestId(uuid);
+        response.setData(json);
+        return response;
     }
 
 }
@@ -12,6 +12,13 @@ public class Protocols {
 	
     public static final int MESSAGE_MAGIC = 0xCECE;
     public static final int MESSAGE_HEADER_LENGTH = 16;
+
+    // header field offsets
+    public static final int MESSAGE_TYPE_OFFSET = 2;
+    public static final int MESSAGE_EXT_OFFSET = 3;
+    public static final int REQUEST_ID_OFFSET = 4;
+    public static final int BODY_LENGTH_OFFSET = 12;
+    public static final int MAX_BODY_LENGTH = 16 * 1024 * 1024;
     
     // heartbeat constants start
     public static final int CLIENT_HEARTBEAT_INTERVAL = 2;
@@ -20,7 +27,6 @@ public class Protocols {
     
 	// netty config value
 	public static final int CLIENT_MAX_REQUEST = 2000;
-	public static final int REQUEST_TIMEOUT_TIMER_PERIOD = 100;
     
 	public static class MessageType {
 		public static final byte HEARTBEAT_REQ = 1;
@@ -0,0 +1,42 @@
+package com.zjzcn.test.transport;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 重连的退避时间，指数增长并加随机抖动。
+ * <pre>
+ * 		第n次重连前的上限是 min(max, base * 2^n)，实际等待在 [上限/2, 上限] 之间随机
+ * 		抖动让多个客户端在服务端恢复后错开重连，下限保证不会变成忙等
+ * 		连接成功后调用reset
+ * </pre>
+ */
+public class ReconnectBackoff {
+
+    private final long baseMillis;
+    private final long maxMillis;
+
+    private int attempts;
+
+    public ReconnectBackoff(long baseMillis, long maxMillis) {
+        if (baseMillis <= 0 || maxMillis < baseMillis) {
+            throw new IllegalArgumentException("Invalid backoff: baseMillis=" + baseMillis + ", maxMillis=" + maxMillis);
+        }
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    public synchronized long nextDelayMillis() {
+        long ceiling = attempts < 30 ? Math.min(maxMillis, baseMillis << attempts) : maxMillis;
+        attempts++;
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    public synchronized void reset() {
+        attempts = 0;
+    }
+
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+}
@@ -0,0 +1,50 @@
+package com.zjzcn.test.transport;
+
+/**
+ * 请求超时或被取消。
+ * <pre>
+ * 		压力大时每秒可能有成千上万个，调用方只关心原因不关心堆栈，所以不填充堆栈
+ * 		消息在getMessage时才拼接，构造时只保存几个字段
+ * </pre>
+ */
+public class RequestCancelledException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String TIMEOUT = "timeout";
+	public static final String CANCELED = "canceled";
+	public static final String INTERRUPTED = "interrupted";
+
+	private final String reason;
+	private final long requestId;
+	private final long costMillis;
+
+	public RequestCancelledException(String reason, long requestId, long costMillis) {
+		super(null, null, false, false);
+		this.reason = reason;
+		this.requestId = requestId;
+		this.costMillis = costMillis;
+	}
+
+	@Override
+	public String getMessage() {
+		return "Request " + reason + ": requestId=" + requestId + ", costTimeMs=" + costMillis;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	public boolean isTimeout() {
+		return TIMEOUT.equals(reason);
+	}
+
+	public long getRequestId() {
+		return requestId;
+	}
+
+	public long getCostMillis() {
+		return costMillis;
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.zjzcn.test.transport;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 所有客户端共享的请求超时时间轮。
+ * <pre>
+ * 		请求注册时挂一个超时任务，完成时取消，到期检查的代价只和到期的请求数有关
+ * 		精度由 -Dtransport.timer.tickMs 配置，默认10ms
+ * </pre>
+ */
+public class RequestTimer {
+
+    public static final long TICK_MS = Long.getLong("transport.timer.tickMs", 10);
+    public static final int TICKS_PER_WHEEL = 512;
+
+    private static final Timer timer = new HashedWheelTimer(
+            new DefaultThreadFactory("request-timer", true), TICK_MS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+
+    public static Timer getTimer() {
+        return timer;
+    }
+
+    public static Timeout newTimeout(TimerTask task, long delayMillis) {
+        return timer.newTimeout(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+}
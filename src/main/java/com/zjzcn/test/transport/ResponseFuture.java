@@ -1,28 +1,56 @@
 package com.zjzcn.test.transport;
 
+import io.netty.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 请求的异步结果，无锁实现。
+ * <pre>
+ * 		状态 DOING -> COMPLETING -> DONE/CANCELLED，CAS抢到COMPLETING的一方才能写结果
+ * 		listener和等待的线程压在同一个无锁栈上，完成时整栈取下，按注册顺序通知
+ * 		完成路径不加锁，事件循环上完成请求不会和get的调用方争用
+ * 		超时和取消的异常见RequestCancelledException，没有堆栈
+ * </pre>
+ */
 public class ResponseFuture extends Response implements Future {
-	
+
 	private static final long serialVersionUID = 1L;
-	
+
 	private static Logger logger = LoggerFactory.getLogger(ResponseFuture.class);
-	
-	private volatile FutureState state = FutureState.DOING;
 
-	private Object lock = new Object();
+	private static final int DOING = 0;
+	private static final int COMPLETING = 1;
+	private static final int DONE = 2;
+	private static final int CANCELLED = 3;
+
+	private static final AtomicIntegerFieldUpdater<ResponseFuture> STATE_UPDATER =
+			AtomicIntegerFieldUpdater.newUpdater(ResponseFuture.class, "state");
+	private static final AtomicReferenceFieldUpdater<ResponseFuture, Node> STACK_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(ResponseFuture.class, Node.class, "stack");
+
+	// 栈被完成方取下后的标记，之后注册的listener直接通知
+	private static final Node COMPLETED = new Node(null, null);
 
+	private volatile int state = DOING;
+
+	// 结果字段由state的volatile写发布
 	private Object result = null;
+	private Response response = null;
 	private Exception exception = null;
 
 	private long createTime = System.currentTimeMillis();
 
 	private Request request;
-	private List<FutureListener> listeners;
+
+	private transient volatile Node stack;
+
+	private volatile Timeout timeoutHandle;
 
 	public ResponseFuture(Request requestObj, int timeout) {
 		this.request = requestObj;
@@ -30,69 +58,35 @@ public class ResponseFuture extends Response implements Future {
 	}
 
 	public void onSuccess(Response response) {
-		this.result = response.getData();
-		super.setProcessTime(response.getProcessTime());
-		done();
+		if (STATE_UPDATER.compareAndSet(this, DOING, COMPLETING)) {
+			this.response = response;
+			this.result = response.getData();
+			super.setProcessTime(response.getProcessTime());
+			complete(DONE);
+		}
 	}
 
 	public void onFailure(Response response) {
-		this.exception = response.getException();
-		done();
+		onFailure(response.getException());
 	}
 
-	public String getRequestId() {
+	public void onFailure(Exception exception) {
+		if (STATE_UPDATER.compareAndSet(this, DOING, COMPLETING)) {
+			this.exception = exception;
+			complete(DONE);
+		}
+	}
+
+	public long getRequestId() {
 		return this.request.getRequestId();
 	}
-	
+
 	@Override
 	public Object get() {
-		synchronized (lock) {
-			if (!isDoing()) {
-				return getResultOrThrowException();
-			}
-
-			if (super.getTimeout() <= 0) {
-				try {
-					lock.wait();
-				} catch (InterruptedException e) {
-					cancel(new RuntimeException("ResponseFuture interrupted : requestId=" 
-							+ request.getRequestId() + ", costTimeMs="+ (System.currentTimeMillis() - createTime), e));
-				}
-
-				// don't need to notifylisteners, because onSuccess or
-				// onFailure or cancel method already call notifylisteners
-				return getResultOrThrowException();
-			} else {
-				long waitTime = super.getTimeout() - (System.currentTimeMillis() - createTime);
-
-				if (waitTime > 0) {
-					for (;;) {
-						try {
-							lock.wait(waitTime);
-						} catch (InterruptedException e) {
-							// timeout interruted
-						}
-
-						if (!isDoing()) {
-							break;
-						}
-						
-						waitTime = super.getTimeout() - (System.currentTimeMillis() - createTime);
-						if (waitTime <= 0) {
-							break;
-						}
-					}
-				}
-
-				if (isDoing()) {
-					super.setProcessTime(System.currentTimeMillis() - createTime);
-					Exception e = new RuntimeException("ResponseFuture request timeout: requestId=" + request.getRequestId() 
-								+ ", costTimeMs="+ (System.currentTimeMillis() - createTime));
-					cancel(e);
-				}
-			}
-			return getResultOrThrowException();
+		if (state < DONE) {
+			await();
 		}
+		return getResultOrThrowException();
 	}
 
 	@Override
@@ -102,34 +96,17 @@ public class ResponseFuture extends Response implements Future {
 
 	@Override
 	public boolean cancel() {
-		Exception e = new RuntimeException("ResponseFuture canceled: requestId=" + request.getRequestId()
-			+ ", costTimeMs="+ (System.currentTimeMillis() - createTime));
-		return cancel(e);
-	}
-	
-	private boolean cancel(Exception e) {
-		synchronized (lock) {
-			if (!isDoing()) {
-				return false;
-			}
-
-			state = FutureState.CANCELLED;
-			exception = e;
-			lock.notifyAll();
-		}
-
-		notifyListeners();
-		return true;
+		return cancel(RequestCancelledException.CANCELED);
 	}
 
 	@Override
 	public boolean isCancelled() {
-		return state.isCancelledState();
+		return state == CANCELLED;
 	}
 
 	@Override
 	public boolean isDone() {
-		return state.isDoneState();
+		return state == DONE;
 	}
 
 	@Override
@@ -143,23 +120,16 @@ public class ResponseFuture extends Response implements Future {
 			throw new NullPointerException("FutureListener is null");
 		}
 
-		boolean notifyNow = false;
-		synchronized (lock) {
-			if (!isDoing()) {
-				// is success, failure, timeout or cancel, don't add into
-				// listeners, just notify
-				notifyNow = true;
-			} else {
-				if (listeners == null) {
-					listeners = new ArrayList<FutureListener>(1);
-				}
-
-				listeners.add(listener);
-			}
+		if (!push(new Node(listener, null))) {
+			// is success, failure, timeout or cancel, just notify
+			notifyListener(listener);
 		}
+	}
 
-		if (notifyNow) {
-			notifyListener(listener);
+	public void setTimeoutHandle(Timeout timeoutHandle) {
+		this.timeoutHandle = timeoutHandle;
+		if (state != DOING) {
+			timeoutHandle.cancel();
 		}
 	}
 
@@ -167,54 +137,146 @@ public class ResponseFuture extends Response implements Future {
 		return createTime;
 	}
 
+	public Response getResponse() {
+		return response;
+	}
+
 	public Object getRequestObj() {
 		return request;
 	}
 
 	public FutureState getState() {
-		return state;
+		switch (state) {
+			case DONE:
+				return FutureState.DONE;
+			case CANCELLED:
+				return FutureState.CANCELLED;
+			default:
+				return FutureState.DOING;
+		}
 	}
 
-	private void notifyListeners() {
-		if (listeners != null) {
-			for (FutureListener listener : listeners) {
-				notifyListener(listener);
+	private void await() {
+		int timeout = super.getTimeout();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout - (System.currentTimeMillis() - createTime));
+		if (!push(new Node(null, Thread.currentThread()))) {
+			return;
+		}
+
+		boolean interrupted = false;
+		while (state < DONE) {
+			if (timeout <= 0) {
+				LockSupport.park(this);
+				if (Thread.interrupted()) {
+					interrupted = true;
+					cancel(RequestCancelledException.INTERRUPTED);
+				}
+				continue;
+			}
+
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				super.setProcessTime(System.currentTimeMillis() - createTime);
+				if (!cancel(RequestCancelledException.TIMEOUT)) {
+					// 另一方正在写结果，很快就会完成
+					Thread.yield();
+				}
+				continue;
+			}
+			LockSupport.parkNanos(this, remaining);
+			if (Thread.interrupted()) {
+				// 有超时的等待不响应中断，返回前恢复中断标记
+				interrupted = true;
 			}
 		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
 	}
 
-	private void notifyListener(FutureListener listener) {
-		try {
-			listener.onComplete(this);
-		} catch (Throwable t) {
-			logger.error("NettyResponseFuture notifyListener Error: " + listener.getClass().getSimpleName(), t);
+	private boolean cancel(String reason) {
+		if (!STATE_UPDATER.compareAndSet(this, DOING, COMPLETING)) {
+			return false;
 		}
+		exception = new RequestCancelledException(reason, request.getRequestId(), System.currentTimeMillis() - createTime);
+		complete(CANCELLED);
+		return true;
 	}
 
-	private boolean isDoing() {
-		return state.isDoingState();
+	/**
+	 * 只由CAS抢到COMPLETING的线程调用
+	 */
+	private void complete(int finalState) {
+		state = finalState;
+		cancelTimeoutHandle();
+
+		Node head = STACK_UPDATER.getAndSet(this, COMPLETED);
+		// 栈是后进先出，反转后按注册顺序通知
+		Node ordered = null;
+		while (head != null) {
+			Node next = head.next;
+			head.next = ordered;
+			ordered = head;
+			head = next;
+		}
+		for (Node node = ordered; node != null; node = node.next) {
+			if (node.waiter != null) {
+				LockSupport.unpark(node.waiter);
+			} else {
+				notifyListener(node.listener);
+			}
+		}
 	}
 
-	private boolean done() {
-		synchronized (lock) {
-			if (!isDoing()) {
+	/**
+	 * @return false表示已经完成，没有入栈
+	 */
+	private boolean push(Node node) {
+		for (;;) {
+			Node head = stack;
+			if (head == COMPLETED) {
 				return false;
 			}
+			node.next = head;
+			if (STACK_UPDATER.compareAndSet(this, head, node)) {
+				return true;
+			}
+		}
+	}
 
-			state = FutureState.DONE;
-			lock.notifyAll();
+	private void cancelTimeoutHandle() {
+		Timeout handle = timeoutHandle;
+		if (handle != null) {
+			handle.cancel();
 		}
+	}
 
-		notifyListeners();
-		return true;
+	private void notifyListener(FutureListener listener) {
+		try {
+			listener.onComplete(this);
+		} catch (Throwable t) {
+			logger.error("NettyResponseFuture notifyListener Error: " + listener.getClass().getSimpleName(), t);
+		}
 	}
 
 	private Object getResultOrThrowException() {
 		if (exception != null) {
 			throw (exception instanceof RuntimeException) ? (RuntimeException) exception : new RuntimeException( exception);
 		}
-
 		return result;
 	}
 
-}
\ No newline at end of file
+	private static final class Node {
+
+		private final FutureListener listener;
+		private final Thread waiter;
+		private Node next;
+
+		Node(FutureListener listener, Thread waiter) {
+			this.listener = listener;
+			this.waiter = waiter;
+		}
+	}
+
+}
@@ -3,16 +3,20 @@ package com.zjzcn.test.transport;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.zjzcn.test.transport.netty.NettyClient;
+import com.zjzcn.test.transport.netty.NettyConfig;
 
 public class Test {
 
     public static void main(String[] args) {
+        // water协议没有帧头，直接透传
+        NettyConfig config = new NettyConfig();
+        config.setFramed(false);
         Client client = new NettyClient("192.168.10.10", 31001,
-                new WaterEncoder(), new WaterDecoder());
+                new WaterEncoder(), new WaterDecoder(), config);
         client.connect();
 
         Request request = new Request();
-        request.setRequestId(RequestId.newId() + "");
+        request.setRequestId(RequestId.newId());
         request.setMessageType("/api/markers/query_list");
         request.setData("/api/markers/query_list");
 
@@ -37,7 +41,7 @@ class WaterDecoder implements Decoder {
     public Message decode(byte[] data) {
         String msg = new String(data);
         JSONObject jo = JSON.parseObject(msg);
-        String uuid = jo.getString("uuid");
+        long uuid = jo.getLongValue("uuid");
         String command = jo.getString("command");
         Response response = new Response();
         response.setRequestId(uuid);
@@ -0,0 +1,92 @@
+package com.zjzcn.test.transport.netty;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 业务分发的统计：排队时间是入队到开始执行，处理时间是MessageHandler的执行时间。
+ */
+public class DispatchStats {
+
+	private final LongAdder dispatchedCount = new LongAdder();
+	private final LongAdder rejectedCount = new LongAdder();
+	private final LongAdder queueTimeNanos = new LongAdder();
+	private final LongAdder handlerTimeNanos = new LongAdder();
+	private final LongAccumulator maxQueueTimeNanos = new LongAccumulator(Math::max, 0);
+	private final LongAccumulator maxHandlerTimeNanos = new LongAccumulator(Math::max, 0);
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/**
+	 * 占用一个排队名额，超过maxPending时返回false
+	 */
+	boolean tryAcquire(int maxPending) {
+		for (;;) {
+			int current = pending.get();
+			if (current >= maxPending) {
+				rejectedCount.increment();
+				return false;
+			}
+			if (pending.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	void release() {
+		pending.decrementAndGet();
+	}
+
+	void record(long queueNanos, long handlerNanos) {
+		dispatchedCount.increment();
+		queueTimeNanos.add(queueNanos);
+		handlerTimeNanos.add(handlerNanos);
+		maxQueueTimeNanos.accumulate(queueNanos);
+		maxHandlerTimeNanos.accumulate(handlerNanos);
+	}
+
+	public long getDispatchedCount() {
+		return dispatchedCount.sum();
+	}
+
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	/**
+	 * 已入队还未执行完的请求数
+	 */
+	public int getPending() {
+		return pending.get();
+	}
+
+	public double getAverageQueueTimeMicros() {
+		return average(queueTimeNanos.sum());
+	}
+
+	public double getAverageHandlerTimeMicros() {
+		return average(handlerTimeNanos.sum());
+	}
+
+	public long getMaxQueueTimeMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(maxQueueTimeNanos.get());
+	}
+
+	public long getMaxHandlerTimeMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(maxHandlerTimeNanos.get());
+	}
+
+	private double average(long totalNanos) {
+		long count = dispatchedCount.sum();
+		return count == 0 ? 0 : totalNanos / 1000.0 / count;
+	}
+
+	@Override
+	public String toString() {
+		return "DispatchStats{dispatched=" + getDispatchedCount() + ", rejected=" + getRejectedCount() + ", pending=" + getPending()
+				+ ", avgQueueUs=" + getAverageQueueTimeMicros() + ", maxQueueUs=" + getMaxQueueTimeMicros()
+				+ ", avgHandlerUs=" + getAverageHandlerTimeMicros() + ", maxHandlerUs=" + getMaxHandlerTimeMicros() + "}";
+	}
+
+}
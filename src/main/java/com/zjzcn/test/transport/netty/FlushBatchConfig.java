@@ -0,0 +1,44 @@
+package com.zjzcn.test.transport.netty;
+
+/**
+ * 批量flush的配置，写入的消息达到条数或字节预算时立即flush，否则在窗口结束时flush。
+ * <pre>
+ * 		windowMicros为0时，在IO线程处理完当前排队的写任务后flush
+ * </pre>
+ */
+public class FlushBatchConfig {
+
+	private long windowMicros = 0;
+	private int maxMessages = 64;
+	private int maxBytes = 64 * 1024;
+
+	public long getWindowMicros() {
+		return windowMicros;
+	}
+
+	public void setWindowMicros(long windowMicros) {
+		this.windowMicros = windowMicros;
+	}
+
+	public int getMaxMessages() {
+		return maxMessages;
+	}
+
+	public void setMaxMessages(int maxMessages) {
+		this.maxMessages = maxMessages;
+	}
+
+	public int getMaxBytes() {
+		return maxBytes;
+	}
+
+	public void setMaxBytes(int maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "FlushBatchConfig{windowMicros=" + windowMicros + ", maxMessages=" + maxMessages + ", maxBytes=" + maxBytes + "}";
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.zjzcn.test.transport.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把一段时间内的写合并成一次flush（一次系统调用）。
+ * <pre>
+ * 		放在编码器和head之间，看到的是编码后的ByteBuf，可以按字节计算预算
+ * 		所有方法都在IO线程中执行，不需要同步
+ * </pre>
+ */
+public class FlushBatchHandler extends ChannelDuplexHandler {
+
+	private final FlushBatchConfig config;
+	private final FlushBatchStats stats;
+
+	private ChannelHandlerContext ctx;
+	private int pendingMessages;
+	private long pendingBytes;
+	private boolean flushScheduled;
+	private ScheduledFuture<?> scheduledFlush;
+
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flushScheduled = false;
+			scheduledFlush = null;
+			if (pendingMessages > 0) {
+				flushPending(ctx);
+			}
+		}
+	};
+
+	public FlushBatchHandler(FlushBatchConfig config, FlushBatchStats stats) {
+		this.config = config;
+		this.stats = stats;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		pendingMessages++;
+		pendingBytes += sizeOf(msg);
+		ctx.write(msg, promise);
+
+		if (pendingMessages >= config.getMaxMessages() || pendingBytes >= config.getMaxBytes()) {
+			flushPending(ctx);
+		} else if (!flushScheduled) {
+			flushScheduled = true;
+			if (config.getWindowMicros() > 0) {
+				scheduledFlush = ctx.executor().schedule(flushTask, config.getWindowMicros(), TimeUnit.MICROSECONDS);
+			} else {
+				ctx.executor().execute(flushTask);
+			}
+		}
+	}
+
+	@Override
+	public void flush(ChannelHandlerContext ctx) throws Exception {
+		flushPending(ctx);
+	}
+
+	@Override
+	public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+		flushPending(ctx);
+		ctx.close(promise);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		cancelScheduledFlush();
+	}
+
+	private void flushPending(ChannelHandlerContext ctx) {
+		if (pendingMessages > 0) {
+			stats.record(pendingMessages, pendingBytes);
+			pendingMessages = 0;
+			pendingBytes = 0;
+		}
+		cancelScheduledFlush();
+		ctx.flush();
+	}
+
+	private void cancelScheduledFlush() {
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+			flushScheduled = false;
+		}
+	}
+
+	private static long sizeOf(Object msg) {
+		if (msg instanceof ByteBuf) {
+			return ((ByteBuf) msg).readableBytes();
+		}
+		if (msg instanceof ByteBufHolder) {
+			return ((ByteBufHolder) msg).content().readableBytes();
+		}
+		return 0;
+	}
+
+}
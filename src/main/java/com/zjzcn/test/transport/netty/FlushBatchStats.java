@@ -0,0 +1,53 @@
+package com.zjzcn.test.transport.netty;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 批量flush的统计，跨重连累计。
+ */
+public class FlushBatchStats {
+
+	private final LongAdder flushCount = new LongAdder();
+	private final LongAdder messageCount = new LongAdder();
+	private final LongAdder byteCount = new LongAdder();
+	private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+
+	void record(int messages, long bytes) {
+		flushCount.increment();
+		messageCount.add(messages);
+		byteCount.add(bytes);
+		maxBatchSize.accumulate(messages);
+	}
+
+	public long getFlushCount() {
+		return flushCount.sum();
+	}
+
+	public long getMessageCount() {
+		return messageCount.sum();
+	}
+
+	public long getByteCount() {
+		return byteCount.sum();
+	}
+
+	public long getMaxBatchSize() {
+		return maxBatchSize.get();
+	}
+
+	/**
+	 * 平均每次flush的消息数
+	 */
+	public double getAverageBatchSize() {
+		long flushes = flushCount.sum();
+		return flushes == 0 ? 0 : (double) messageCount.sum() / flushes;
+	}
+
+	@Override
+	public String toString() {
+		return "FlushBatchStats{flushes=" + getFlushCount() + ", messages=" + getMessageCount() + ", bytes=" + getByteCount()
+				+ ", avgBatch=" + getAverageBatchSize() + ", maxBatch=" + getMaxBatchSize() + "}";
+	}
+
+}
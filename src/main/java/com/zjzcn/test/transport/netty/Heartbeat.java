@@ -0,0 +1,44 @@
+package com.zjzcn.test.transport.netty;
+
+import com.zjzcn.test.transport.Message;
+import com.zjzcn.test.transport.Protocols;
+
+/**
+ * 心跳帧，只有帧头没有body，不经过业务的Encoder/Decoder。
+ */
+public final class Heartbeat extends Message {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final Heartbeat REQUEST = new Heartbeat(Protocols.MessageType.HEARTBEAT_REQ);
+	public static final Heartbeat RESPONSE = new Heartbeat(Protocols.MessageType.HEARTBEAT_RESP);
+
+	private final byte type;
+
+	private Heartbeat(byte type) {
+		this.type = type;
+	}
+
+	public byte getType() {
+		return type;
+	}
+
+	public boolean isRequest() {
+		return type == Protocols.MessageType.HEARTBEAT_REQ;
+	}
+
+	@Override
+	public void setRequestId(long requestId) {
+		throw new UnsupportedOperationException("Heartbeat is immutable");
+	}
+
+	@Override
+	public void setMessageType(String messageType) {
+		throw new UnsupportedOperationException("Heartbeat is immutable");
+	}
+
+	@Override
+	public void setData(Object data) {
+		throw new UnsupportedOperationException("Heartbeat is immutable");
+	}
+}
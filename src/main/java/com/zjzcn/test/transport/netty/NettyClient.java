@@ -1,6 +1,10 @@
 package com.zjzcn.test.transport.netty;
 
+import com.zjzcn.test.transport.AdmissionController;
+import com.zjzcn.test.transport.AdmissionStats;
+import com.zjzcn.test.transport.CallbackManager;
 import com.zjzcn.test.transport.Client;
+import com.zjzcn.test.transport.ClientMetrics;
 import com.zjzcn.test.transport.Decoder;
 import com.zjzcn.test.transport.Encoder;
 import com.zjzcn.test.transport.Future;
@@ -10,41 +14,40 @@ import com.zjzcn.test.transport.Protocols;
 import com.zjzcn.test.transport.Request;
 import com.zjzcn.test.transport.Response;
 import com.zjzcn.test.transport.ResponseFuture;
+import com.zjzcn.test.transport.serialization.MessageCodec;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.timeout.IdleStateHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.SocketAddress;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 public class NettyClient implements Client {
 	
 	private static Logger logger = LoggerFactory.getLogger(NettyClient.class);
 
-	// 回收过期任务
-	private static ScheduledExecutorService requestTimeoutExecutor = Executors.newScheduledThreadPool(4);
-	// 异步的request，需要注册callback future
-	// 触发remove的操作有： 1) service的返回结果处理。 2) timeout thread cancel
-	private ConcurrentMap<String, ResponseFuture> callbackMap = new ConcurrentHashMap<>();
-	private ScheduledFuture<?> requestTimeoutFuture = null;
+	private static final MessageCodec DEFAULT_CODEC = new MessageCodec();
+
+	// 异步的request，需要注册callback future，超时由共享的时间轮回收
+	private CallbackManager callbackManager = new CallbackManager();
 	
 	private EventLoopGroup eventLoopGroup;
-	private Channel channel;
+	// 为null时eventLoopGroup由本实例创建
+	private TransportResources resources;
+	private boolean resourcesReleased = false;
+	private volatile Channel channel;
 	private Bootstrap bootstrap;
 	
 	private String serverHost;
@@ -54,23 +57,46 @@ public class NettyClient implements Client {
 	private SocketAddress localAddress;
 	private SocketAddress remoteAddress;
 	
-	private AtomicLong errorCount = new AtomicLong(0);
-	private AtomicLong sendCount = new AtomicLong(0);
+	private ClientMetrics metrics = new ClientMetrics();
+
+	private AdmissionController admission;
 	
+	/**
+	 * 消息体用MessageCodec编解码，config必须是分帧协议
+	 */
+	public NettyClient(String serverHost, int serverPort, NettyConfig config) {
+		this(serverHost, serverPort, DEFAULT_CODEC, DEFAULT_CODEC, config);
+	}
+
 	public NettyClient(String serverHost, int serverPort, Encoder encoder, Decoder decoder) {
+		this(serverHost, serverPort, encoder, decoder, new NettyConfig());
+	}
+
+	public NettyClient(String serverHost, int serverPort, Encoder encoder, Decoder decoder, NettyConfig config) {
 		this.serverHost = serverHost;
 		this.serverPort = serverPort;
+		this.admission = config.newAdmissionController();
 
-		bootstrap = new Bootstrap();
-		eventLoopGroup = new NioEventLoopGroup();
-		bootstrap.group(eventLoopGroup)
-		.channel(NioSocketChannel.class)
-		.handler(new ChannelInitializer<SocketChannel>() {
+		if (config.isSharedResources()) {
+			resources = TransportResources.acquire(config);
+			eventLoopGroup = resources.getEventLoopGroup();
+		} else {
+			eventLoopGroup = NettyTransport.newEventLoopGroup(0, "netty-client", config);
+		}
+		bootstrap = NettyTransport.newBootstrap(eventLoopGroup, config);
+		bootstrap.handler(new ChannelInitializer<SocketChannel>() {
 			@Override
 			public void initChannel(SocketChannel ch) throws Exception {
 				ChannelPipeline pipeline = ch.pipeline();
-				pipeline.addLast("decoder", new NettyEncoder(encoder));
-				pipeline.addLast("encoder", new NettyDecoder(decoder));
+				if (config.isFramed()) {
+					pipeline.addLast("encoder", new NettyFrameEncoder(encoder));
+					pipeline.addLast("decoder", new NettyFrameDecoder(decoder, config.getMaxBodyLength()));
+					// 只有分帧协议能承载心跳帧
+					pipeline.addLast("heartbeat", new IdleStateHandler(Protocols.CLIENT_IDLE_TIMEOUT, Protocols.CLIENT_HEARTBEAT_INTERVAL, 0, TimeUnit.SECONDS));
+				} else {
+					pipeline.addLast("encoder", new NettyEncoder(encoder));
+					pipeline.addLast("decoder", new NettyDecoder(decoder));
+				}
 				pipeline.addLast("handler", new NettyClientHandler(new MessageHandler() {
 					@Override
 					public Response handleRequest(Request request) {
@@ -92,29 +118,30 @@ public class NettyClient implements Client {
 							responseFuture.onSuccess(response);
 						}
 					}
-				}));
-			}
-		});
+				}) {
+					@Override
+					public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+						// 连接断开时未完成的请求立即失败，不必等到超时
+						if (ctx.channel() == channel) {
+							metrics.recordDisconnect();
+							// 断开的连接上写会立即失败，不让等待的请求卡住
+							admission.setWritable(true);
+							int failed = callbackManager.failAll(new RuntimeException("Channel inactive, remoteAddress=" + remoteAddress));
+							logger.info("NettyClient disconnected, remoteAddress={}, failedRequests={}", remoteAddress, failed);
+						}
+						super.channelInactive(ctx);
+					}
 
-		requestTimeoutFuture = requestTimeoutExecutor.scheduleWithFixedDelay( new Runnable() {
-			@Override
-			public void run() {
-				long currentTime = System.currentTimeMillis();
-				for (Map.Entry<String, ResponseFuture> entry : callbackMap.entrySet()) {
-					try {
-						ResponseFuture future = entry.getValue();
-
-						if (future.getCreateTime() + future.getTimeout() < currentTime) {
-							// timeout: remove from callback list, and then cancel
-							removeCallback(entry.getKey());
-							future.cancel();
-						} 
-					} catch (Exception e) {
-						logger.error("NettyClient clear timeout NettyResponseFuture Error:  remoteAddress=" + remoteAddress + " requestId=" + entry.getKey(), e);
+					@Override
+					public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+						if (ctx.channel() == channel) {
+							admission.setWritable(ctx.channel().isWritable());
+						}
+						super.channelWritabilityChanged(ctx);
 					}
-				}
+				});
 			}
-		}, Protocols.REQUEST_TIMEOUT_TIMER_PERIOD, Protocols.REQUEST_TIMEOUT_TIMER_PERIOD, TimeUnit.MILLISECONDS);
+		});
 	}
 	
 	@Override
@@ -124,6 +151,7 @@ public class NettyClient implements Client {
 			channel = bootstrap.connect(serverHost, serverPort).sync().channel();
 			localAddress = channel.localAddress();
 			remoteAddress = channel.remoteAddress();
+			admission.setWritable(channel.isWritable());
 			logger.info("Netty client connected. localAttress[{}], remoteAddress[{}].", localAddress, remoteAddress);
 		} catch (Exception e) {
 			logger.error("Netty client error while connecting.", e);
@@ -134,10 +162,13 @@ public class NettyClient implements Client {
 	public synchronized void reconnect() {
 		logger.info("Http client connecting.");
 		try {
+			metrics.recordReconnect();
+			callbackManager.failAll(new RuntimeException("Channel closed by reconnect, remoteAddress=" + remoteAddress));
 			channel.close();
 			channel = bootstrap.connect(serverHost, serverPort).sync().channel();
 			localAddress = channel.localAddress();
 			remoteAddress = channel.remoteAddress();
+			admission.setWritable(channel.isWritable());
 			logger.info("Netty client connected. localAttress[{}], remoteAddress[{}].", localAddress, remoteAddress);
 		} catch (Exception e) {
 			logger.error("Netty client error while connecting.", e);
@@ -148,13 +179,11 @@ public class NettyClient implements Client {
 	public synchronized void close() {
 		logger.info("Http client closing.");
 		try {
-			// 取消定期的回收任务
-			requestTimeoutFuture.cancel(true);
 			// 关闭连接池
-			eventLoopGroup.shutdownGracefully();
+			releaseEventLoopGroup();
 			channel.close();
-			// 清空callback
-			callbackMap.clear();
+			// 未完成的请求立即失败
+			callbackManager.failAll(new RuntimeException("NettyClient closed, remoteAddress=" + remoteAddress));
 
 			logger.info("Netty client closed, remoteAddress={}", remoteAddress);
 		} catch (Exception e) {
@@ -162,26 +191,41 @@ public class NettyClient implements Client {
 		}
 	}
 
+	/**
+	 * 共享的EventLoopGroup只减少引用计数，重复close不会重复释放
+	 */
+	private void releaseEventLoopGroup() {
+		if (resources == null) {
+			eventLoopGroup.shutdownGracefully();
+		} else if (!resourcesReleased) {
+			resourcesReleased = true;
+			resources.release();
+		}
+	}
+
 	@Override
 	public Response send(Request request) {
-		sendCount.incrementAndGet();
-		ResponseFuture newResponseFuture = new ResponseFuture(request, timeout);
+		return send(request, timeout);
+	}
+
+	@Override
+	public Response send(Request request, long timeoutMillis) {
+		try {
+			admission.acquire();
+		} catch (RuntimeException e) {
+			metrics.record(request.getMessageType(), 0, ClientMetrics.Outcome.ERROR);
+			throw e;
+		}
+		ResponseFuture newResponseFuture = new ResponseFuture(request, (int) timeoutMillis);
+		releaseOnComplete(newResponseFuture);
+		instrument(newResponseFuture);
 		registerCallback(request.getRequestId(), newResponseFuture);
 		
-		ChannelFuture writeFuture = this.channel.write(request);
+		ChannelFuture writeFuture = this.channel.writeAndFlush(request);
 
-		boolean result = writeFuture.awaitUninterruptibly(timeout, TimeUnit.MILLISECONDS);
+		boolean result = writeFuture.awaitUninterruptibly(timeoutMillis, TimeUnit.MILLISECONDS);
 
 		if(result && writeFuture.isSuccess()) {
-			newResponseFuture.addListener(new FutureListener() {
-				@Override
-				public void onComplete(Future future) throws Exception {
-					if (!future.isSuccess() || (future.isDone() && future.getException()!=null)) {
-						// 失败的调用 
-						errorCount.incrementAndGet();
-					}
-				}
-			});
 			return newResponseFuture;	
 		} else {
 			ResponseFuture responseFuture = removeCallback(request.getRequestId());
@@ -190,9 +234,6 @@ public class NettyClient implements Client {
 				responseFuture.cancel();
 			}
 
-			// 失败的调用 
-			errorCount.incrementAndGet();
-
 			String errorMsg = "Error while sending request to server, remoteAddress=" + remoteAddress
 					+ ", localAddress=" + localAddress +", requestId=" +  request.getRequestId();
 			if (writeFuture.cause()!= null) {
@@ -203,6 +244,84 @@ public class NettyClient implements Client {
 		}
 	}
 
+	@Override
+	public CompletableFuture<Response> sendAsync(Request request) {
+		return sendAsync(request, timeout);
+	}
+
+	/**
+	 * 从不阻塞调用线程：FAIL_FAST和BLOCK放不行时返回异常完成的future，BLOCK只作用于同步的send；
+	 * ASYNC策略下排队等待，放行后在释放名额的线程上发送
+	 */
+	@Override
+	public CompletableFuture<Response> sendAsync(final Request request, final long timeoutMillis) {
+		final CompletableFuture<Response> promise = new CompletableFuture<>();
+		admission.acquireAsync().whenComplete(new BiConsumer<Void, Throwable>() {
+			@Override
+			public void accept(Void admitted, Throwable t) {
+				if (t != null) {
+					metrics.record(request.getMessageType(), 0, ClientMetrics.Outcome.ERROR);
+					promise.completeExceptionally(t);
+				} else {
+					doSendAsync(request, timeoutMillis, promise);
+				}
+			}
+		});
+		return promise;
+	}
+
+	private void doSendAsync(final Request request, long timeoutMillis, final CompletableFuture<Response> promise) {
+		if (promise.isDone()) {
+			// 排队期间调用方已经取消
+			admission.release();
+			return;
+		}
+		final ResponseFuture responseFuture = new ResponseFuture(request, (int) timeoutMillis);
+		releaseOnComplete(responseFuture);
+		instrument(responseFuture);
+		responseFuture.addListener(new FutureListener() {
+			@Override
+			public void onComplete(Future future) throws Exception {
+				if (future.isSuccess()) {
+					promise.complete(responseFuture.getResponse());
+				} else {
+					promise.completeExceptionally(future.getException());
+				}
+			}
+		});
+		// 调用方取消时同时移除回调
+		promise.whenComplete(new BiConsumer<Response, Throwable>() {
+			@Override
+			public void accept(Response response, Throwable t) {
+				if (promise.isCancelled() && removeCallback(request.getRequestId()) != null) {
+					responseFuture.cancel();
+				}
+			}
+		});
+
+		try {
+			registerCallback(request.getRequestId(), responseFuture);
+		} catch (Exception e) {
+			responseFuture.onFailure(e);
+			return;
+		}
+
+		this.channel.writeAndFlush(request).addListener(new ChannelFutureListener() {
+			@Override
+			public void operationComplete(ChannelFuture writeFuture) throws Exception {
+				if (writeFuture.isSuccess()) {
+					return;
+				}
+				String errorMsg = "Error while sending request to server, remoteAddress=" + remoteAddress
+						+ ", localAddress=" + localAddress +", requestId=" +  request.getRequestId();
+				promise.completeExceptionally(new RuntimeException(errorMsg, writeFuture.cause()));
+				if (removeCallback(request.getRequestId()) != null) {
+					responseFuture.cancel();
+				}
+			}
+		});
+	}
+
 	@Override
 	public boolean isConnected() {
 		if(channel == null) {
@@ -221,16 +340,61 @@ public class NettyClient implements Client {
 		return remoteAddress;
 	}
 	
-	public void registerCallback(String requestId, ResponseFuture nettyResponseFuture) {
-		if (this.callbackMap.size() >= Protocols.CLIENT_MAX_REQUEST) {
-			throw new RuntimeException("Client over max concurrent request, drop request, remoteAddress="
-					+ remoteAddress + " requestId=" + requestId);
+	/**
+	 * 拉取当前的统计快照
+	 */
+	public ClientMetrics.Snapshot getMetricsSnapshot() {
+		return metrics.snapshot(callbackManager.getCallbackCount(), getPendingWriteBytes());
+	}
+
+	/**
+	 * 已写入channel但还没发到socket的字节数
+	 */
+	public long getPendingWriteBytes() {
+		Channel ch = channel;
+		if (ch == null) {
+			return 0;
 		}
-		this.callbackMap.put(requestId, nettyResponseFuture);
+		ChannelOutboundBuffer outboundBuffer = ch.unsafe().outboundBuffer();
+		return outboundBuffer == null ? 0 : outboundBuffer.totalPendingWriteBytes();
+	}
+
+	/**
+	 * 准入控制的统计，包括拒绝数和排队等待时间
+	 */
+	public AdmissionStats getAdmissionStats() {
+		return admission.getStats();
+	}
+
+	private void releaseOnComplete(ResponseFuture responseFuture) {
+		responseFuture.addListener(new FutureListener() {
+			@Override
+			public void onComplete(Future future) throws Exception {
+				admission.release();
+			}
+		});
+	}
+
+	private void instrument(ResponseFuture responseFuture) {
+		final long startNanos = System.nanoTime();
+		final String command = ((Request) responseFuture.getRequestObj()).getMessageType();
+		responseFuture.addListener(new FutureListener() {
+			@Override
+			public void onComplete(Future future) throws Exception {
+				// 超时和写失败都是cancel，统一计为TIMEOUT
+				ClientMetrics.Outcome outcome = future.isCancelled() ? ClientMetrics.Outcome.TIMEOUT
+						: future.isSuccess() ? ClientMetrics.Outcome.SUCCESS : ClientMetrics.Outcome.ERROR;
+				metrics.record(command, System.nanoTime() - startNanos, outcome);
+			}
+		});
+	}
+
+	public void registerCallback(long requestId, ResponseFuture nettyResponseFuture) {
+		callbackManager.registerCallback(requestId, nettyResponseFuture);
 	}
 	
-	public ResponseFuture removeCallback(String requestId) {
-		return callbackMap.remove(requestId);
+	public ResponseFuture removeCallback(long requestId) {
+		return callbackManager.removeCallback(requestId);
 	}
 
 }
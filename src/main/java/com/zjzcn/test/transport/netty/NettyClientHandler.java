@@ -5,6 +5,8 @@ import com.zjzcn.test.transport.Request;
 import com.zjzcn.test.transport.Response;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,9 +20,29 @@ public class NettyClientHandler extends ChannelInboundHandlerAdapter {
 		this.messageHandler = messageHandler;
 	}
 
+	@Override
+	public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+		if (evt instanceof IdleStateEvent) {
+			IdleStateEvent e = (IdleStateEvent) evt;
+			if (e.state() == IdleState.WRITER_IDLE) {
+				ctx.writeAndFlush(Heartbeat.REQUEST);
+			} else if (e.state() == IdleState.READER_IDLE) {
+				logger.info("NettyClient receive heartbeat timeout, channel will close. localAddress={}, remoteAddress={}", ctx.channel().localAddress(), ctx.channel().remoteAddress());
+				ctx.close();
+			}
+		} else {
+			super.userEventTriggered(ctx, evt);
+		}
+	}
+
 	@Override
 	public void channelRead(ChannelHandlerContext ctx, Object msg) {
-		if (msg instanceof Request) {
+		if (msg instanceof Heartbeat) {
+			// 心跳响应只用于刷新读空闲计时，不交给业务
+			if (((Heartbeat) msg).isRequest()) {
+				ctx.write(Heartbeat.RESPONSE);
+			}
+		} else if (msg instanceof Request) {
 			Request request = (Request) msg;
 			long processStartTime = System.currentTimeMillis();
 			try {
@@ -0,0 +1,260 @@
+package com.zjzcn.test.transport.netty;
+
+import com.zjzcn.test.transport.AdmissionController;
+import com.zjzcn.test.transport.Protocols;
+
+public class NettyConfig {
+
+	// 使用Protocols定义的帧格式编解码，false时直接透传body
+	private boolean framed = true;
+	private int maxBodyLength = Protocols.MAX_BODY_LENGTH;
+
+	// 服务端业务分发，见RequestDispatcher
+	private RequestDispatcher.Mode dispatchMode = RequestDispatcher.Mode.INLINE;
+	private int dispatchThreads = Runtime.getRuntime().availableProcessors() * 2;
+	private int dispatchMaxPending = 10000;
+
+	// 客户端准入控制，见AdmissionController
+	private AdmissionController.Policy admissionPolicy = AdmissionController.Policy.BLOCK;
+	private int maxInFlight = Protocols.CLIENT_MAX_REQUEST;
+	private long admissionMaxWaitMillis = AdmissionController.DEFAULT_MAX_WAIT_MS;
+
+	// IO线程，见TransportResources
+	// true时使用进程内共享的EventLoopGroup，false时每个实例单独创建
+	private boolean sharedResources = true;
+	// 共享EventLoopGroup的线程数，只在第一次创建时生效，0表示使用TransportResources.DEFAULT_IO_THREADS
+	private int ioThreads = 0;
+
+	// socket参数，见NettyTransport
+	// Linux上优先使用native epoll，不可用时回退到NIO
+	private boolean nativeTransport = true;
+	private boolean tcpNoDelay = true;
+	private boolean keepAlive = false;
+	// 设置可以重用time_wait的socket
+	private boolean reuseAddress = true;
+	// 只有epoll支持，多个进程可以监听同一端口
+	private boolean reusePort = false;
+	private int backlog = 20000;
+	// 设置SO_LINGER为2秒，小于0时不设置
+	private int soLinger = 2;
+	// 客户端连接超时，0表示使用netty默认值
+	private int connectTimeoutMillis = 0;
+	// false时客户端构造时不等待连接建立，失败后按退避在后台重连，同时创建大量客户端时使用
+	private boolean blockingConnect = true;
+	// socket缓冲区大小，0表示使用系统默认值
+	private int sendBufferSize = 0;
+	private int receiveBufferSize = 0;
+	// 写缓冲超过高水位时channel变为不可写，降到低水位以下恢复
+	private int writeBufferLowWaterMark = 32 * 1024;
+	private int writeBufferHighWaterMark = 64 * 1024;
+	private boolean pooledAllocator = true;
+	private boolean preferDirect = true;
+
+	public boolean isFramed() {
+		return framed;
+	}
+
+	public void setFramed(boolean framed) {
+		this.framed = framed;
+	}
+
+	public int getMaxBodyLength() {
+		return maxBodyLength;
+	}
+
+	public void setMaxBodyLength(int maxBodyLength) {
+		this.maxBodyLength = maxBodyLength;
+	}
+
+	public RequestDispatcher.Mode getDispatchMode() {
+		return dispatchMode;
+	}
+
+	public void setDispatchMode(RequestDispatcher.Mode dispatchMode) {
+		this.dispatchMode = dispatchMode;
+	}
+
+	public int getDispatchThreads() {
+		return dispatchThreads;
+	}
+
+	public void setDispatchThreads(int dispatchThreads) {
+		this.dispatchThreads = dispatchThreads;
+	}
+
+	public int getDispatchMaxPending() {
+		return dispatchMaxPending;
+	}
+
+	public void setDispatchMaxPending(int dispatchMaxPending) {
+		this.dispatchMaxPending = dispatchMaxPending;
+	}
+
+	public AdmissionController.Policy getAdmissionPolicy() {
+		return admissionPolicy;
+	}
+
+	public void setAdmissionPolicy(AdmissionController.Policy admissionPolicy) {
+		this.admissionPolicy = admissionPolicy;
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+
+	public long getAdmissionMaxWaitMillis() {
+		return admissionMaxWaitMillis;
+	}
+
+	public void setAdmissionMaxWaitMillis(long admissionMaxWaitMillis) {
+		this.admissionMaxWaitMillis = admissionMaxWaitMillis;
+	}
+
+	/**
+	 * 每个连接一个，可写性是按连接的
+	 */
+	public AdmissionController newAdmissionController() {
+		return new AdmissionController(maxInFlight, admissionPolicy, admissionMaxWaitMillis);
+	}
+
+	public boolean isSharedResources() {
+		return sharedResources;
+	}
+
+	public void setSharedResources(boolean sharedResources) {
+		this.sharedResources = sharedResources;
+	}
+
+	public int getIoThreads() {
+		return ioThreads;
+	}
+
+	public void setIoThreads(int ioThreads) {
+		this.ioThreads = ioThreads;
+	}
+
+	public boolean isNativeTransport() {
+		return nativeTransport;
+	}
+
+	public void setNativeTransport(boolean nativeTransport) {
+		this.nativeTransport = nativeTransport;
+	}
+
+	public boolean isTcpNoDelay() {
+		return tcpNoDelay;
+	}
+
+	public void setTcpNoDelay(boolean tcpNoDelay) {
+		this.tcpNoDelay = tcpNoDelay;
+	}
+
+	public boolean isKeepAlive() {
+		return keepAlive;
+	}
+
+	public void setKeepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+	public boolean isReuseAddress() {
+		return reuseAddress;
+	}
+
+	public void setReuseAddress(boolean reuseAddress) {
+		this.reuseAddress = reuseAddress;
+	}
+
+	public boolean isReusePort() {
+		return reusePort;
+	}
+
+	public void setReusePort(boolean reusePort) {
+		this.reusePort = reusePort;
+	}
+
+	public int getBacklog() {
+		return backlog;
+	}
+
+	public void setBacklog(int backlog) {
+		this.backlog = backlog;
+	}
+
+	public int getSoLinger() {
+		return soLinger;
+	}
+
+	public void setSoLinger(int soLinger) {
+		this.soLinger = soLinger;
+	}
+
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	public boolean isBlockingConnect() {
+		return blockingConnect;
+	}
+
+	public void setBlockingConnect(boolean blockingConnect) {
+		this.blockingConnect = blockingConnect;
+	}
+
+	public int getSendBufferSize() {
+		return sendBufferSize;
+	}
+
+	public void setSendBufferSize(int sendBufferSize) {
+		this.sendBufferSize = sendBufferSize;
+	}
+
+	public int getReceiveBufferSize() {
+		return receiveBufferSize;
+	}
+
+	public void setReceiveBufferSize(int receiveBufferSize) {
+		this.receiveBufferSize = receiveBufferSize;
+	}
+
+	public int getWriteBufferLowWaterMark() {
+		return writeBufferLowWaterMark;
+	}
+
+	public void setWriteBufferLowWaterMark(int writeBufferLowWaterMark) {
+		this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+	}
+
+	public int getWriteBufferHighWaterMark() {
+		return writeBufferHighWaterMark;
+	}
+
+	public void setWriteBufferHighWaterMark(int writeBufferHighWaterMark) {
+		this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+	}
+
+	public boolean isPooledAllocator() {
+		return pooledAllocator;
+	}
+
+	public void setPooledAllocator(boolean pooledAllocator) {
+		this.pooledAllocator = pooledAllocator;
+	}
+
+	public boolean isPreferDirect() {
+		return preferDirect;
+	}
+
+	public void setPreferDirect(boolean preferDirect) {
+		this.preferDirect = preferDirect;
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.zjzcn.test.transport.netty;
+
+import com.zjzcn.test.transport.Decoder;
+import com.zjzcn.test.transport.Message;
+import com.zjzcn.test.transport.Protocols;
+import com.zjzcn.test.transport.serialization.MessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * 按{@link Protocols}中的帧格式解码。帧一完整就从累积缓冲区中切出，
+ * 消息体以slice交给{@link Decoder}，这里不复制；没有指定Decoder时用{@link MessageCodec}解码消息体。
+ */
+public class NettyFrameDecoder extends ByteToMessageDecoder {
+
+	private static Logger logger = LoggerFactory.getLogger(NettyFrameDecoder.class);
+
+	private Decoder decoder;
+	private int maxBodyLength;
+
+	public NettyFrameDecoder() {
+		this(new MessageCodec());
+	}
+
+	public NettyFrameDecoder(Decoder decoder) {
+		this(decoder, Protocols.MAX_BODY_LENGTH);
+	}
+
+	public NettyFrameDecoder(Decoder decoder, int maxBodyLength) {
+		this.decoder = decoder;
+		this.maxBodyLength = maxBodyLength;
+	}
+
+	@Override
+	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+		while (in.readableBytes() >= Protocols.MESSAGE_HEADER_LENGTH) {
+			int frameIndex = in.readerIndex();
+
+			int magic = in.getUnsignedShort(frameIndex);
+			if (magic != Protocols.MESSAGE_MAGIC) {
+				in.skipBytes(in.readableBytes());
+				throw new CorruptedFrameException("Invalid frame magic: 0x" + Integer.toHexString(magic));
+			}
+
+			int bodyLength = in.getInt(frameIndex + Protocols.BODY_LENGTH_OFFSET);
+			if (bodyLength < 0 || bodyLength > maxBodyLength) {
+				in.skipBytes(in.readableBytes());
+				throw new TooLongFrameException("Invalid frame body length: " + bodyLength + ", max=" + maxBodyLength);
+			}
+
+			int frameLength = Protocols.MESSAGE_HEADER_LENGTH + bodyLength;
+			if (in.readableBytes() < frameLength) {
+				// 等待帧的剩余部分
+				return;
+			}
+
+			byte type = in.getByte(frameIndex + Protocols.MESSAGE_TYPE_OFFSET);
+			long requestId = in.getLong(frameIndex + Protocols.REQUEST_ID_OFFSET);
+			ByteBuf body = in.slice(frameIndex + Protocols.MESSAGE_HEADER_LENGTH, bodyLength);
+			in.skipBytes(frameLength);
+
+			Message msg = decodeFrame(type, requestId, body);
+			if (msg != null) {
+				out.add(msg);
+			}
+		}
+	}
+
+	private Message decodeFrame(byte type, long requestId, ByteBuf body) {
+		switch (type) {
+			case Protocols.MessageType.HEARTBEAT_REQ:
+				return Heartbeat.REQUEST;
+			case Protocols.MessageType.HEARTBEAT_RESP:
+				return Heartbeat.RESPONSE;
+			case Protocols.MessageType.MESSAGE_REQ:
+			case Protocols.MessageType.MESSAGE_RESP:
+				Message msg = decoder.decode(body);
+				if (msg != null && msg.getRequestId() == 0) {
+					msg.setRequestId(requestId);
+				}
+				return msg;
+			default:
+				logger.warn("NettyFrameDecoder drop frame of unknown type: type={}, requestId={}", type, requestId);
+				return null;
+		}
+	}
+
+}
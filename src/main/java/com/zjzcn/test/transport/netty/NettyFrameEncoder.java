@@ -0,0 +1,52 @@
+package com.zjzcn.test.transport.netty;
+
+import com.zjzcn.test.transport.Encoder;
+import com.zjzcn.test.transport.Message;
+import com.zjzcn.test.transport.Protocols;
+import com.zjzcn.test.transport.Request;
+import com.zjzcn.test.transport.serialization.MessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+/**
+ * 按{@link Protocols}中的帧格式编码。先写入消息体长度为0的帧头，消息体直接编码到同一个缓冲区，
+ * 最后回填长度；没有指定Encoder时用{@link MessageCodec}编码，attachments按messageType选择Serializer。
+ */
+public class NettyFrameEncoder extends MessageToByteEncoder<Message> {
+
+	private Encoder encoder;
+
+	public NettyFrameEncoder() {
+		this(new MessageCodec());
+	}
+
+	public NettyFrameEncoder(Encoder encoder) {
+		this.encoder = encoder;
+	}
+
+	@Override
+	protected void encode(ChannelHandlerContext ctx, Message in, ByteBuf out) throws Exception {
+		if (in instanceof Heartbeat) {
+			out.writeShort(Protocols.MESSAGE_MAGIC);
+			out.writeByte(((Heartbeat) in).getType());
+			out.writeByte(0);
+			out.writeLong(0);
+			out.writeInt(0);
+			return;
+		}
+
+		int frameIndex = out.writerIndex();
+
+		out.writeShort(Protocols.MESSAGE_MAGIC);
+		out.writeByte(in instanceof Request ? Protocols.MessageType.MESSAGE_REQ : Protocols.MessageType.MESSAGE_RESP);
+		out.writeByte(0);
+		out.writeLong(in.getRequestId());
+		out.writeInt(0);
+
+		int bodyIndex = out.writerIndex();
+		encoder.encode(in, out);
+		out.setInt(frameIndex + Protocols.BODY_LENGTH_OFFSET, out.writerIndex() - bodyIndex);
+	}
+
+}
@@ -5,17 +5,17 @@ import com.zjzcn.test.transport.Encoder;
 import com.zjzcn.test.transport.MessageHandler;
 import com.zjzcn.test.transport.Protocols;
 import com.zjzcn.test.transport.Server;
+import com.zjzcn.test.transport.serialization.MessageCodec;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,54 +27,68 @@ public class NettyServer implements Server {
 	
 	private static Logger logger = LoggerFactory.getLogger(NettyServer.class);
 
+	private static final MessageCodec DEFAULT_CODEC = new MessageCodec();
+
 	private EventLoopGroup bossGroup;
 	private EventLoopGroup workerGroup;
+	// 为null时boss和worker由本实例创建
+	private TransportResources resources;
 	
 	private ServerBootstrap bootstrap;
 	private Channel channel;
 	private SocketAddress localAddress;
+	// 已接受的连接，共享EventLoopGroup时close不会关闭线程池，需要逐个关闭
+	private ChannelGroup childChannels = new DefaultChannelGroup("netty-server-children", GlobalEventExecutor.INSTANCE);
+
+	private RequestDispatcher dispatcher;
 	
 	public NettyServer(int bossThreads, int workerThreads, Encoder encoder, Decoder decoder, final MessageHandler messageHandler) {
-		if(bossThreads > 0) {
-			bossGroup = new NioEventLoopGroup(bossThreads);
-		} else {
-			bossGroup = new NioEventLoopGroup();
-		}
-		if(workerThreads > 0) {
-			workerGroup = new NioEventLoopGroup(workerThreads);
+		this(bossThreads, workerThreads, encoder, decoder, messageHandler, new NettyConfig());
+	}
+
+	public NettyServer(int bossThreads, int workerThreads, Encoder encoder, Decoder decoder, final MessageHandler messageHandler, final NettyConfig config) {
+		if (config.isSharedResources() && bossThreads <= 0 && workerThreads <= 0) {
+			// 没有指定线程数时，accept和IO都在共享的EventLoopGroup上
+			resources = TransportResources.acquire(config);
+			bossGroup = resources.getEventLoopGroup();
+			workerGroup = bossGroup;
 		} else {
-			workerGroup = new NioEventLoopGroup();
+			// 线程数为0时使用netty默认值
+			bossGroup = NettyTransport.newEventLoopGroup(Math.max(0, bossThreads), "netty-server-boss", config);
+			workerGroup = NettyTransport.newEventLoopGroup(Math.max(0, workerThreads), "netty-server-worker", config);
 		}
-		
-		bootstrap = new ServerBootstrap();
-		bootstrap.group(bossGroup, workerGroup)
-			.channel(NioServerSocketChannel.class)
-			.option(ChannelOption.SO_BACKLOG, 20000)
-            // 设置no_delay
-			.option(ChannelOption.TCP_NODELAY, true)
-			// 设置channel no_delay
-			.childOption(ChannelOption.TCP_NODELAY, true)
-			// 设置可以重用time_wait的socket
-			.childOption(ChannelOption.SO_REUSEADDR, true)
-			.childOption(ChannelOption.SO_KEEPALIVE, false)
-			// 设置SO_LINGER为2秒
-			.childOption(ChannelOption.SO_LINGER, 2)
-			.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
-			.childHandler(new ChannelInitializer<SocketChannel>() {
-				@Override
-				public void initChannel(SocketChannel ch) throws Exception {
-					ChannelPipeline pipeline = ch.pipeline();
-					pipeline.addLast("decoder", new NettyEncoder(encoder));
-					pipeline.addLast("encoder", new NettyDecoder(decoder));
-					pipeline.addLast("heartbeat", new IdleStateHandler(Protocols.SERVER_IDLE_TIMEOUT, 0, 0, TimeUnit.SECONDS));
-					pipeline.addLast("handler", new NettyServerHandler(messageHandler));
+
+		dispatcher = new RequestDispatcher(config.getDispatchMode(), config.getDispatchThreads(), config.getDispatchMaxPending());
+
+		bootstrap = NettyTransport.newServerBootstrap(bossGroup, workerGroup, config);
+		bootstrap.childHandler(new ChannelInitializer<SocketChannel>() {
+			@Override
+			public void initChannel(SocketChannel ch) throws Exception {
+				childChannels.add(ch);
+				ChannelPipeline pipeline = ch.pipeline();
+				if (config.isFramed()) {
+					pipeline.addLast("encoder", new NettyFrameEncoder(encoder));
+					pipeline.addLast("decoder", new NettyFrameDecoder(decoder, config.getMaxBodyLength()));
+				} else {
+					pipeline.addLast("encoder", new NettyEncoder(encoder));
+					pipeline.addLast("decoder", new NettyDecoder(decoder));
 				}
-			});
+				pipeline.addLast("heartbeat", new IdleStateHandler(Protocols.SERVER_IDLE_TIMEOUT, 0, 0, TimeUnit.SECONDS));
+				pipeline.addLast("handler", new NettyServerHandler(messageHandler, dispatcher));
+			}
+		});
 	}
 	
 	public NettyServer(Encoder encoder, Decoder decoder, MessageHandler messageHandler) {
 		this(0, 0, encoder, decoder, messageHandler);
 	}
+
+	/**
+	 * 消息体用MessageCodec编解码，config必须是分帧协议
+	 */
+	public NettyServer(MessageHandler messageHandler, NettyConfig config) {
+		this(0, 0, DEFAULT_CODEC, DEFAULT_CODEC, messageHandler, config);
+	}
 	
 	@Override
 	public void bind(int serverPort) throws BindException {
@@ -104,12 +118,25 @@ public class NettyServer implements Server {
 	@Override
 	public void close() {
 		logger.info("Netty server closing.");
-		bossGroup.shutdownGracefully();
-		workerGroup.shutdownGracefully();
-		channel.close();
+		if (channel != null) {
+			channel.close().awaitUninterruptibly();
+		}
+		childChannels.close().awaitUninterruptibly();
+		if (resources != null) {
+			resources.release();
+			resources = null;
+		} else {
+			bossGroup.shutdownGracefully();
+			workerGroup.shutdownGracefully();
+		}
+		dispatcher.shutdown();
 		logger.info("Netty server closed.");
 	}
 
+	public DispatchStats getDispatchStats() {
+		return dispatcher.getStats();
+	}
+
 	@Override
 	public SocketAddress getLocalAddress() {
 		return localAddress;
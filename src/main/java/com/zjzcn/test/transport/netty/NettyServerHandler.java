@@ -15,9 +15,16 @@ public class NettyServerHandler extends ChannelInboundHandlerAdapter {
 	private static Logger logger = LoggerFactory.getLogger(NettyServerHandler.class);
 
 	private MessageHandler messageHandler;
+
+	private RequestDispatcher dispatcher;
 	
 	public NettyServerHandler(MessageHandler messageHandler) {
+		this(messageHandler, new RequestDispatcher(RequestDispatcher.Mode.INLINE, 0, 0));
+	}
+
+	public NettyServerHandler(MessageHandler messageHandler, RequestDispatcher dispatcher) {
 		this.messageHandler = messageHandler;
+		this.dispatcher = dispatcher;
 	}
 	
 	@Override
@@ -33,21 +40,24 @@ public class NettyServerHandler extends ChannelInboundHandlerAdapter {
     }
 	
 	@Override
-	public void channelRead(ChannelHandlerContext ctx, Object msg) {
-		if (msg instanceof Request) {
-			Request request = (Request) msg;
-			long processStartTime = System.currentTimeMillis();
-			try {
-				Response response = messageHandler.handleRequest(request);
-				response.setProcessTime(System.currentTimeMillis() - processStartTime);
-				ctx.write(response);
-			} catch (Exception e) {
-				String errorMsg = "NettyHandler handle requset error.";
-				logger.error(errorMsg, e);
+	public void channelRead(final ChannelHandlerContext ctx, Object msg) {
+		if (msg instanceof Heartbeat) {
+			if (((Heartbeat) msg).isRequest()) {
+				ctx.write(Heartbeat.RESPONSE);
+			}
+		} else if (msg instanceof Request) {
+			final Request request = (Request) msg;
+			boolean accepted = dispatcher.dispatch(ctx.channel(), new Runnable() {
+				@Override
+				public void run() {
+					handleRequest(ctx, request);
+				}
+			});
+			if (!accepted) {
+				logger.warn("NettyServer dispatch queue full, reject request. requestId={}, stats={}", request.getRequestId(), dispatcher.getStats());
 				Response response = new Response();
 				response.setRequestId(request.getRequestId());
-				response.setException(new RuntimeException(errorMsg, e));
-				response.setProcessTime(System.currentTimeMillis() - processStartTime);
+				response.setException(new RuntimeException("Server busy, request rejected: requestId=" + request.getRequestId()));
 				ctx.write(response);
 			}
 		} else if (msg instanceof Response) {
@@ -60,6 +70,29 @@ public class NettyServerHandler extends ChannelInboundHandlerAdapter {
 		}
 	}
 
+	private void handleRequest(ChannelHandlerContext ctx, Request request) {
+		long processStartTime = System.currentTimeMillis();
+		Response response;
+		try {
+			response = messageHandler.handleRequest(request);
+			response.setProcessTime(System.currentTimeMillis() - processStartTime);
+		} catch (Exception e) {
+			String errorMsg = "NettyHandler handle requset error.";
+			logger.error(errorMsg, e);
+			response = new Response();
+			response.setRequestId(request.getRequestId());
+			response.setException(new RuntimeException(errorMsg, e));
+			response.setProcessTime(System.currentTimeMillis() - processStartTime);
+		}
+
+		if (ctx.executor().inEventLoop()) {
+			// IO线程中由channelReadComplete统一flush
+			ctx.write(response);
+		} else {
+			ctx.writeAndFlush(response);
+		}
+	}
+
 	@Override
 	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
 		ctx.flush();
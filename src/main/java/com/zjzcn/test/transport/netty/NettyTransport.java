@@ -0,0 +1,141 @@
+package com.zjzcn.test.transport.netty;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按配置创建EventLoopGroup和Channel类型，并统一设置socket参数。
+ * <pre>
+ * 		Linux上native epoll可用时优先使用，否则回退到NIO
+ * 		Channel类型跟随EventLoopGroup的类型，两者不能混用
+ * </pre>
+ */
+public final class NettyTransport {
+
+	private static Logger logger = LoggerFactory.getLogger(NettyTransport.class);
+
+	private NettyTransport() {
+	}
+
+	public static boolean isEpollAvailable() {
+		return Epoll.isAvailable();
+	}
+
+	/**
+	 * @param threads 0表示使用netty默认的线程数
+	 */
+	public static EventLoopGroup newEventLoopGroup(int threads, String name, NettyConfig config) {
+		DefaultThreadFactory threadFactory = new DefaultThreadFactory(name);
+		if (config.isNativeTransport() && isEpollAvailable()) {
+			return new EpollEventLoopGroup(threads, threadFactory);
+		}
+		if (config.isNativeTransport()) {
+			logger.debug("Native epoll transport unavailable, fallback to NIO.", Epoll.unavailabilityCause());
+		}
+		return new NioEventLoopGroup(threads, threadFactory);
+	}
+
+	public static Class<? extends SocketChannel> socketChannelClass(EventLoopGroup group) {
+		return group instanceof EpollEventLoopGroup ? EpollSocketChannel.class : NioSocketChannel.class;
+	}
+
+	public static Class<? extends ServerSocketChannel> serverSocketChannelClass(EventLoopGroup group) {
+		return group instanceof EpollEventLoopGroup ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+	}
+
+	/**
+	 * 四种组合各一个进程内共享的实例，池化的分配器不会因为客户端多而重复创建arena
+	 */
+	public static ByteBufAllocator allocator(NettyConfig config) {
+		if (config.isPooledAllocator()) {
+			return config.isPreferDirect() ? PooledByteBufAllocator.DEFAULT : HeapAllocators.POOLED;
+		}
+		return config.isPreferDirect() ? UnpooledByteBufAllocator.DEFAULT : HeapAllocators.UNPOOLED;
+	}
+
+	/**
+	 * 创建客户端的Bootstrap，已设置group、channel类型和socket参数
+	 */
+	public static Bootstrap newBootstrap(EventLoopGroup group, NettyConfig config) {
+		Bootstrap bootstrap = new Bootstrap();
+		bootstrap.group(group).channel(socketChannelClass(group));
+		bootstrap.option(ChannelOption.TCP_NODELAY, config.isTcpNoDelay())
+			.option(ChannelOption.SO_KEEPALIVE, config.isKeepAlive())
+			.option(ChannelOption.ALLOCATOR, allocator(config))
+			.option(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark(config));
+		if (config.getConnectTimeoutMillis() > 0) {
+			bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutMillis());
+		}
+		if (config.getSendBufferSize() > 0) {
+			bootstrap.option(ChannelOption.SO_SNDBUF, config.getSendBufferSize());
+		}
+		if (config.getReceiveBufferSize() > 0) {
+			bootstrap.option(ChannelOption.SO_RCVBUF, config.getReceiveBufferSize());
+		}
+		return bootstrap;
+	}
+
+	/**
+	 * 创建服务端的ServerBootstrap，已设置group、channel类型和socket参数
+	 */
+	public static ServerBootstrap newServerBootstrap(EventLoopGroup bossGroup, EventLoopGroup workerGroup, NettyConfig config) {
+		ServerBootstrap bootstrap = new ServerBootstrap();
+		bootstrap.group(bossGroup, workerGroup).channel(serverSocketChannelClass(bossGroup));
+		bootstrap.option(ChannelOption.SO_BACKLOG, config.getBacklog())
+			.option(ChannelOption.SO_REUSEADDR, config.isReuseAddress())
+			.childOption(ChannelOption.TCP_NODELAY, config.isTcpNoDelay())
+			.childOption(ChannelOption.SO_REUSEADDR, config.isReuseAddress())
+			.childOption(ChannelOption.SO_KEEPALIVE, config.isKeepAlive())
+			.childOption(ChannelOption.ALLOCATOR, allocator(config))
+			.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark(config));
+		if (config.getSoLinger() >= 0) {
+			bootstrap.childOption(ChannelOption.SO_LINGER, config.getSoLinger());
+		}
+		if (config.getSendBufferSize() > 0) {
+			bootstrap.childOption(ChannelOption.SO_SNDBUF, config.getSendBufferSize());
+		}
+		if (config.getReceiveBufferSize() > 0) {
+			// 监听socket上设置，accept出来的连接才能在握手时协商到更大的窗口
+			bootstrap.option(ChannelOption.SO_RCVBUF, config.getReceiveBufferSize());
+			bootstrap.childOption(ChannelOption.SO_RCVBUF, config.getReceiveBufferSize());
+		}
+		if (config.isReusePort()) {
+			if (bossGroup instanceof EpollEventLoopGroup) {
+				bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+			} else {
+				logger.warn("SO_REUSEPORT is only supported by the native epoll transport, ignored.");
+			}
+		}
+		return bootstrap;
+	}
+
+	// 用到时才创建
+	private static final class HeapAllocators {
+		static final ByteBufAllocator POOLED = new PooledByteBufAllocator(false);
+		static final ByteBufAllocator UNPOOLED = new UnpooledByteBufAllocator(false);
+	}
+
+	private static WriteBufferWaterMark writeBufferWaterMark(NettyConfig config) {
+		return new WriteBufferWaterMark(config.getWriteBufferLowWaterMark(), config.getWriteBufferHighWaterMark());
+	}
+
+}
@@ -0,0 +1,183 @@
+package com.zjzcn.test.transport.netty;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 把请求的业务处理从IO线程分发出去，避免慢的MessageHandler阻塞同一个worker上的所有连接。
+ * <pre>
+ * 		INLINE   直接在IO线程执行，和原来的行为一样
+ * 		POOLED   提交到共享线程池，同一连接的请求可能并发、乱序执行
+ * 		ORDERED  共享线程池，但同一连接的请求按到达顺序串行执行
+ * 		POOLED和ORDERED按排队数做准入，超过maxPending直接拒绝，不会无限堆积
+ * </pre>
+ */
+public class RequestDispatcher {
+
+	private static Logger logger = LoggerFactory.getLogger(RequestDispatcher.class);
+
+	public enum Mode {
+		INLINE,
+		POOLED,
+		ORDERED
+	}
+
+	// ORDERED模式下一个连接每轮最多连续执行的任务数，防止一个繁忙连接独占线程
+	private static final int MAX_TASKS_PER_RUN = 16;
+
+	private static final AttributeKey<SerialExecutor> SERIAL_EXECUTOR = AttributeKey.valueOf("dispatch.serialExecutor");
+
+	private final Mode mode;
+	private final int maxPending;
+	private final ExecutorService executor;
+	private final DispatchStats stats = new DispatchStats();
+
+	public RequestDispatcher(Mode mode, int threads, int maxPending) {
+		this.mode = mode;
+		this.maxPending = maxPending;
+		if (mode == Mode.INLINE) {
+			this.executor = null;
+		} else {
+			// 准入由maxPending控制，所以队列本身不设上限
+			this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(), new DefaultThreadFactory("request-dispatcher", true));
+		}
+	}
+
+	/**
+	 * @return false表示排队已满被拒绝，调用方需要给客户端回错误响应
+	 */
+	public boolean dispatch(Channel channel, Runnable task) {
+		if (mode == Mode.INLINE) {
+			run(task, System.nanoTime());
+			return true;
+		}
+
+		if (!stats.tryAcquire(maxPending)) {
+			return false;
+		}
+		Runnable timedTask = new TimedTask(task, System.nanoTime());
+		try {
+			if (mode == Mode.ORDERED) {
+				serialExecutor(channel).execute(timedTask);
+			} else {
+				executor.execute(timedTask);
+			}
+			return true;
+		} catch (RejectedExecutionException e) {
+			// 线程池已关闭
+			stats.release();
+			return false;
+		}
+	}
+
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public DispatchStats getStats() {
+		return stats;
+	}
+
+	private SerialExecutor serialExecutor(Channel channel) {
+		SerialExecutor serial = channel.attr(SERIAL_EXECUTOR).get();
+		if (serial == null) {
+			SerialExecutor newSerial = new SerialExecutor();
+			serial = channel.attr(SERIAL_EXECUTOR).setIfAbsent(newSerial);
+			if (serial == null) {
+				serial = newSerial;
+			}
+		}
+		return serial;
+	}
+
+	private void run(Runnable task, long enqueueNanos) {
+		long startNanos = System.nanoTime();
+		try {
+			task.run();
+		} catch (Throwable t) {
+			logger.error("RequestDispatcher task error.", t);
+		} finally {
+			stats.record(startNanos - enqueueNanos, System.nanoTime() - startNanos);
+		}
+	}
+
+	private final class TimedTask implements Runnable {
+
+		private final Runnable task;
+		private final long enqueueNanos;
+
+		TimedTask(Runnable task, long enqueueNanos) {
+			this.task = task;
+			this.enqueueNanos = enqueueNanos;
+		}
+
+		@Override
+		public void run() {
+			try {
+				RequestDispatcher.this.run(task, enqueueNanos);
+			} finally {
+				stats.release();
+			}
+		}
+	}
+
+	/**
+	 * 同一连接的任务串行地跑在共享线程池上，任一时刻最多占用一个线程
+	 */
+	private final class SerialExecutor implements Runnable {
+
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+		void execute(Runnable task) {
+			tasks.add(task);
+			schedule();
+		}
+
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException e) {
+					scheduled.set(false);
+					throw e;
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				Runnable task;
+				for (int i = 0; i < MAX_TASKS_PER_RUN && (task = tasks.poll()) != null; i++) {
+					task.run();
+				}
+			} finally {
+				scheduled.set(false);
+				if (!tasks.isEmpty()) {
+					schedule();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.zjzcn.test.transport.netty;
+
+import com.zjzcn.test.transport.RequestTimer;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 同一个JVM里所有客户端和服务端共享的IO资源。
+ * <pre>
+ * 		EventLoopGroup按传输类型（epoll/NIO）各一个，第一次acquire时按当时的配置创建
+ * 		引用计数，最后一个使用者release时关闭EventLoopGroup，之后再acquire会重新创建
+ * 		线程数由 -Dtransport.ioThreads 或NettyConfig.ioThreads决定，默认等于CPU核数，和连接数无关
+ * 		超时时间轮见RequestTimer，分配器见NettyTransport.allocator，两者本来就是进程内共享的
+ * </pre>
+ * 管理上千个机器人连接时，每个客户端单独创建EventLoopGroup会产生上千个线程，见NettyConfig.sharedResources。
+ */
+public final class TransportResources {
+
+	private static Logger logger = LoggerFactory.getLogger(TransportResources.class);
+
+	public static final int DEFAULT_IO_THREADS = Integer.getInteger("transport.ioThreads", Runtime.getRuntime().availableProcessors());
+
+	// key为是否epoll，由TransportResources.class加锁保护
+	private static final Map<Boolean, TransportResources> registry = new HashMap<>();
+
+	private final boolean epoll;
+	private final EventLoopGroup eventLoopGroup;
+	private int refCnt;
+
+	private TransportResources(boolean epoll, EventLoopGroup eventLoopGroup) {
+		this.epoll = epoll;
+		this.eventLoopGroup = eventLoopGroup;
+	}
+
+	/**
+	 * 取得共享资源并增加引用计数，使用者关闭时必须调用一次release
+	 */
+	public static synchronized TransportResources acquire(NettyConfig config) {
+		boolean epoll = config.isNativeTransport() && NettyTransport.isEpollAvailable();
+		TransportResources resources = registry.get(epoll);
+		if (resources == null) {
+			int threads = config.getIoThreads() > 0 ? config.getIoThreads() : DEFAULT_IO_THREADS;
+			resources = new TransportResources(epoll, NettyTransport.newEventLoopGroup(threads, "transport-io", config));
+			registry.put(epoll, resources);
+			logger.info("Shared transport resources created, epoll={}, ioThreads={}", epoll, threads);
+		}
+		resources.refCnt++;
+		return resources;
+	}
+
+	public void release() {
+		synchronized (TransportResources.class) {
+			if (refCnt <= 0) {
+				throw new IllegalStateException("TransportResources already released, epoll=" + epoll);
+			}
+			if (--refCnt > 0) {
+				return;
+			}
+			registry.remove(epoll);
+		}
+		eventLoopGroup.shutdownGracefully();
+		logger.info("Shared transport resources released, epoll={}", epoll);
+	}
+
+	public EventLoopGroup getEventLoopGroup() {
+		return eventLoopGroup;
+	}
+
+	public Timer getTimer() {
+		return RequestTimer.getTimer();
+	}
+
+	public ByteBufAllocator getAllocator(NettyConfig config) {
+		return NettyTransport.allocator(config);
+	}
+
+	public int refCnt() {
+		synchronized (TransportResources.class) {
+			return refCnt;
+		}
+	}
+
+	public boolean isEpoll() {
+		return epoll;
+	}
+
+}
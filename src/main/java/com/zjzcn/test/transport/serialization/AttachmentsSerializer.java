@@ -0,0 +1,250 @@
+package com.zjzcn.test.transport.serialization;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Request/Response attachments的紧凑二进制编码，按schema把key编成序号。
+ * <pre>
+ * 		| 条目数 varint | key引用 varint | [key] | 类型 1byte | 值 | ...
+ * 		key引用为n(n>0)表示schema中第n个字段名，为0表示后面跟着内联的key字符串
+ * 		int/long用zigzag varint，double/float定长，字符串是 varint长度 + UTF-8
+ * 		只支持null、Boolean、Byte/Short/Integer、Long、Float、Double、String，
+ * 		Byte/Short解码后是Integer
+ * </pre>
+ * 两端必须使用相同顺序的字段名，新增字段只能加在末尾。
+ */
+public class AttachmentsSerializer implements Serializer<Map<String, Object>> {
+
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_FALSE = 1;
+	private static final byte TYPE_TRUE = 2;
+	private static final byte TYPE_INT = 3;
+	private static final byte TYPE_LONG = 4;
+	private static final byte TYPE_FLOAT = 5;
+	private static final byte TYPE_DOUBLE = 6;
+	private static final byte TYPE_STRING = 7;
+
+	private final String[] fields;
+	private final Map<String, Integer> fieldRefs = new HashMap<>();
+
+	public AttachmentsSerializer(String... fields) {
+		this.fields = fields.clone();
+		for (int i = 0; i < fields.length; i++) {
+			if (fieldRefs.put(fields[i], i + 1) != null) {
+				throw new IllegalArgumentException("Duplicate schema field: " + fields[i]);
+			}
+		}
+	}
+
+	@Override
+	public byte[] serialize(Map<String, Object> data) {
+		ByteBuf out = Unpooled.buffer();
+		serialize(data, out);
+		byte[] bytes = new byte[out.readableBytes()];
+		out.readBytes(bytes);
+		return bytes;
+	}
+
+	@Override
+	public Map<String, Object> deserialize(byte[] bytes, Class<Map<String, Object>> clazz) {
+		return deserialize(Unpooled.wrappedBuffer(bytes), clazz);
+	}
+
+	@Override
+	public void serialize(Map<String, Object> data, ByteBuf out) {
+		if (data == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		writeVarInt(out, data.size());
+		for (Map.Entry<String, Object> entry : data.entrySet()) {
+			Integer ref = fieldRefs.get(entry.getKey());
+			if (ref != null) {
+				writeVarInt(out, ref);
+			} else {
+				writeVarInt(out, 0);
+				writeString(out, entry.getKey());
+			}
+			writeValue(out, entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Override
+	public Map<String, Object> deserialize(ByteBuf in, Class<Map<String, Object>> clazz) {
+		int size = readVarInt(in);
+		Map<String, Object> data = new HashMap<>(Math.max(4, size * 2));
+		for (int i = 0; i < size; i++) {
+			int ref = readVarInt(in);
+			String key;
+			if (ref == 0) {
+				key = readString(in);
+			} else if (ref <= fields.length) {
+				key = fields[ref - 1];
+			} else {
+				throw new IllegalArgumentException("Unknown schema field ref: " + ref + ", fields=" + fields.length);
+			}
+			data.put(key, readValue(in));
+		}
+		return data;
+	}
+
+	private static void writeValue(ByteBuf out, String key, Object value) {
+		if (value == null) {
+			out.writeByte(TYPE_NULL);
+		} else if (value instanceof String) {
+			out.writeByte(TYPE_STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			out.writeByte(TYPE_INT);
+			writeVarInt(out, zigzag(((Number) value).intValue()));
+		} else if (value instanceof Long) {
+			out.writeByte(TYPE_LONG);
+			writeVarLong(out, zigzag((Long) value));
+		} else if (value instanceof Double) {
+			out.writeByte(TYPE_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(TYPE_FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+		} else {
+			throw new IllegalArgumentException("Unsupported attachment type: key=" + key + ", class=" + value.getClass().getName());
+		}
+	}
+
+	private static Object readValue(ByteBuf in) {
+		byte type = in.readByte();
+		switch (type) {
+			case TYPE_NULL:
+				return null;
+			case TYPE_FALSE:
+				return Boolean.FALSE;
+			case TYPE_TRUE:
+				return Boolean.TRUE;
+			case TYPE_INT:
+				return unzigzag(readVarInt(in));
+			case TYPE_LONG:
+				return unzigzag(readVarLong(in));
+			case TYPE_FLOAT:
+				return in.readFloat();
+			case TYPE_DOUBLE:
+				return in.readDouble();
+			case TYPE_STRING:
+				return readString(in);
+			default:
+				throw new IllegalArgumentException("Unknown attachment type: " + type);
+		}
+	}
+
+	static void writeString(ByteBuf out, String value) {
+		int length = utf8Length(value);
+		if (length < 0) {
+			// 含代理字符时交给JDK处理
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(out, bytes.length);
+			out.writeBytes(bytes);
+			return;
+		}
+		writeVarInt(out, length);
+		ByteBufUtil.writeUtf8(out, value);
+	}
+
+	static String readString(ByteBuf in) {
+		int length = readVarInt(in);
+		String value;
+		if (in.hasArray()) {
+			value = new String(in.array(), in.arrayOffset() + in.readerIndex(), length, StandardCharsets.UTF_8);
+			in.skipBytes(length);
+		} else {
+			// JDK的UTF-8解码比ByteBuf.toString走CharsetDecoder快，短字符串复制一次更划算
+			byte[] bytes = new byte[length];
+			in.readBytes(bytes);
+			value = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return value;
+	}
+
+	/**
+	 * @return UTF-8编码后的字节数，含代理字符时返回-1
+	 */
+	private static int utf8Length(String value) {
+		int length = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				length += 1;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isSurrogate(c)) {
+				return -1;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static void writeVarInt(ByteBuf out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static void writeVarLong(ByteBuf out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static int readVarInt(ByteBuf in) {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+	private static long readVarLong(ByteBuf in) {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.zjzcn.test.transport.serialization;
+
+import com.zjzcn.test.transport.Decoder;
+import com.zjzcn.test.transport.Encoder;
+import com.zjzcn.test.transport.Message;
+import com.zjzcn.test.transport.Protocols;
+import com.zjzcn.test.transport.Request;
+import com.zjzcn.test.transport.Response;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * 分帧协议的默认消息体编码，attachments按messageType从SerializerFactory选择Serializer。
+ * <pre>
+ * 		| 消息类型 1byte | messageType | attachments | [exception] | 有无data 1byte | data |
+ * 		消息类型同Protocols.MessageType的MESSAGE_REQ/MESSAGE_RESP，exception只有响应才有
+ * 		messageType和exception前有1byte表示是否为null，字符串是 varint长度 + UTF-8
+ * 		data只支持String，用SerializerFactory.create()编码，占用消息体的剩余部分
+ * 		响应的exception只传message，解码后是RuntimeException
+ * </pre>
+ * 无状态，同一个实例可以被多个channel共享。
+ */
+public class MessageCodec implements Encoder, Decoder {
+
+	@Override
+	public byte[] encode(Message msg) {
+		ByteBuf out = Unpooled.buffer();
+		encode(msg, out);
+		byte[] bytes = new byte[out.readableBytes()];
+		out.readBytes(bytes);
+		return bytes;
+	}
+
+	@Override
+	public void encode(Message msg, ByteBuf out) {
+		boolean request = msg instanceof Request;
+		out.writeByte(request ? Protocols.MessageType.MESSAGE_REQ : Protocols.MessageType.MESSAGE_RESP);
+		writeNullableString(out, msg.getMessageType());
+		SerializerFactory.create(msg.getMessageType()).serialize(request ? ((Request) msg).getAttachments()
+				: ((Response) msg).getAttachments(), out);
+		if (!request) {
+			Exception exception = ((Response) msg).getException();
+			writeNullableString(out, exception == null ? null : String.valueOf(exception.getMessage()));
+		}
+
+		Object data = msg.getData();
+		if (data == null) {
+			out.writeBoolean(false);
+		} else if (data instanceof String) {
+			out.writeBoolean(true);
+			SerializerFactory.create().serialize((String) data, out);
+		} else {
+			throw new IllegalArgumentException("Unsupported message data: class=" + data.getClass().getName()
+					+ ", messageType=" + msg.getMessageType());
+		}
+	}
+
+	@Override
+	public Message decode(byte[] data) {
+		return decode(Unpooled.wrappedBuffer(data));
+	}
+
+	@Override
+	public Message decode(ByteBuf body) {
+		byte type = body.readByte();
+		String messageType = readNullableString(body);
+		Message msg;
+		if (type == Protocols.MessageType.MESSAGE_REQ) {
+			Request request = new Request();
+			request.setAttachments(SerializerFactory.create(messageType).deserialize(body, null));
+			msg = request;
+		} else if (type == Protocols.MessageType.MESSAGE_RESP) {
+			Response response = new Response();
+			response.setAttachments(SerializerFactory.create(messageType).deserialize(body, null));
+			String exception = readNullableString(body);
+			if (exception != null) {
+				response.setException(new RuntimeException(exception));
+			}
+			msg = response;
+		} else {
+			throw new IllegalArgumentException("Unknown message type: " + type);
+		}
+		msg.setMessageType(messageType);
+		if (body.readBoolean()) {
+			msg.setData(SerializerFactory.create().deserialize(body, String.class));
+		}
+		return msg;
+	}
+
+	private static void writeNullableString(ByteBuf out, String value) {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			AttachmentsSerializer.writeString(out, value);
+		}
+	}
+
+	private static String readNullableString(ByteBuf in) {
+		return in.readBoolean() ? AttachmentsSerializer.readString(in) : null;
+	}
+
+}
@@ -1,8 +1,26 @@
 package com.zjzcn.test.transport.serialization;
 
+import io.netty.buffer.ByteBuf;
+
 public interface Serializer<T> {
 
 	byte[] serialize(T data);
 	
 	T deserialize(byte[] bytes, Class<T> clazz);
+
+	/**
+	 * 直接写入ByteBuf，省掉中间的byte[]。默认实现仍然经过byte[]
+	 */
+	default void serialize(T data, ByteBuf out) {
+		out.writeBytes(serialize(data));
+	}
+
+	/**
+	 * 从ByteBuf的readerIndex读到writerIndex，默认实现先复制成byte[]
+	 */
+	default T deserialize(ByteBuf in, Class<T> clazz) {
+		byte[] bytes = new byte[in.readableBytes()];
+		in.readBytes(bytes);
+		return deserialize(bytes, clazz);
+	}
 }
@@ -1,8 +1,44 @@
 package com.zjzcn.test.transport.serialization;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按messageType选择attachments的Serializer，没有注册的类型使用没有schema的AttachmentsSerializer，
+ * 消息的data使用默认的StringSerializer。编解码消息体见MessageCodec。
+ */
 public class SerializerFactory {
 
-	public static Serializer create() {
-		return new StringSerializer();
+	private static final Serializer<String> DEFAULT = new StringSerializer();
+
+	// 没有schema时key全部内联，任何attachments都能编码
+	private static final Serializer<Map<String, Object>> DEFAULT_ATTACHMENTS = new AttachmentsSerializer();
+
+	private static final Map<String, Serializer<Map<String, Object>>> serializers = new ConcurrentHashMap<>();
+
+	public static Serializer<String> create() {
+		return DEFAULT;
+	}
+
+	public static Serializer<Map<String, Object>> create(String messageType) {
+		if (messageType == null) {
+			return DEFAULT_ATTACHMENTS;
+		}
+		Serializer<Map<String, Object>> serializer = serializers.get(messageType);
+		return serializer != null ? serializer : DEFAULT_ATTACHMENTS;
+	}
+
+	/**
+	 * 两端必须为同一个messageType注册相同的schema
+	 */
+	public static void register(String messageType, Serializer<Map<String, Object>> serializer) {
+		if (messageType == null || serializer == null) {
+			throw new NullPointerException("messageType or serializer is null");
+		}
+		serializers.put(messageType, serializer);
+	}
+
+	public static Serializer<Map<String, Object>> unregister(String messageType) {
+		return serializers.remove(messageType);
 	}
 }
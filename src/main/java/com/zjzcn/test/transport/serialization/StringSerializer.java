@@ -1,15 +1,32 @@
 package com.zjzcn.test.transport.serialization;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+
 public class StringSerializer implements Serializer<String> {
 
 	@Override
 	public byte[] serialize(String data) {
-		return data.getBytes();
+		return data.getBytes(StandardCharsets.UTF_8);
 	}
 
 	@Override
 	public String deserialize(byte[] bytes, Class<String> clazz) {
-		return new String(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void serialize(String data, ByteBuf out) {
+		ByteBufUtil.writeUtf8(out, data);
+	}
+
+	@Override
+	public String deserialize(ByteBuf in, Class<String> clazz) {
+		String data = in.toString(StandardCharsets.UTF_8);
+		in.skipBytes(in.readableBytes());
+		return data;
 	}
 
 }
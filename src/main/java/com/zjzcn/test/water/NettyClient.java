@@ -1,28 +1,51 @@
 package com.zjzcn.test.water;
 
+import com.zjzcn.test.transport.AdmissionController;
+import com.zjzcn.test.transport.AdmissionStats;
+import com.zjzcn.test.transport.ClientMetrics;
+import com.zjzcn.test.transport.Protocols;
+import com.zjzcn.test.transport.ReconnectBackoff;
+import com.zjzcn.test.transport.netty.FlushBatchConfig;
+import com.zjzcn.test.transport.netty.FlushBatchHandler;
+import com.zjzcn.test.transport.netty.FlushBatchStats;
+import com.zjzcn.test.transport.netty.NettyConfig;
+import com.zjzcn.test.transport.netty.NettyTransport;
+import com.zjzcn.test.transport.netty.TransportResources;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.timeout.IdleStateHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.SocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 public class NettyClient implements Client{
 	
 	private Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private static final long REQUEST_TIMEOUT_MS = 10000;
+    private static final long RECONNECT_BASE_MS = 100;
+    private static final long RECONNECT_MAX_MS = 5000;
+    // 水务服务端没有专门的心跳命令，用最轻的状态查询代替
+    private static final String HEARTBEAT_COMMAND = "/api/robot_status";
 
 	private EventLoopGroup eventLoopGroup;
-	private Channel channel;
+	// 为null时eventLoopGroup由本实例创建
+	private TransportResources resources;
+	private boolean resourcesReleased = false;
+	private volatile Channel channel;
 	private Bootstrap bootstrap;
 	
 	private String serverHost;
@@ -33,23 +56,56 @@ public class NettyClient implements Client{
 	
 	private CallbackManager callbackManager;
 
+	private FlushBatchConfig flushBatchConfig;
+	private FlushBatchStats flushBatchStats;
+
+	private ClientMetrics metrics = new ClientMetrics();
+
+	private AdmissionController admission;
+
+	private ReconnectBackoff reconnectBackoff = new ReconnectBackoff(RECONNECT_BASE_MS, RECONNECT_MAX_MS);
+	private AtomicBoolean reconnectScheduled = new AtomicBoolean(false);
+	private volatile boolean closed = false;
+
 	public NettyClient(String serverHost, int serverPort) {
+		this(serverHost, serverPort, null);
+	}
+
+	public NettyClient(String serverHost, int serverPort, FlushBatchConfig flushBatchConfig) {
+		this(serverHost, serverPort, flushBatchConfig, new NettyConfig());
+	}
+
+	/**
+	 * @param flushBatchConfig 不为null时开启批量flush
+	 * @param nettyConfig 只使用其中的socket参数和准入控制参数，编解码固定为水务的JSON协议
+	 */
+	public NettyClient(String serverHost, int serverPort, final FlushBatchConfig flushBatchConfig, NettyConfig nettyConfig) {
 		this.serverHost = serverHost;
 		this.serverPort = serverPort;
+		this.flushBatchConfig = flushBatchConfig;
+		this.flushBatchStats = flushBatchConfig != null ? new FlushBatchStats() : null;
 
 		callbackManager = new CallbackManager();
+		admission = nettyConfig.newAdmissionController();
 
-		bootstrap = new Bootstrap();
-		eventLoopGroup = new NioEventLoopGroup();
-		bootstrap.group(eventLoopGroup)
-		.channel(NioSocketChannel.class)
-		.handler(new ChannelInitializer<SocketChannel>() {
+		if (nettyConfig.isSharedResources()) {
+			resources = TransportResources.acquire(nettyConfig);
+			eventLoopGroup = resources.getEventLoopGroup();
+		} else {
+			eventLoopGroup = NettyTransport.newEventLoopGroup(0, "water-client", nettyConfig);
+		}
+		bootstrap = NettyTransport.newBootstrap(eventLoopGroup, nettyConfig);
+		bootstrap.handler(new ChannelInitializer<SocketChannel>() {
 			@Override
 			public void initChannel(SocketChannel ch) throws Exception {
 				ChannelPipeline pipeline = ch.pipeline();
+				if (flushBatchConfig != null) {
+					pipeline.addLast("flusher", new FlushBatchHandler(flushBatchConfig, flushBatchStats));
+				}
 				pipeline.addLast("encoder", new NettyEncoder());
 				pipeline.addLast("decoder", new NettyDecoder());
-				pipeline.addLast("handler", new NettyClientHandler(callbackManager));
+				pipeline.addLast("idle", new IdleStateHandler(Protocols.CLIENT_IDLE_TIMEOUT, Protocols.CLIENT_HEARTBEAT_INTERVAL, 0, TimeUnit.SECONDS));
+				pipeline.addLast("handler", new NettyClientHandler(callbackManager, NettyClient.this));
 			}
 		});
 	}
@@ -58,39 +114,120 @@ public class NettyClient implements Client{
 	public synchronized void connect() {
 		logger.info("Http client connecting...");
 		try {
-			channel = bootstrap.connect(serverHost, serverPort).sync().channel();
-			localAddress = channel.localAddress();
-			remoteAddress = channel.remoteAddress();
-			logger.info("Netty client connected. localAttress[{}], remoteAddress[{}].", localAddress, remoteAddress);
+			onConnected(bootstrap.connect(serverHost, serverPort).sync().channel());
 		} catch (Exception e) {
 			logger.error("Netty client error while connecting.", e);
+			scheduleReconnect();
 		}
 	}
 
+    private void onConnected(Channel newChannel) {
+        channel = newChannel;
+        admission.setWritable(newChannel.isWritable());
+        localAddress = newChannel.localAddress();
+        remoteAddress = newChannel.remoteAddress();
+        reconnectBackoff.reset();
+        logger.info("Netty client connected. localAddress[{}], remoteAddress[{}].", localAddress, remoteAddress);
+    }
+
+    /**
+     * 后台重连，间隔按指数退避加抖动，同一时间最多只有一个重连任务
+     */
+    private void scheduleReconnect() {
+        if (closed || !reconnectScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        long delayMillis = reconnectBackoff.nextDelayMillis();
+        logger.info("Netty client reconnect in {}ms, remoteAddress[{}:{}].", delayMillis, serverHost, serverPort);
+        try {
+            eventLoopGroup.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    reconnectScheduled.set(false);
+                    if (closed || isConnected()) {
+                        return;
+                    }
+                    metrics.recordReconnect();
+                    bootstrap.connect(serverHost, serverPort).addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture connectFuture) {
+                            if (connectFuture.isSuccess()) {
+                                onConnected(connectFuture.channel());
+                            } else {
+                                logger.warn("Netty client reconnect failed, remoteAddress[{}:{}], cause={}", serverHost, serverPort, connectFuture.cause().toString());
+                                scheduleReconnect();
+                            }
+                        }
+                    });
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 事件循环已经关闭
+            reconnectScheduled.set(false);
+        }
+    }
+
+    /**
+     * 连接断开时由NettyClientHandler调用：未完成的请求立即失败，然后后台重连
+     */
+    void onChannelInactive(Channel inactiveChannel) {
+        if (inactiveChannel != channel) {
+            // 主动reconnect时关闭的旧连接，回调已经在reconnect中处理
+            return;
+        }
+        int failed = callbackManager.failAll(new RuntimeException("Channel inactive, remoteAddress=" + remoteAddress
+                + ", localAddress=" + localAddress));
+        metrics.recordDisconnect();
+        // 断开的连接上写会立即失败，不让等待的请求卡到重连
+        admission.setWritable(true);
+        logger.info("Netty client disconnected, localAddress[{}], remoteAddress[{}], failedRequests={}.", localAddress, remoteAddress, failed);
+        scheduleReconnect();
+    }
+
+    /**
+     * 写缓冲越过高低水位时由NettyClientHandler调用
+     */
+    void onWritabilityChanged(Channel changedChannel) {
+        if (changedChannel == channel) {
+            admission.setWritable(changedChannel.isWritable());
+        }
+    }
+
+    /**
+     * 写空闲时由NettyClientHandler调用，响应只用于刷新读空闲计时
+     */
+    void sendHeartbeat() {
+        Request request = new Request();
+        request.setRequestId(RequestId.newLongId());
+        request.setMessageType(HEARTBEAT_COMMAND);
+        sendAsync(request, Protocols.CLIENT_IDLE_TIMEOUT * 1000L);
+    }
+
 	@Override
 	public synchronized void reconnect() {
 		logger.info("Http client reconnecting...");
+		metrics.recordReconnect();
 		try {
-			channel.close();
-			channel = bootstrap.connect(serverHost, serverPort).sync().channel();
-			localAddress = channel.localAddress();
-			remoteAddress = channel.remoteAddress();
-			logger.info("Netty client connected. localAttress[{}], remoteAddress[{}].", localAddress, remoteAddress);
+			if (channel != null) {
+				callbackManager.failAll(new RuntimeException("Channel closed by reconnect, remoteAddress=" + remoteAddress));
+				channel.close();
+			}
+			onConnected(bootstrap.connect(serverHost, serverPort).sync().channel());
 		} catch (Exception e) {
 			logger.error("Netty client error while connecting.", e);
+			scheduleReconnect();
 		}
 	}
 	
 	@Override
 	public synchronized void close() {
 		logger.info("Http client closing...");
+		closed = true;
 		try {
-			// 取消定期的回收任务
-			callbackManager.cancelTimeoutChecker();
 			// 关闭连接池
-			eventLoopGroup.shutdownGracefully();
-			// 清空回调
-			callbackManager.clearCallback();
+			releaseEventLoopGroup();
+			// 未完成的请求立即失败
+			callbackManager.failAll(new RuntimeException("Netty client closed, remoteAddress=" + remoteAddress));
 			channel.close();
 			logger.info("Netty client closed, remoteAddress={}", remoteAddress);
 		} catch (Exception e) {
@@ -98,6 +235,18 @@ public class NettyClient implements Client{
 		}
 	}
 
+	/**
+	 * 共享的EventLoopGroup只减少引用计数，重复close不会重复释放
+	 */
+	private void releaseEventLoopGroup() {
+		if (resources == null) {
+			eventLoopGroup.shutdownGracefully();
+		} else if (!resourcesReleased) {
+			resourcesReleased = true;
+			resources.release();
+		}
+	}
+
 	@Override
 	public Response send(Request request) {
         return send(request, REQUEST_TIMEOUT_MS);
@@ -105,11 +254,18 @@ public class NettyClient implements Client{
 
     @Override
     public Response send(Request request, long timeoutMillis) {
+        try {
+            admission.acquire();
+        } catch (RuntimeException e) {
+            metrics.record(request.getMessageType(), 0, ClientMetrics.Outcome.ERROR);
+            throw e;
+        }
         ResponseFuture newResponseFuture = new ResponseFuture(request, timeoutMillis);
+        releaseOnComplete(newResponseFuture);
+        instrument(newResponseFuture);
         callbackManager.registerCallback(request.getRequestId(), newResponseFuture);
 
-        ChannelFuture writeFuture = channel.write(request);
-        channel.flush();
+        ChannelFuture writeFuture = write(request);
 
         boolean result = writeFuture.awaitUninterruptibly(timeoutMillis, TimeUnit.MILLISECONDS);
 
@@ -132,6 +288,112 @@ public class NettyClient implements Client{
         }
     }
 
+    @Override
+    public CompletableFuture<Response> sendAsync(Request request) {
+        return sendAsync(request, REQUEST_TIMEOUT_MS);
+    }
+
+    /**
+     * 从不阻塞调用线程：FAIL_FAST和BLOCK放不行时返回异常完成的future，BLOCK只作用于同步的send；
+     * ASYNC策略下排队等待，放行后在释放名额的线程上发送
+     */
+    @Override
+    public CompletableFuture<Response> sendAsync(final Request request, final long timeoutMillis) {
+        final CompletableFuture<Response> promise = new CompletableFuture<>();
+        admission.acquireAsync().whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void admitted, Throwable t) {
+                if (t != null) {
+                    metrics.record(request.getMessageType(), 0, ClientMetrics.Outcome.ERROR);
+                    promise.completeExceptionally(t);
+                } else {
+                    doSendAsync(request, timeoutMillis, promise);
+                }
+            }
+        });
+        return promise;
+    }
+
+    private void doSendAsync(final Request request, long timeoutMillis, final CompletableFuture<Response> promise) {
+        if (promise.isDone()) {
+            // 排队期间调用方已经取消
+            admission.release();
+            return;
+        }
+        final ResponseFuture responseFuture = new ResponseFuture(request, timeoutMillis);
+        releaseOnComplete(responseFuture);
+        instrument(responseFuture);
+        responseFuture.addListener(new FutureListener() {
+            @Override
+            public void onComplete(ResponseFuture future) {
+                if (future.isSuccess()) {
+                    promise.complete(future.getResponse());
+                } else {
+                    // 超时和取消时是RequestCancelledException
+                    promise.completeExceptionally(future.getException());
+                }
+            }
+        });
+        // 调用方取消时同时移除回调
+        promise.whenComplete(new BiConsumer<Response, Throwable>() {
+            @Override
+            public void accept(Response response, Throwable t) {
+                if (promise.isCancelled() && callbackManager.removeCallback(request.getRequestId()) != null) {
+                    responseFuture.cancel();
+                }
+            }
+        });
+
+        try {
+            callbackManager.registerCallback(request.getRequestId(), responseFuture);
+        } catch (Exception e) {
+            responseFuture.onFailure(e);
+            return;
+        }
+
+        write(request).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture writeFuture) {
+                if (writeFuture.isSuccess()) {
+                    return;
+                }
+                String errorMsg = "Error while sending request to server, remoteAddress=" + remoteAddress
+                        + ", localAddress=" + localAddress + ", requestId=" + request.getRequestId();
+                promise.completeExceptionally(new RuntimeException(errorMsg, writeFuture.cause()));
+                if (callbackManager.removeCallback(request.getRequestId()) != null) {
+                    responseFuture.cancel();
+                }
+            }
+        });
+    }
+
+    private void releaseOnComplete(ResponseFuture responseFuture) {
+        responseFuture.addListener(new FutureListener() {
+            @Override
+            public void onComplete(ResponseFuture future) {
+                admission.release();
+            }
+        });
+    }
+
+    private void instrument(ResponseFuture responseFuture) {
+        final long startNanos = System.nanoTime();
+        responseFuture.addListener(new FutureListener() {
+            @Override
+            public void onComplete(ResponseFuture future) {
+                // 超时和写失败都是cancel，统一计为TIMEOUT
+                ClientMetrics.Outcome outcome = future.isCancelled() ? ClientMetrics.Outcome.TIMEOUT
+                        : future.isSuccess() ? ClientMetrics.Outcome.SUCCESS : ClientMetrics.Outcome.ERROR;
+                metrics.record(future.getRequest().getMessageType(), System.nanoTime() - startNanos, outcome);
+            }
+        });
+    }
+
+    private ChannelFuture write(Request request) {
+        // 开启批量flush时由FlushBatchHandler决定flush的时机
+        return flushBatchConfig != null ? channel.write(request) : channel.writeAndFlush(request);
+    }
+
 	@Override
 	public boolean isConnected() {
 		if(channel == null) {
@@ -140,6 +402,43 @@ public class NettyClient implements Client{
 		return channel.isActive();
 	}
 	
+	/**
+	 * 拉取当前的统计快照
+	 */
+	public ClientMetrics.Snapshot getMetricsSnapshot() {
+		return metrics.snapshot(callbackManager.getCallbackCount(), getPendingWriteBytes());
+	}
+
+	/**
+	 * 已写入channel但还没发到socket的字节数
+	 */
+	public long getPendingWriteBytes() {
+		Channel ch = channel;
+		if (ch == null) {
+			return 0;
+		}
+		ChannelOutboundBuffer outboundBuffer = ch.unsafe().outboundBuffer();
+		return outboundBuffer == null ? 0 : outboundBuffer.totalPendingWriteBytes();
+	}
+
+	public FlushBatchConfig getFlushBatchConfig() {
+		return flushBatchConfig;
+	}
+
+	/**
+	 * 批量flush的统计，未开启时为null
+	 */
+	public FlushBatchStats getFlushBatchStats() {
+		return flushBatchStats;
+	}
+
+	/**
+	 * 准入控制的统计，包括拒绝数和排队等待时间
+	 */
+	public AdmissionStats getAdmissionStats() {
+		return admission.getStats();
+	}
+
 	@Override
 	public SocketAddress getLocalAddress() {
 		return localAddress;
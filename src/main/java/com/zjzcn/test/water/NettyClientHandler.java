@@ -2,6 +2,8 @@ package com.zjzcn.test.water;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,9 +13,38 @@ public class NettyClientHandler extends ChannelInboundHandlerAdapter {
 
 	private CallbackManager callbackManager;
 
+	private NettyClient client;
 
-	public NettyClientHandler(CallbackManager callbackManager) {
+	public NettyClientHandler(CallbackManager callbackManager, NettyClient client) {
 		this.callbackManager = callbackManager;
+		this.client = client;
+	}
+
+	@Override
+	public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+		if (evt instanceof IdleStateEvent) {
+			IdleStateEvent e = (IdleStateEvent) evt;
+			if (e.state() == IdleState.WRITER_IDLE) {
+				client.sendHeartbeat();
+			} else if (e.state() == IdleState.READER_IDLE) {
+				logger.info("Client receive heartbeat timeout, channel will close. localAddress={}, remoteAddress={}", ctx.channel().localAddress(), ctx.channel().remoteAddress());
+				ctx.close();
+			}
+		} else {
+			super.userEventTriggered(ctx, evt);
+		}
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		client.onChannelInactive(ctx.channel());
+		super.channelInactive(ctx);
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		client.onWritabilityChanged(ctx.channel());
+		super.channelWritabilityChanged(ctx);
 	}
 
 	@Override
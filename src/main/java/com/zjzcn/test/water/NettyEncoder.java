@@ -1,37 +1,37 @@
 package com.zjzcn.test.water;
 
+import com.zjzcn.test.transport.AsciiRequestWriter;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.util.CharsetUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
-
+/**
+ * 请求直接写入ctx.alloc()分配的ByteBuf，格式见AsciiRequestWriter
+ */
 public class NettyEncoder extends MessageToByteEncoder<Message> {
 
+	private static final AsciiRequestWriter WRITER = new AsciiRequestWriter(
+			"/api/robot_status",
+			"/api/move",
+			"/api/joy_control",
+			"/api/map/set_current_map",
+			"/api/map/get_current_map",
+			"/api/markers/query_list",
+			"/api/map/list");
+
 	private Logger logger = LoggerFactory.getLogger(this.getClass());
 
 	@Override
 	protected void encode(ChannelHandlerContext ctx, Message in, ByteBuf out) throws Exception {
-		StringBuffer sb = new StringBuffer();
-		sb.append(in.getMessageType());
-		sb.append("?");
-
-		Map<String, Object> params = in.getAttachments();
-		if(params != null) {
-            for (String key : params.keySet()) {
-                sb.append(key).append("=").append(params.get(key)).append("&");
-            }
-        }
-
-		sb.append("uuid=" + in.getRequestId());
-
-		byte[] bytes = sb.toString().getBytes();
+		int start = out.writerIndex();
+		WRITER.write(out, in.getMessageType(), in.getAttachments(), in.getRequestId());
 
-        logger.info("Client sending data: {}", sb.toString());
-        // write data
-		out.writeBytes(bytes);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Client sending data: {}", out.toString(start, out.writerIndex() - start, CharsetUtil.UTF_8));
+		}
 	}
 
 }
@@ -1,26 +1,52 @@
 package com.zjzcn.test.water;
 
+import com.zjzcn.test.transport.RequestCancelledException;
+import io.netty.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁实现，和transport.ResponseFuture相同：
+ * CAS抢到COMPLETING的一方写结果，listener和等待线程在同一个无锁栈上，超时和取消的异常没有堆栈。
+ */
 public class ResponseFuture implements Future<Response> {
-	
-	private volatile FutureState state = FutureState.DOING;
 
-	private Object lock = new Object();
+    private static Logger logger = LoggerFactory.getLogger(ResponseFuture.class);
+
+    private static final int DOING = 0;
+    private static final int COMPLETING = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+
+    private static final AtomicIntegerFieldUpdater<ResponseFuture> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ResponseFuture.class, "state");
+    private static final AtomicReferenceFieldUpdater<ResponseFuture, Node> STACK_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(ResponseFuture.class, Node.class, "stack");
+
+    // 栈被完成方取下后的标记，之后注册的listener直接通知
+    private static final Node COMPLETED = new Node(null, null);
+
+	private volatile int state = DOING;
 
     private long createTime = System.currentTimeMillis();
 
     private Request request;
 
+    // 结果字段由state的volatile写发布
     private Response response;
 
     private Exception exception;
 
     private long timeoutMillis;
 
-    private enum FutureState {
-        DOING(),
-        DONE(),
-        CANCELLED()
-    }
+    private volatile Node stack;
+
+    private volatile Timeout timeoutHandle;
 
 	public ResponseFuture(Request request, long timeoutMillis) {
 		this.request = request;
@@ -28,73 +54,44 @@ public class ResponseFuture implements Future<Response> {
 	}
 
 	public void onSuccess(Response response) {
-		this.response = response;
-		done();
+        if (STATE_UPDATER.compareAndSet(this, DOING, COMPLETING)) {
+            this.response = response;
+            complete(DONE);
+        }
 	}
 
 	public void onFailure(Response response) {
-		this.exception = response.getException();
-		done();
+		onFailure(response.getException());
+	}
+
+	public void onFailure(Exception exception) {
+        if (STATE_UPDATER.compareAndSet(this, DOING, COMPLETING)) {
+            this.exception = exception;
+            complete(DONE);
+        }
 	}
 
     @Override
     public Response get() {
-        synchronized (lock) {
-            if (isDone()) {
-                return getResponseOrThrowException();
-            }
-
-            long waitTime = timeoutMillis - costTimeMillis();
-            if (waitTime > 0) {
-                for (;;) {
-                    try {
-                        lock.wait(waitTime);
-                    } catch (InterruptedException e) {
-                        // nothing
-                    }
-
-                    if (!isDoing()) {
-                        break;
-                    }
-
-                    waitTime = timeoutMillis - costTimeMillis();
-                    if (waitTime <= 0) {
-                        break;
-                    }
-                }
-            }
-
-            if (isDoing()) {
-                cancel();
-                throw new RuntimeException("Request timeout: requestId=" + request.getRequestId()
-                        + ", costTimeMs=" + costTimeMillis());
-            }
+        if (state < DONE) {
+            await();
         }
         return getResponseOrThrowException();
     }
 
 	@Override
 	public boolean cancel() {
-        synchronized (lock) {
-            if (!isDoing()) {
-                return false;
-            }
-
-            state = FutureState.CANCELLED;
-            lock.notifyAll();
-        }
-
-        return true;
+        return cancel(RequestCancelledException.CANCELED);
 	}
-	
+
     @Override
 	public boolean isCancelled() {
-		return state == FutureState.CANCELLED;
+		return state == CANCELLED;
 	}
 
 	@Override
 	public boolean isDone() {
-		return state == FutureState.DONE;
+		return state == DONE;
 	}
 
     @Override
@@ -102,6 +99,38 @@ public class ResponseFuture implements Future<Response> {
 		return isDone() && (exception == null);
 	}
 
+    public void addListener(FutureListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("FutureListener is null");
+        }
+
+        if (!push(new Node(listener, null))) {
+            notifyListener(listener);
+        }
+    }
+
+    public void setTimeoutHandle(Timeout timeoutHandle) {
+        this.timeoutHandle = timeoutHandle;
+        if (state != DOING) {
+            timeoutHandle.cancel();
+        }
+    }
+
+    public Request getRequest() {
+        return request;
+    }
+
+    public Response getResponse() {
+        return response;
+    }
+
+    /**
+     * 失败或取消时不为null，取消时是RequestCancelledException
+     */
+    public Exception getException() {
+        return exception;
+    }
+
     public long getTimeoutMillis() {
         return timeoutMillis;
     }
@@ -110,22 +139,83 @@ public class ResponseFuture implements Future<Response> {
         return createTime;
     }
 
-	private boolean isDoing() {
-		return state == FutureState.DOING;
-	}
+    private void await() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis - costTimeMillis());
+        if (!push(new Node(null, Thread.currentThread()))) {
+            return;
+        }
 
-	private boolean done() {
-		synchronized (lock) {
-			if (!isDoing()) {
-				return false;
-			}
+        boolean interrupted = false;
+        while (state < DONE) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                if (!cancel(RequestCancelledException.TIMEOUT)) {
+                    // 另一方正在写结果，很快就会完成
+                    Thread.yield();
+                }
+                continue;
+            }
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                // 等待不响应中断，返回前恢复中断标记
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-			state = FutureState.DONE;
-			lock.notifyAll();
-		}
+    private boolean cancel(String reason) {
+        if (!STATE_UPDATER.compareAndSet(this, DOING, COMPLETING)) {
+            return false;
+        }
+        exception = new RequestCancelledException(reason, request.getRequestId(), costTimeMillis());
+        complete(CANCELLED);
+        return true;
+    }
 
-		return true;
-	}
+    /**
+     * 只由CAS抢到COMPLETING的线程调用
+     */
+    private void complete(int finalState) {
+        state = finalState;
+        cancelTimeoutHandle();
+
+        Node head = STACK_UPDATER.getAndSet(this, COMPLETED);
+        // 栈是后进先出，反转后按注册顺序通知
+        Node ordered = null;
+        while (head != null) {
+            Node next = head.next;
+            head.next = ordered;
+            ordered = head;
+            head = next;
+        }
+        for (Node node = ordered; node != null; node = node.next) {
+            if (node.waiter != null) {
+                LockSupport.unpark(node.waiter);
+            } else {
+                notifyListener(node.listener);
+            }
+        }
+    }
+
+    /**
+     * @return false表示已经完成，没有入栈
+     */
+    private boolean push(Node node) {
+        for (;;) {
+            Node head = stack;
+            if (head == COMPLETED) {
+                return false;
+            }
+            node.next = head;
+            if (STACK_UPDATER.compareAndSet(this, head, node)) {
+                return true;
+            }
+        }
+    }
 
     private Response getResponseOrThrowException() {
         if (exception != null) {
@@ -139,10 +229,35 @@ public class ResponseFuture implements Future<Response> {
         return response;
     }
 
+    private void cancelTimeoutHandle() {
+        Timeout handle = timeoutHandle;
+        if (handle != null) {
+            handle.cancel();
+        }
+    }
+
+    private void notifyListener(FutureListener listener) {
+        try {
+            listener.onComplete(this);
+        } catch (Throwable t) {
+            logger.error("ResponseFuture notifyListener error: " + listener.getClass().getSimpleName(), t);
+        }
+    }
+
 	private long costTimeMillis() {
         return System.currentTimeMillis() - createTime;
     }
 
-}
+    private static final class Node {
 
+        private final FutureListener listener;
+        private final Thread waiter;
+        private Node next;
 
+        Node(FutureListener listener, Thread waiter) {
+            this.listener = listener;
+            this.waiter = waiter;
+        }
+    }
+
+}
@@ -20,7 +20,7 @@ public class WaterApi {
 
     private String send(String command, Map<String, Object> params) {
         Request request = new Request();
-        request.setRequestId(RequestId.newStringId());
+        request.setRequestId(RequestId.newLongId());
         request.setMessageType(command);
         request.setAttachments(params);
         Response response = client.send(request);
@@ -0,0 +1,69 @@
+package com.zjzcn.test.control;
+
+import com.alibaba.fastjson.JSON;
+import com.zjzcn.test.control.waterapi.Marker;
+import com.zjzcn.test.control.waterapi.MarkerTable;
+import com.zjzcn.test.control.waterapi.RobotState;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BaseControlTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testSnapshotFromStateAndMarker() {
+        Marker marker = JSON.parseObject("{\"marker_name\":\"test1\",\"floor\":1,\"pose\":{"
+                + "\"orientation\":{\"w\":0.7071067811865476,\"x\":0,\"y\":0,\"z\":0.7071067811865476},"
+                + "\"position\":{\"x\":4.0,\"y\":5.0,\"z\":0}}}", Marker.class);
+        RobotState state = new RobotState(1.0, 1.0, 0.5, "succeeded", "test1", 1, 123L);
+
+        MarkerTable markers = new MarkerTable("hotel", 1, 1, Collections.singletonMap("test1", marker));
+        ControlSnapshot snapshot = ControlSnapshot.of(state, markers, markers.require("test1"));
+        assertEquals(4.0, snapshot.getMarkerX(), DELTA);
+        assertEquals(5.0, snapshot.getMarkerY(), DELTA);
+        assertEquals(Math.PI / 2, snapshot.getMarkerTheta(), DELTA);
+        assertEquals(1.0, snapshot.getRobotX(), DELTA);
+        assertEquals(123L, snapshot.getStateNanos());
+
+        assertEquals(5.0, BaseControl.diffDistance(snapshot), DELTA);
+        assertEquals(Math.PI / 2 - 0.5, BaseControl.diffAngleWithMarker(snapshot), DELTA);
+    }
+
+    @Test
+    public void testPureFunctions() {
+        // 机器人在(1,0)朝向x轴，目标在(3,0)且朝向相反
+        ControlSnapshot snapshot = new ControlSnapshot(1, 0, 0, 3, 0, Math.PI, 0);
+        assertEquals(2.0, BaseControl.diffDistance(snapshot), DELTA);
+        assertEquals(0.0, BaseControl.diffAngleWithMove(snapshot), DELTA);
+        assertEquals(Math.PI, Math.abs(BaseControl.diffAngleWithMarker(snapshot)), DELTA);
+
+        // 目标在正上方，需要左转90度
+        snapshot = new ControlSnapshot(1, 0, 0, 1, 2, 0, 0);
+        assertEquals(Math.PI / 2, BaseControl.diffAngleWithMove(snapshot), DELTA);
+
+        // 角度差跨过±PI时取较短的方向
+        snapshot = new ControlSnapshot(0, 0, 3.0, 0, 0, -3.0, 0);
+        assertTrue(BaseControl.diffAngleWithMarker(snapshot) > 0);
+        assertEquals(2 * Math.PI - 6.0, BaseControl.diffAngleWithMarker(snapshot), DELTA);
+    }
+
+    @Test
+    public void testControlMetrics() {
+        ControlMetrics metrics = new ControlMetrics();
+        metrics.recordTick();
+        metrics.recordTick();
+        metrics.recordRoundTrip();
+        assertEquals(2, metrics.getTickCount());
+        assertEquals(0.5, metrics.getRoundTripsPerTick(), DELTA);
+        assertTrue(metrics.getTicksPerSecond() > 0);
+        metrics.reset();
+        assertEquals(0, metrics.getTickCount());
+        assertEquals(0, metrics.getRoundTripsPerTick(), DELTA);
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.zjzcn.test.control;
+
+import com.alibaba.fastjson.JSON;
+import com.zjzcn.test.control.transport.CannedClient;
+import com.zjzcn.test.control.transport.Request;
+import com.zjzcn.test.control.waterapi.Marker;
+import com.zjzcn.test.control.waterapi.MarkerTable;
+import com.zjzcn.test.control.waterapi.WaterApi;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MotionControllerTest {
+
+    private static MarkerTable markerTable(double x, double y, double z, double w) {
+        Marker marker = JSON.parseObject("{\"marker_name\":\"test1\",\"floor\":1,\"pose\":{\"orientation\":{\"w\":" + w
+                + ",\"x\":0,\"y\":0,\"z\":" + z + "},\"position\":{\"x\":" + x + ",\"y\":" + y + ",\"z\":0}}}", Marker.class);
+        return new MarkerTable("hotel", 1, 1, Collections.singletonMap("test1", marker));
+    }
+
+    private static MotionConfig config() {
+        MotionConfig config = new MotionConfig();
+        config.setRateHz(50);
+        config.setMaxLinearVelocity(2.0);
+        config.setMaxAngularVelocity(4.0);
+        config.setLinearGain(3.0);
+        config.setAngularGain(4.0);
+        config.setTimeoutMillis(10000);
+        return config;
+    }
+
+    @Test
+    public void testConvergesToMarkerPose() throws Exception {
+        SimulatedRobot robot = new SimulatedRobot(0, 0, 0, true);
+        MotionController controller = new MotionController(new WaterApi(robot), config());
+        try {
+            // 目标在(0.5, -0.4)，朝向正y方向
+            MarkerTable markers = markerTable(0.5, -0.4, Math.sin(Math.PI / 4), Math.cos(Math.PI / 4));
+            MotionResult result = controller.moveTo(markers, markers.require("test1")).get(15, TimeUnit.SECONDS);
+
+            assertEquals(result.toString(), MotionResult.Status.CONVERGED, result.getStatus());
+            assertTrue(result.getDistanceError() <= 0.03);
+            assertTrue(Math.abs(result.getAngleError()) <= 0.04);
+            assertTrue(result.getSteps() > 0);
+            assertTrue(result.getTicks() >= result.getSteps());
+            assertEquals(0.5, robot.x, 0.05);
+            assertEquals(-0.4, robot.y, 0.05);
+            assertTrue(controller.getMetrics().getTickCount() >= result.getTicks());
+            assertTrue(controller.getMetrics().getRoundTripCount() > 0);
+            // 结束时已停车
+            Thread.sleep(50);
+            assertEquals(0, robot.linear, 0);
+            assertEquals(0, robot.angular, 0);
+        } finally {
+            controller.close();
+        }
+    }
+
+    @Test
+    public void testTimeoutAndCancel() throws Exception {
+        SimulatedRobot robot = new SimulatedRobot(0, 0, 0, false);
+        MotionConfig config = config();
+        config.setTimeoutMillis(200);
+        MotionController controller = new MotionController(new WaterApi(robot), config);
+        try {
+            MarkerTable markers = markerTable(1, 0, 0, 1);
+            MotionResult result = controller.moveTo(markers, 0).get(5, TimeUnit.SECONDS);
+            assertEquals(MotionResult.Status.TIMEOUT, result.getStatus());
+            assertTrue(result.getElapsedMillis() >= 200);
+
+            config.setTimeoutMillis(10000);
+            CompletableFuture<MotionResult> first = controller.moveTo(markers, 0);
+            CompletableFuture<MotionResult> second = controller.moveTo(markers, 0);
+            assertEquals(MotionResult.Status.CANCELLED, first.get(5, TimeUnit.SECONDS).getStatus());
+            controller.stop();
+            assertEquals(MotionResult.Status.CANCELLED, second.get(5, TimeUnit.SECONDS).getStatus());
+        } finally {
+            controller.close();
+        }
+    }
+
+    /**
+     * 按收到的速度命令积分位姿的机器人，不订阅推送，状态只能查询
+     */
+    private static class SimulatedRobot extends CannedClient {
+
+        private final boolean moving;
+        private double x;
+        private double y;
+        private double theta;
+        private double linear;
+        private double angular;
+        private long lastNanos = System.nanoTime();
+
+        SimulatedRobot(double x, double y, double theta, boolean moving) {
+            this.x = x;
+            this.y = y;
+            this.theta = theta;
+            this.moving = moving;
+        }
+
+        @Override
+        protected synchronized String respond(Request req) {
+            long now = System.nanoTime();
+            double dt = (now - lastNanos) / 1e9;
+            lastNanos = now;
+            if (moving) {
+                x += linear * Math.cos(theta) * dt;
+                y += linear * Math.sin(theta) * dt;
+                theta += angular * dt;
+                theta = Math.atan2(Math.sin(theta), Math.cos(theta));
+            }
+            if ("/api/joy_control".equals(req.getMessageType())) {
+                linear = ((Number) req.getAttachments().get("linear_velocity")).doubleValue();
+                angular = ((Number) req.getAttachments().get("angular_velocity")).doubleValue();
+                return "{\"type\":\"response\",\"command\":\"/api/joy_control\",\"uuid\":" + req.getRequestId() + ",\"status\":\"OK\"}";
+            }
+            return "{\"type\":\"response\",\"command\":\"/api/robot_status\",\"uuid\":" + req.getRequestId() + ",\"status\":\"OK\","
+                    + "\"results\":{\"move_status\":\"idle\",\"current_pose\":{\"x\":" + x + ",\"y\":" + y + ",\"theta\":" + theta + "}}}";
+        }
+    }
+}
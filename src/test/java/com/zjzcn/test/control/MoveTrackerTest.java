@@ -0,0 +1,173 @@
+package com.zjzcn.test.control;
+
+import com.zjzcn.test.control.BaseControl.MoveStatus;
+import com.zjzcn.test.control.transport.CannedClient;
+import com.zjzcn.test.control.transport.JsonFrame;
+import com.zjzcn.test.control.transport.PushDispatcher;
+import com.zjzcn.test.control.waterapi.WaterApi;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MoveTrackerTest {
+
+    private static final String MOVE_OK = "{\"type\":\"response\",\"command\":\"/api/move\",\"uuid\":2,\"status\":\"OK\",\"error_message\":\"\"}";
+
+    private static final String MOVE_REJECTED = "{\"type\":\"response\",\"command\":\"/api/move\",\"uuid\":2,"
+            + "\"status\":\"UNKNOWN_ERROR\",\"error_message\":\"marker not found\"}";
+
+    private static String status(String moveStatus, String moveTarget) {
+        return "{\"move_status\":\"" + moveStatus + "\",\"move_target\":\"" + moveTarget + "\",\"current_pose\":{\"x\":0,\"y\":0,\"theta\":0}}";
+    }
+
+    private static CannedClient robot(String status) {
+        return new CannedClient().put("/api/robot_status", statusResponse(status)).put("/api/move", MOVE_OK);
+    }
+
+    private static String statusResponse(String status) {
+        return "{\"type\":\"response\",\"command\":\"/api/robot_status\",\"uuid\":1,\"status\":\"OK\",\"results\":" + status + "}";
+    }
+
+    private static JsonFrame push(String results) {
+        String json = "{\"type\":\"callback\",\"command\":\"/api/request_data\",\"topic\":\"robot_status\",\"results\":" + results + "}";
+        return JsonFrame.wrap(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCompletesFromPush() throws Exception {
+        CannedClient client = robot(status("running", "test1"));
+        PushDispatcher dispatcher = new PushDispatcher();
+        MoveTracker tracker = new MoveTracker(new WaterApi(client, dispatcher), 60000);
+
+        CompletableFuture<MoveStatus> future = tracker.moveTo("test1", 10000);
+        assertEquals(1, client.count("/api/move"));
+        assertFalse(future.isDone());
+        assertEquals(1, tracker.getPendingCount());
+
+        dispatcher.dispatch(push(status("succeeded", "test1")));
+        assertEquals(MoveStatus.succeeded, future.get(1, TimeUnit.SECONDS));
+        assertEquals(0, tracker.getPendingCount());
+        tracker.close();
+    }
+
+    @Test
+    public void testCompletesFromPollerAndSharesIt() throws Exception {
+        CannedClient client = robot(status("running", "test1"));
+        MoveTracker tracker = new MoveTracker(new WaterApi(client), 20);
+
+        List<CompletableFuture<MoveStatus>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(tracker.track("test1", 10000));
+        }
+        Thread.sleep(100);
+        for (CompletableFuture<MoveStatus> future : futures) {
+            assertFalse(future.isDone());
+        }
+        int polls = client.count("/api/robot_status");
+        // 所有移动共用一个低频查询
+        assertTrue("polls " + polls, polls < 20);
+
+        client.put("/api/robot_status", statusResponse(status("failed", "test1")));
+        for (CompletableFuture<MoveStatus> future : futures) {
+            assertEquals(MoveStatus.failed, future.get(5, TimeUnit.SECONDS));
+        }
+        tracker.close();
+    }
+
+    @Test
+    public void testTimeoutRejectAndReplace() throws Exception {
+        CannedClient client = robot(status("running", "test1"));
+        PushDispatcher dispatcher = new PushDispatcher();
+        MoveTracker tracker = new MoveTracker(new WaterApi(client, dispatcher), 60000);
+
+        try {
+            tracker.moveTo("test1", 50).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals("test1", ((MoveTimeoutException) e.getCause()).getMarkerName());
+        }
+
+        client.put("/api/move", MOVE_REJECTED);
+        try {
+            tracker.moveTo("test1", 1000).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage().contains("rejected"));
+        }
+
+        client.put("/api/move", MOVE_OK);
+        CompletableFuture<MoveStatus> future = tracker.moveTo("test1", 10000);
+        dispatcher.dispatch(push(status("running", "test2")));
+        assertEquals(MoveStatus.canceled, future.get(1, TimeUnit.SECONDS));
+
+        future = tracker.track("test1", 0);
+        tracker.cancelAll();
+        assertTrue(future.isCancelled());
+        assertEquals(0, tracker.getPendingCount());
+        tracker.close();
+    }
+
+    @Test
+    public void testIgnoresStatusLeftByPreviousMove() throws Exception {
+        // 上一次移动已经成功到达test1，再次去test1时查询到的succeeded是旧的
+        CannedClient client = robot(status("succeeded", "test1"));
+        PushDispatcher dispatcher = new PushDispatcher();
+        MoveTracker tracker = new MoveTracker(new WaterApi(client, dispatcher), 60000);
+        dispatcher.dispatch(push(status("succeeded", "test1")));
+
+        CompletableFuture<MoveStatus> future = tracker.moveTo("test1", 10000);
+        assertEquals(1, client.count("/api/robot_status"));
+        dispatcher.dispatch(push(status("succeeded", "test1")));
+        assertFalse(future.isDone());
+
+        dispatcher.dispatch(push(status("running", "test1")));
+        assertFalse(future.isDone());
+        dispatcher.dispatch(push(status("succeeded", "test1")));
+        assertEquals(MoveStatus.succeeded, future.get(1, TimeUnit.SECONDS));
+        tracker.close();
+    }
+
+    @Test
+    public void testRunningToOldTargetDoesNotCancel() throws Exception {
+        // 机器人还在去test2，新命令生效前查询到的running不代表被取代
+        CannedClient client = robot(status("running", "test2"));
+        PushDispatcher dispatcher = new PushDispatcher();
+        MoveTracker tracker = new MoveTracker(new WaterApi(client, dispatcher), 60000);
+        dispatcher.dispatch(push(status("running", "test2")));
+
+        CompletableFuture<MoveStatus> future = tracker.moveTo("test1", 10000);
+        assertEquals(1, client.count("/api/robot_status"));
+        dispatcher.dispatch(push(status("running", "test2")));
+        assertFalse(future.isDone());
+
+        dispatcher.dispatch(push(status("running", "test1")));
+        dispatcher.dispatch(push(status("running", "test3")));
+        assertEquals(MoveStatus.canceled, future.get(1, TimeUnit.SECONDS));
+        tracker.close();
+    }
+
+    @Test
+    public void testFailsWithoutRunning() throws Exception {
+        // 机器人停在test1附近，去test1的命令被接受后直接failed，中间没有running
+        CannedClient client = robot(status("idle", "test1"));
+        PushDispatcher dispatcher = new PushDispatcher();
+        MoveTracker tracker = new MoveTracker(new WaterApi(client, dispatcher), 60000);
+        dispatcher.dispatch(push(status("idle", "test1")));
+
+        CompletableFuture<MoveStatus> future = tracker.moveTo("test1", 10000);
+        assertFalse(future.isDone());
+        dispatcher.dispatch(push(status("failed", "test1")));
+        assertEquals(MoveStatus.failed, future.get(1, TimeUnit.SECONDS));
+        tracker.close();
+    }
+}
@@ -0,0 +1,106 @@
+package com.zjzcn.test.control.fleet;
+
+import com.zjzcn.test.control.transport.CannedClient;
+import com.zjzcn.test.control.waterapi.RobotStatus;
+import com.zjzcn.test.control.waterapi.WaterApi;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FleetManagerTest {
+
+    private static final String ROBOT_STATUS = "{\"type\":\"response\",\"command\":\"/api/robot_status\",\"uuid\":1,\"status\":\"OK\","
+            + "\"error_message\":\"\",\"results\":{\"move_target\":\"test1\",\"move_status\":\"running\",\"power_percent\":60,"
+            + "\"current_pose\":{\"x\":1.0,\"y\":2.0,\"theta\":0.5},\"current_floor\":1}}";
+
+    private static final String MOVE = "{\"type\":\"response\",\"command\":\"/api/move\",\"uuid\":2,\"status\":\"OK\",\"error_message\":\"\"}";
+
+    @Test
+    public void testStatusAllWithinDeadline() {
+        FleetManager fleet = new FleetManager();
+        fleet.addRobot("r1", new WaterApi(responding()));
+        fleet.addRobot("r2", new WaterApi(silent()));
+        fleet.addRobot("r3", new WaterApi(disconnected()));
+
+        long start = System.currentTimeMillis();
+        FleetResult<RobotStatus> result = fleet.statusAll(100);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue("elapsed " + elapsed, elapsed >= 90 && elapsed < 1000);
+        assertEquals(3, result.getResults().size());
+        assertEquals(1, result.getSuccessCount());
+        assertFalse(result.isAllSuccess());
+
+        RobotStatus status = result.get("r1").getValue();
+        assertEquals("running", status.getMoveStatus());
+        assertEquals(2.0, status.getCurrentPose().getY(), 0);
+        assertTrue(result.get("r2").isTimeout());
+        assertTrue(result.get("r3").getException() instanceof RuntimeException);
+        assertFalse(result.get("r3").isTimeout());
+
+        Map<String, RobotHealth> health = fleet.getHealth();
+        assertEquals(1, health.get("r1").getSuccessCount());
+        assertTrue(health.get("r1").isHealthy());
+        assertEquals(1, health.get("r3").getConsecutiveFailures());
+        assertEquals(0, health.get("r2").getSuccessCount() + health.get("r2").getFailureCount());
+        fleet.close();
+        assertEquals(0, fleet.size());
+    }
+
+    @Test
+    public void testCompletesBeforeDeadlineWhenAllRespond() {
+        FleetManager fleet = new FleetManager();
+        for (int i = 0; i < 50; i++) {
+            fleet.addRobot("r" + i, new WaterApi(responding()));
+        }
+        FleetResult<RobotStatus> result = fleet.statusAll(10000);
+        assertTrue(result.isAllSuccess());
+        assertEquals(50, result.getValues().size());
+        assertTrue(result.getElapsedMillis() < 5000);
+        fleet.close();
+    }
+
+    @Test
+    public void testMoveToMarkers() throws Exception {
+        FleetManager fleet = new FleetManager();
+        fleet.addRobot("r1", new WaterApi(responding()));
+        fleet.addRobot("r2", new WaterApi(responding()));
+
+        Map<String, String> targets = new LinkedHashMap<>();
+        targets.put("r2", "m2");
+        targets.put("r1", "m1");
+        targets.put("unknown", "m3");
+        FleetResult<?> result = fleet.moveToMarkersAsync(targets, 1000).get();
+
+        assertEquals(Arrays.asList("r2", "r1", "unknown"), Arrays.asList(result.getResults().keySet().toArray()));
+        assertTrue(result.get("r1").isSuccess());
+        assertTrue(result.get("r2").isSuccess());
+        assertFalse(result.get("unknown").isSuccess());
+        assertEquals(Arrays.asList("unknown"), result.getFailedRobotIds());
+        assertNull(fleet.getWaterApi("unknown"));
+        fleet.close();
+    }
+
+    private static CannedClient responding() {
+        return new CannedClient().put("/api/robot_status", ROBOT_STATUS).put("/api/move", MOVE);
+    }
+
+    private static CannedClient silent() {
+        CannedClient client = new CannedClient();
+        client.setSilent(true);
+        return client;
+    }
+
+    private static CannedClient disconnected() {
+        CannedClient client = new CannedClient();
+        client.setConnected(false);
+        return client;
+    }
+}
@@ -0,0 +1,118 @@
+package com.zjzcn.test.control.transport;
+
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 不经过网络的Client，按messageType返回预置的JSON响应，并记录每个命令的调用次数。
+ * <pre>
+ * 		子类覆盖respond可以按请求生成响应，例如模拟机器人的状态变化
+ * 		silent时请求永不完成，断开时请求立即失败
+ * </pre>
+ */
+public class CannedClient implements Client {
+
+    private final Map<String, String> responses = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+    private volatile boolean connected = true;
+    private volatile boolean silent;
+
+    /**
+     * 替换messageType的响应
+     */
+    public CannedClient put(String messageType, String json) {
+        responses.put(messageType, json);
+        return this;
+    }
+
+    public int count(String messageType) {
+        AtomicInteger count = counts.get(messageType);
+        return count == null ? 0 : count.get();
+    }
+
+    public void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
+    public void setSilent(boolean silent) {
+        this.silent = silent;
+    }
+
+    /**
+     * 请求的响应JSON，默认取put的响应，没有时抛出RuntimeException
+     */
+    protected String respond(Request req) {
+        String json = responses.get(req.getMessageType());
+        if (json == null) {
+            throw new RuntimeException("No canned response: " + req.getMessageType());
+        }
+        return json;
+    }
+
+    @Override
+    public void reconnect() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return null;
+    }
+
+    @Override
+    public Response send(Request req) {
+        try {
+            return sendAsync(req).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    @Override
+    public Response send(Request req, long timeoutMillis) {
+        return send(req);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(Request req) {
+        counts.putIfAbsent(req.getMessageType(), new AtomicInteger());
+        counts.get(req.getMessageType()).incrementAndGet();
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        if (!connected) {
+            future.completeExceptionally(new RuntimeException("Netty client not connected"));
+        } else if (!silent) {
+            try {
+                Response response = new Response();
+                response.setRequestId(req.getRequestId());
+                response.setData(JsonFrame.wrap(respond(req).getBytes(StandardCharsets.UTF_8)));
+                future.complete(response);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(Request req, long timeoutMillis) {
+        return sendAsync(req);
+    }
+}
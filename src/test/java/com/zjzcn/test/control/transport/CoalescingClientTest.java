@@ -0,0 +1,168 @@
+package com.zjzcn.test.control.transport;
+
+import org.junit.Test;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CoalescingClientTest {
+
+    @Test
+    public void testIdenticalRequestsShareOneSend() {
+        ManualClient delegate = new ManualClient();
+        CoalescingClient client = new CoalescingClient(delegate, "/api/robot_status");
+
+        CompletableFuture<Response> first = client.sendAsync(newRequest("/api/robot_status"));
+        CompletableFuture<Response> second = client.sendAsync(newRequest("/api/robot_status"));
+        assertEquals(1, delegate.pending.size());
+        assertNotSame(first, second);
+
+        Response response = newResponse("ok");
+        delegate.pending.get(0).complete(response);
+        assertSame(response, first.join());
+        assertSame(response, second.join());
+        assertEquals(1, client.getSentCount());
+        assertEquals(1, client.getCoalescedCount());
+
+        // 完成后不缓存，下一次重新发送
+        client.sendAsync(newRequest("/api/robot_status"));
+        assertEquals(2, delegate.pending.size());
+    }
+
+    @Test
+    public void testDifferentParamsAndNonIdempotentNotCoalesced() {
+        ManualClient delegate = new ManualClient();
+        CoalescingClient client = new CoalescingClient(delegate, "/api/markers/query_list");
+
+        Request a = newRequest("/api/markers/query_list");
+        a.addAttachment("floor", 1);
+        Request b = newRequest("/api/markers/query_list");
+        b.addAttachment("floor", 2);
+        client.sendAsync(a);
+        client.sendAsync(b);
+        client.sendAsync(newRequest("/api/move"));
+        client.sendAsync(newRequest("/api/move"));
+
+        assertEquals(4, delegate.pending.size());
+        assertEquals(0, client.getCoalescedCount());
+    }
+
+    @Test
+    public void testFailureFansOutAndCancelIsLocal() {
+        ManualClient delegate = new ManualClient();
+        CoalescingClient client = new CoalescingClient(delegate, "/api/map/list");
+
+        CompletableFuture<Response> first = client.sendAsync(newRequest("/api/map/list"));
+        CompletableFuture<Response> second = client.sendAsync(newRequest("/api/map/list"));
+        CompletableFuture<Response> third = client.sendAsync(newRequest("/api/map/list"));
+        first.cancel(false);
+        assertEquals(1, delegate.pending.size());
+
+        delegate.pending.get(0).completeExceptionally(new IllegalStateException("disconnected"));
+        assertTrue(first.isCancelled());
+        assertFailed(second);
+        assertFailed(third);
+    }
+
+    @Test
+    public void testSyncSendUnwrapsFailure() {
+        ManualClient delegate = new ManualClient();
+        delegate.failImmediately = true;
+        CoalescingClient client = new CoalescingClient(delegate, "/api/robot_status");
+        try {
+            client.send(newRequest("/api/robot_status"), 1000);
+            fail("should fail");
+        } catch (IllegalStateException e) {
+            assertEquals("disconnected", e.getMessage());
+        }
+    }
+
+    private static void assertFailed(CompletableFuture<Response> future) {
+        try {
+            future.join();
+            fail("should fail");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static Request newRequest(String messageType) {
+        Request request = new Request();
+        request.setRequestId(RequestId.newLongId());
+        request.setMessageType(messageType);
+        return request;
+    }
+
+    private static Response newResponse(Object data) {
+        Response response = new Response();
+        response.setData(data);
+        return response;
+    }
+
+    /**
+     * 只记录请求，由测试手动完成
+     */
+    private static class ManualClient implements Client {
+
+        private final List<CompletableFuture<Response>> pending = Collections.synchronizedList(new ArrayList<CompletableFuture<Response>>());
+        private boolean failImmediately;
+
+        @Override
+        public void reconnect() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public Response send(Request req) {
+            return sendAsync(req).join();
+        }
+
+        @Override
+        public Response send(Request req, long timeoutMillis) {
+            return sendAsync(req, timeoutMillis).join();
+        }
+
+        @Override
+        public CompletableFuture<Response> sendAsync(Request req) {
+            return sendAsync(req, 1000);
+        }
+
+        @Override
+        public CompletableFuture<Response> sendAsync(Request req, long timeoutMillis) {
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            if (failImmediately) {
+                future.completeExceptionally(new IllegalStateException("disconnected"));
+            }
+            pending.add(future);
+            return future;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.zjzcn.test.control.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JsonFrameTest {
+
+    private static JsonFrame scan(String json) {
+        ByteBuf buf = Unpooled.copiedBuffer(json, StandardCharsets.UTF_8);
+        JsonFrame frame = JsonFrame.scan(buf);
+        assertEquals(0, buf.readerIndex());
+        return frame;
+    }
+
+    @Test
+    public void testScansTopLevelFieldsOnly() {
+        JsonFrame frame = scan("{\"results\":{\"type\":\"notification\",\"uuid\":7,\"list\":[{\"uuid\":8}]},"
+                + "\"error_message\":\"bad \\\"uuid\\\": 9, type\",\"type\" : \"response\", \"uuid\" : 123}");
+        assertTrue(frame.isResponse());
+        assertSame(JsonFrame.TYPE_RESPONSE, frame.getType());
+        assertEquals(123, frame.getUuid());
+    }
+
+    @Test
+    public void testQuotedUuidAndUnknownType() {
+        JsonFrame frame = scan("{\"type\":\"response\",\"uuid\":\"456\",\"status\":\"OK\"}");
+        assertEquals(456, frame.getUuid());
+
+        frame = scan("{\"type\":\"other\",\"uuid\":\"not-a-number\",\"status\":\"OK\"}");
+        assertNull(frame.getType());
+        assertFalse(frame.isResponse());
+        assertEquals(0, frame.getUuid());
+
+        frame = scan("not json");
+        assertNull(frame.getType());
+        assertEquals(0, frame.getUuid());
+    }
+
+    @Test
+    public void testParseIsCached() {
+        String json = "{\"type\":\"response\",\"uuid\":1,\"status\":\"OK\",\"error_message\":\"\",\"results\":{\"a\":1}}";
+        JsonFrame frame = scan(json);
+        assertEquals(json, frame.toString());
+        assertSame(frame.toString(), frame.toString());
+
+        WaterResult<Object> result = frame.parse(WaterResult.class);
+        assertTrue(result.isOk());
+        assertEquals(1, result.getUuid());
+        assertSame(result, frame.parse(WaterResult.class));
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.zjzcn.test.control.transport;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.zjzcn.test.transport.AdmissionController;
+import com.zjzcn.test.transport.netty.NettyConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NettyClientTest {
+
+    private SilentServer server;
+    private NettyClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new SilentServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        server.stop();
+    }
+
+    private static Request newRequest() {
+        Request request = new Request();
+        request.setRequestId(RequestId.newLongId());
+        request.setMessageType("/api/robot_status");
+        return request;
+    }
+
+    @Test
+    public void testSendAsyncDoesNotBlockUnderBlockPolicy() {
+        NettyConfig config = new NettyConfig();
+        config.setMaxInFlight(1);
+        config.setAdmissionPolicy(AdmissionController.Policy.BLOCK);
+        config.setAdmissionMaxWaitMillis(1000);
+        client = new NettyClient("127.0.0.1", server.port, null, config);
+
+        CompletableFuture<Response> first = client.sendAsync(newRequest());
+        assertFalse(first.isDone());
+
+        // 名额已满，BLOCK策略下同步send会等maxWaitMillis，异步发送立即失败
+        long start = System.nanoTime();
+        CompletableFuture<Response> second = client.sendAsync(newRequest());
+        long costMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("sendAsync blocked " + costMillis + "ms", costMillis < 500);
+        assertTrue(second.isCompletedExceptionally());
+        assertEquals(1, client.getAdmissionStats().getRejectedCount());
+
+        try {
+            client.send(newRequest(), 100);
+            fail("should not be admitted");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("not admitted"));
+        }
+        assertEquals(1, client.getInFlightCount());
+    }
+
+    @Test
+    public void testSendFailsFastWhileNotConnected() {
+        server.stopListening();
+        NettyConfig config = new NettyConfig();
+        config.setBlockingConnect(false);
+        client = new NettyClient("127.0.0.1", server.port, null, config);
+
+        long start = System.nanoTime();
+        try {
+            client.send(newRequest(), 5000);
+            fail("should fail while not connected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("not connected"));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        // 没有占用准入名额，也没有留下等超时的回调
+        assertEquals(0, client.getAdmissionStats().getAdmittedCount());
+        assertEquals(0, client.getInFlightCount());
+
+        assertTrue(client.sendAsync(newRequest()).isCompletedExceptionally());
+        assertEquals(0, client.getInFlightCount());
+    }
+
+    @Test
+    public void testCloseBeforeEverConnected() {
+        server.stopListening();
+        NettyConfig config = new NettyConfig();
+        config.setBlockingConnect(false);
+        client = new NettyClient("127.0.0.1", server.port, null, config);
+
+        Logger logger = (Logger) LoggerFactory.getLogger(NettyClient.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        try {
+            client.close();
+        } finally {
+            logger.detachAppender(appender);
+        }
+        assertFalse(client.isConnected());
+        for (ILoggingEvent event : appender.list) {
+            assertFalse(event.getFormattedMessage(), event.getLevel().isGreaterOrEqual(Level.ERROR));
+        }
+    }
+}
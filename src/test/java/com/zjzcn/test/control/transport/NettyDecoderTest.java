@@ -0,0 +1,38 @@
+package com.zjzcn.test.control.transport;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class NettyDecoderTest {
+
+    @Test
+    public void testDecodesResponsesAndPushFrames() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyDecoder());
+        String status = "{\"type\":\"response\",\"command\":\"/api/robot_status\",\"uuid\":42,\"status\":\"OK\"}";
+        String notice = "{\"type\":\"notification\",\"code\":\"01002\"}";
+        String noUuid = "{\"type\":\"response\",\"command\":\"/api/move\"}";
+        String move = "{\"type\":\"response\",\"command\":\"/api/move\",\"uuid\":43}";
+        String data = notice + "\n" + "not json\n" + noUuid + "\n" + status + "\n" + move.substring(0, 10);
+
+        channel.writeInbound(Unpooled.copiedBuffer(data, StandardCharsets.UTF_8));
+        JsonFrame push = channel.readInbound();
+        assertEquals(JsonFrame.TYPE_NOTIFICATION, push.getType());
+        assertEquals(notice, push.toString());
+        Response response = channel.readInbound();
+        assertEquals(42, response.getRequestId());
+        assertEquals(status, response.getData().toString());
+        assertNull(channel.readInbound());
+
+        channel.writeInbound(Unpooled.copiedBuffer(move.substring(10) + "\n", StandardCharsets.UTF_8));
+        response = channel.readInbound();
+        assertEquals(43, response.getRequestId());
+        assertEquals(move, response.getData().toString());
+    }
+
+}
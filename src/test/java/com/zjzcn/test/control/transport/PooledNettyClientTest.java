@@ -0,0 +1,166 @@
+package com.zjzcn.test.control.transport;
+
+import com.zjzcn.test.control.waterapi.WaterApi;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PooledNettyClientTest {
+
+    private SilentServer server;
+    private PooledNettyClient pool;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new SilentServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+        server.stop();
+    }
+
+    @Test
+    public void testLeastInFlightSpreadsLoad() {
+        pool = new PooledNettyClient("127.0.0.1", server.port, 3, PooledNettyClient.SelectStrategy.LEAST_IN_FLIGHT);
+        assertEquals(3, pool.getHealthyCount());
+
+        for (int i = 0; i < 3; i++) {
+            pool.getMember(0).sendAsync(newRequest());
+        }
+        for (int i = 0; i < 4; i++) {
+            pool.sendAsync(newRequest());
+        }
+        // 服务端不响应，请求一直未完成；新请求都避开了负载最重的第一个连接
+        assertEquals(3, pool.getMember(0).getInFlightCount());
+        assertEquals(2, pool.getMember(1).getInFlightCount());
+        assertEquals(2, pool.getMember(2).getInFlightCount());
+        assertEquals(7, pool.getInFlightCount());
+    }
+
+    @Test
+    public void testRoundRobinIgnoresLoad() {
+        pool = new PooledNettyClient("127.0.0.1", server.port, 3, PooledNettyClient.SelectStrategy.ROUND_ROBIN);
+
+        for (int i = 0; i < 3; i++) {
+            pool.getMember(0).sendAsync(newRequest());
+        }
+        for (int i = 0; i < 6; i++) {
+            pool.sendAsync(newRequest());
+        }
+        assertEquals(5, pool.getMember(0).getInFlightCount());
+        assertEquals(2, pool.getMember(1).getInFlightCount());
+        assertEquals(2, pool.getMember(2).getInFlightCount());
+    }
+
+    @Test
+    public void testSkipsUnhealthyMemberAndWarmupWaitsForBackoff() throws Exception {
+        pool = new PooledNettyClient("127.0.0.1", server.port, 3, PooledNettyClient.SelectStrategy.ROUND_ROBIN);
+        server.awaitAccepted(3);
+        NettyClient broken = pool.getMember(1);
+
+        // 断开第二个连接并停止监听，它的退避重连一直失败
+        server.closeConnectionOf(broken);
+        server.stopListening();
+        await(new Condition() {
+            @Override
+            public boolean test() {
+                return !pool.getMember(1).isConnected() && pool.getMember(1).isReconnecting();
+            }
+        });
+        assertEquals(2, pool.getHealthyCount());
+
+        for (int i = 0; i < 6; i++) {
+            CompletableFuture<Response> future = pool.sendAsync(newRequest());
+            assertFalse("request routed to a disconnected member", future.isDone());
+        }
+        assertEquals(0, pool.getMember(1).getInFlightCount());
+        assertEquals(6, pool.getInFlightCount());
+
+        // 等几次重连失败，退避间隔增长到800ms以上，再恢复监听
+        await(new Condition() {
+            @Override
+            public boolean test() {
+                return pool.getMember(1).getMetricsSnapshot().getReconnectCount() >= 4;
+            }
+        });
+        Thread.sleep(50);
+        int acceptedBefore = server.accepted.size();
+        server.startListening();
+
+        // 重连已经在退避中，warmup不再为它建立第二个连接
+        assertEquals(2, pool.warmup());
+        assertTrue(pool.getMember(1).isReconnecting());
+        assertEquals(acceptedBefore, server.accepted.size());
+
+        await(new Condition() {
+            @Override
+            public boolean test() {
+                return pool.getHealthyCount() == 3;
+            }
+        });
+        Thread.sleep(300);
+        assertEquals(acceptedBefore + 1, server.accepted.size());
+    }
+
+    @Test
+    public void testPushFromAnyMemberReachesWaterApi() throws Exception {
+        pool = new PooledNettyClient("127.0.0.1", server.port, 3, PooledNettyClient.SelectStrategy.ROUND_ROBIN);
+        final WaterApi waterApi = new WaterApi(pool);
+        assertSame(pool.getPushDispatcher(), waterApi.getPushDispatcher());
+        server.awaitAccepted(3);
+
+        String push = "{\"type\":\"callback\",\"command\":\"/api/request_data\",\"topic\":\"robot_status\",\"results\":"
+                + "{\"move_status\":\"idle\",\"current_pose\":{\"x\":0,\"y\":0,\"theta\":0}}}\n";
+        for (Socket socket : server.accepted) {
+            OutputStream out = socket.getOutputStream();
+            out.write(push.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+        // 每个连接上的推送都到达同一个分发器
+        await(new Condition() {
+            @Override
+            public boolean test() {
+                return waterApi.getRobotStateCache().getPushCount() == 3;
+            }
+        });
+        assertEquals(3, pool.getPushDispatcher().getDispatchedCount());
+    }
+
+    private static Request newRequest() {
+        Request request = new Request();
+        request.setRequestId(RequestId.newLongId());
+        request.setMessageType("/api/robot_status");
+        return request;
+    }
+
+    private interface Condition {
+
+        boolean test();
+    }
+
+    private static void await(Condition condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.test()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("condition not met in 10s");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.zjzcn.test.control.transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接受连接但从不响应，请求会一直停在in-flight
+ */
+class SilentServer {
+
+    final List<Socket> accepted = new CopyOnWriteArrayList<>();
+    private volatile ServerSocket serverSocket;
+    int port;
+
+    /**
+     * 绑定随机端口
+     */
+    void start() throws IOException {
+        startListening(0);
+    }
+
+    /**
+     * stopListening之后在原来的端口上恢复监听
+     */
+    void startListening() throws IOException {
+        startListening(port);
+    }
+
+    private void startListening(int bindPort) throws IOException {
+        final ServerSocket socket = new ServerSocket();
+        socket.setReuseAddress(true);
+        socket.bind(new InetSocketAddress("127.0.0.1", bindPort));
+        serverSocket = socket;
+        port = socket.getLocalPort();
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        accepted.add(socket.accept());
+                    }
+                } catch (IOException e) {
+                    // 停止监听
+                }
+            }
+        }, "silent-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    void stopListening() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * 客户端连接成功时accept线程可能还没把socket放进accepted，等它追上
+     */
+    void awaitAccepted(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (accepted.size() < count) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("accepted " + accepted.size() + " of " + count + " in 10s");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    void closeConnectionOf(NettyClient client) throws IOException {
+        int clientPort = ((InetSocketAddress) client.getLocalAddress()).getPort();
+        for (Socket socket : accepted) {
+            if (socket.getPort() == clientPort) {
+                socket.close();
+            }
+        }
+    }
+
+    void stop() {
+        stopListening();
+        for (Socket socket : accepted) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
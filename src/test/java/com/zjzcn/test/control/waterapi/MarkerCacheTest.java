@@ -0,0 +1,232 @@
+package com.zjzcn.test.control.waterapi;
+
+import com.zjzcn.test.control.transport.CannedClient;
+import com.zjzcn.test.control.transport.Request;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MarkerCacheTest {
+
+    private static final String CURRENT_MAP = "{\"type\":\"response\",\"command\":\"/api/map/get_current_map\",\"uuid\":1,"
+            + "\"status\":\"OK\",\"results\":{\"map_name\":\"hotel\",\"floor\":3}}";
+
+    private static final String SET_MAP = "{\"type\":\"response\",\"command\":\"/api/map/set_current_map\",\"uuid\":2,\"status\":\"OK\"}";
+
+    private static String markerList(double x) {
+        return "{\"type\":\"response\",\"command\":\"/api/markers/query_list\",\"uuid\":3,\"status\":\"OK\",\"results\":{"
+                + "\"test1\":{\"floor\":3,\"marker_name\":\"test1\",\"pose\":{\"orientation\":{\"w\":0.7071067811865476,\"x\":0,\"y\":0,"
+                + "\"z\":0.7071067811865476},\"position\":{\"x\":" + x + ",\"y\":5.0,\"z\":0}}},"
+                + "\"test2\":{\"floor\":3,\"marker_name\":\"test2\",\"pose\":{\"orientation\":{\"w\":1,\"x\":0,\"y\":0,\"z\":0},"
+                + "\"position\":{\"x\":-1.0,\"y\":-2.0,\"z\":0}}}}}";
+    }
+
+    @Test
+    public void testLookupsAreLocalUntilMapChanges() {
+        CannedClient client = mapClient();
+        client.put("/api/markers/query_list", markerList(4.0));
+        WaterApi waterApi = new WaterApi(client);
+        MarkerCache cache = waterApi.getMarkerCache();
+
+        MarkerTable table = cache.get();
+        assertEquals("hotel", table.getMapName());
+        assertEquals(3, table.getFloor());
+        assertEquals(2, table.size());
+        int i = table.require("test1");
+        assertEquals(4.0, table.getX(i), 0);
+        assertEquals(5.0, table.getY(i), 0);
+        assertEquals(Math.PI / 2, table.getTheta(i), 1e-9);
+        assertEquals(0.0, table.getTheta(table.indexOf("test2")), 1e-9);
+        assertEquals(-1, table.indexOf("none"));
+        try {
+            table.require("none");
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("none"));
+        }
+
+        for (int n = 0; n < 100; n++) {
+            assertSame(table, cache.get());
+        }
+        assertEquals(1, client.count("/api/map/get_current_map"));
+        assertEquals(1, client.count("/api/markers/query_list"));
+        assertTrue(cache.isCurrent(table));
+
+        client.put("/api/markers/query_list", markerList(6.0));
+        waterApi.setCurrentMap("hotel", 4);
+        assertFalse(cache.isCurrent(table));
+        MarkerTable changed = cache.get();
+        assertEquals(4, changed.getFloor());
+        assertEquals(6.0, changed.getX(changed.require("test1")), 0);
+        assertTrue(changed.getVersion() > table.getVersion());
+        assertEquals(2, client.count("/api/markers/query_list"));
+        assertEquals(1, client.count("/api/map/get_current_map"));
+    }
+
+    @Test
+    public void testTtlAndBackgroundRefresh() throws Exception {
+        CannedClient client = mapClient();
+        client.put("/api/markers/query_list", markerList(4.0));
+        WaterApi waterApi = new WaterApi(client);
+
+        MarkerCache cache = new MarkerCache(waterApi, 20);
+        MarkerTable table = cache.get();
+        Thread.sleep(50);
+        assertNotSame(table, cache.get());
+        assertEquals(2, client.count("/api/markers/query_list"));
+
+        cache = new MarkerCache(waterApi, 0);
+        table = cache.get();
+        client.put("/api/markers/query_list", markerList(8.0));
+        cache.startBackgroundRefresh(10);
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (cache.isCurrent(table) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+        } finally {
+            cache.stopBackgroundRefresh();
+        }
+        MarkerTable refreshed = cache.get();
+        assertEquals(8.0, refreshed.getX(refreshed.require("test1")), 0);
+    }
+
+    @Test
+    public void testLoadsStartedBeforeMapAckAreDiscarded() throws Exception {
+        final SwitchingClient client = new SwitchingClient();
+        final WaterApi waterApi = new WaterApi(client);
+        final MarkerCache cache = waterApi.getMarkerCache();
+        cache.get();
+
+        Thread switcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                waterApi.setCurrentMap("hotel", 4);
+            }
+        });
+        switcher.start();
+        assertTrue(client.setSent.await(5, TimeUnit.SECONDS));
+
+        // set_current_map还没确认，机器人仍在旧地图上，这次加载在确认前完成
+        MarkerTable early = cache.get();
+        assertEquals(4, early.getFloor());
+        assertEquals(4.0, early.getX(early.require("test1")), 0);
+
+        // 这次刷新在确认前读到旧地图的标记点，确认后才返回
+        client.listGate = new CountDownLatch(1);
+        final MarkerTable[] late = new MarkerTable[1];
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                late[0] = cache.refresh();
+            }
+        });
+        loader.start();
+        assertTrue(client.listing.await(5, TimeUnit.SECONDS));
+
+        client.ack.countDown();
+        switcher.join(5000);
+        assertFalse(cache.isCurrent(early));
+        client.listGate.countDown();
+        loader.join(5000);
+
+        assertEquals(6.0, late[0].getX(late[0].require("test1")), 0);
+        MarkerTable table = cache.get();
+        assertEquals(4, table.getFloor());
+        assertEquals(6.0, table.getX(table.require("test1")), 0);
+    }
+
+    @Test
+    public void testLateCurrentMapQueryDoesNotOverrideSwitch() throws Exception {
+        final SwitchingClient client = new SwitchingClient();
+        client.ack.countDown();
+        client.mapGate = new CountDownLatch(1);
+        final WaterApi waterApi = new WaterApi(client);
+        final MarkerCache cache = waterApi.getMarkerCache();
+
+        // 第一次get查询当前地图，拿到切换前的hotel,3之后才返回
+        final MarkerTable[] loaded = new MarkerTable[1];
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loaded[0] = cache.get();
+            }
+        });
+        loader.start();
+        assertTrue(client.querying.await(5, TimeUnit.SECONDS));
+
+        waterApi.setCurrentMap("hotel", 4);
+        client.mapGate.countDown();
+        loader.join(5000);
+
+        assertEquals(4, loaded[0].getFloor());
+        assertEquals(6.0, loaded[0].getX(loaded[0].require("test1")), 0);
+        assertSame(loaded[0], cache.get());
+    }
+
+    /**
+     * 能查询和切换当前地图的机器人，标记点列表由测试put
+     */
+    private static CannedClient mapClient() {
+        return new CannedClient().put("/api/map/get_current_map", CURRENT_MAP).put("/api/map/set_current_map", SET_MAP);
+    }
+
+    /**
+     * set_current_map等ack放行后才切换标记点；listGate、mapGate不为null时query_list、get_current_map先取好响应再等它放行
+     */
+    private static class SwitchingClient extends CannedClient {
+
+        private final CountDownLatch setSent = new CountDownLatch(1);
+        private final CountDownLatch ack = new CountDownLatch(1);
+        private final CountDownLatch listing = new CountDownLatch(1);
+        private volatile CountDownLatch listGate;
+        private final CountDownLatch querying = new CountDownLatch(1);
+        private volatile CountDownLatch mapGate;
+
+        SwitchingClient() {
+            put("/api/map/get_current_map", CURRENT_MAP);
+            put("/api/map/set_current_map", SET_MAP);
+            put("/api/markers/query_list", markerList(4.0));
+        }
+
+        @Override
+        protected String respond(Request req) {
+            if ("/api/map/set_current_map".equals(req.getMessageType())) {
+                setSent.countDown();
+                await(ack);
+                put("/api/markers/query_list", markerList(6.0));
+                return super.respond(req);
+            }
+            String response = super.respond(req);
+            CountDownLatch gate = listGate;
+            if (gate != null && "/api/markers/query_list".equals(req.getMessageType())) {
+                listing.countDown();
+                await(gate);
+            }
+            gate = mapGate;
+            if (gate != null && "/api/map/get_current_map".equals(req.getMessageType())) {
+                querying.countDown();
+                await(gate);
+            }
+            return response;
+        }
+
+        private static void await(CountDownLatch latch) {
+            try {
+                if (!latch.await(5, TimeUnit.SECONDS)) {
+                    throw new RuntimeException("latch timeout");
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
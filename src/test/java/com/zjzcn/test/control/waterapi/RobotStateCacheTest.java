@@ -0,0 +1,79 @@
+package com.zjzcn.test.control.waterapi;
+
+import com.zjzcn.test.control.transport.JsonFrame;
+import com.zjzcn.test.control.transport.PushDispatcher;
+import com.zjzcn.test.control.transport.PushListener;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RobotStateCacheTest {
+
+    private static final String STATUS_PUSH = "{\"type\":\"callback\",\"command\":\"/api/request_data\",\"topic\":\"robot_status\","
+            + "\"results\":{\"move_target\":\"test1\",\"move_status\":\"running\",\"current_pose\":{\"x\":1.5,\"y\":-2.0,\"theta\":0.25},"
+            + "\"current_floor\":2}}";
+
+    private static JsonFrame frame(String json) {
+        return JsonFrame.wrap(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPushUpdatesCache() {
+        PushDispatcher dispatcher = new PushDispatcher();
+        WaterApi waterApi = new WaterApi(null, dispatcher);
+        RobotStateCache cache = waterApi.getRobotStateCache();
+        assertNull(cache.get());
+
+        JsonFrame push = frame(STATUS_PUSH);
+        assertEquals(RobotStateCache.TOPIC_ROBOT_STATUS, push.getTopic());
+        dispatcher.dispatch(push);
+
+        RobotState state = cache.getIfFresh(1000);
+        assertEquals("running", state.getMoveStatus());
+        assertEquals("test1", state.getMoveTarget());
+        assertEquals(1.5, state.getX(), 0);
+        assertEquals(-2.0, state.getY(), 0);
+        assertEquals(0.25, state.getTheta(), 0);
+        assertEquals(2, state.getCurrentFloor());
+        assertSame(state, cache.get());
+        assertEquals(1, cache.getPushCount());
+        assertEquals(1, dispatcher.getDispatchedCount());
+    }
+
+    @Test
+    public void testDispatchByTopicAndType() {
+        PushDispatcher dispatcher = new PushDispatcher();
+        final List<String> received = new ArrayList<>();
+        PushListener listener = new PushListener() {
+            @Override
+            public void onPush(String topic, JsonFrame frame) {
+                received.add(topic);
+            }
+        };
+        dispatcher.subscribe(JsonFrame.TYPE_NOTIFICATION, listener);
+        dispatcher.subscribe(JsonFrame.TYPE_NOTIFICATION, new PushListener() {
+            @Override
+            public void onPush(String topic, JsonFrame frame) {
+                throw new RuntimeException("listener error");
+            }
+        });
+
+        dispatcher.dispatch(frame("{\"type\":\"notification\",\"code\":\"01002\"}"));
+        dispatcher.dispatch(frame(STATUS_PUSH));
+        assertEquals(1, received.size());
+        assertEquals(JsonFrame.TYPE_NOTIFICATION, received.get(0));
+        assertEquals(1, dispatcher.getDroppedCount());
+
+        assertTrue(dispatcher.unsubscribe(JsonFrame.TYPE_NOTIFICATION, listener));
+        dispatcher.dispatch(frame("{\"type\":\"notification\",\"code\":\"01003\"}"));
+        assertEquals(1, received.size());
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.zjzcn.test.control.waterapi;
+
+import com.zjzcn.test.control.transport.CannedClient;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WaterApiTest {
+
+    private static final String ROBOT_STATUS = "{\"type\":\"response\",\"command\":\"/api/robot_status\",\"uuid\":1,\"status\":\"OK\","
+            + "\"error_message\":\"\",\"results\":{\"move_target\":\"test1\",\"move_status\":\"succeeded\",\"running_status\":\"idle\","
+            + "\"move_retry_times\":0,\"charge_state\":false,\"soft_estop_state\":false,\"hard_estop_state\":false,\"estop_state\":false,"
+            + "\"power_percent\":87,\"current_pose\":{\"x\":1.5,\"y\":-2.25,\"theta\":0.75},\"current_floor\":3,\"error_code\":\"00000000\"}}";
+
+    private static final String MARKER_LIST = "{\"type\":\"response\",\"command\":\"/api/markers/query_list\",\"uuid\":2,\"status\":\"OK\","
+            + "\"error_message\":\"\",\"results\":{\"test1\":{\"floor\":3,\"key\":0,\"marker_name\":\"test1\",\"pose\":{"
+            + "\"orientation\":{\"w\":0.7,\"x\":0,\"y\":0,\"z\":0.7},\"position\":{\"x\":4.0,\"y\":5.0,\"z\":0}}}}}";
+
+    private static final String MAP_LIST = "{\"type\":\"response\",\"command\":\"/api/map/list\",\"uuid\":3,\"status\":\"OK\","
+            + "\"error_message\":\"\",\"results\":{\"hotel\":[1,3]}}";
+
+    @Test
+    public void testTypedResults() {
+        WaterApi waterApi = new WaterApi(new CannedClient().put("/api/robot_status", ROBOT_STATUS)
+                .put("/api/markers/query_list", MARKER_LIST).put("/api/map/list", MAP_LIST));
+
+        RobotStatus status = waterApi.queryRobotStatus();
+        assertEquals("succeeded", status.getMoveStatus());
+        assertEquals("test1", status.getMoveTarget());
+        assertEquals(87, status.getPowerPercent());
+        assertEquals(3, status.getCurrentFloor());
+        assertFalse(status.isChargeState());
+        assertEquals(1.5, status.getCurrentPose().getX(), 0);
+        assertEquals(-2.25, status.getCurrentPose().getY(), 0);
+        assertEquals(0.75, status.getCurrentPose().getTheta(), 0);
+
+        MarkerList markers = waterApi.queryMarkerList();
+        assertEquals(1, markers.size());
+        Marker marker = markers.getMarker("test1");
+        assertEquals(3, marker.getFloor());
+        assertEquals(4.0, marker.getPose().getPosition().getX(), 0);
+        assertEquals(0.7, marker.getPose().getOrientation().getW(), 0);
+        assertFalse(markers.contains("test2"));
+
+        MapList maps = waterApi.queryMapList();
+        assertEquals(Arrays.asList(1, 3), maps.getFloors("hotel"));
+        assertEquals(Arrays.asList("hotel,1", "hotel,3"), maps.toMapFloorList());
+        assertTrue(maps.getFloors("none").isEmpty());
+
+        assertEquals(ROBOT_STATUS, waterApi.robotStatus());
+    }
+}
@@ -0,0 +1,138 @@
+package com.zjzcn.test.transport;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void testFailFastRejectsWhenFull() {
+        AdmissionController admission = new AdmissionController(2);
+        admission.acquire();
+        admission.acquire();
+        try {
+            admission.acquire();
+            fail("should be rejected");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        assertTrue(admission.acquireAsync().isCompletedExceptionally());
+        admission.release();
+        admission.acquire();
+        assertEquals(2, admission.getInFlight());
+        assertEquals(3, admission.getStats().getAdmittedCount());
+        assertEquals(2, admission.getStats().getRejectedCount());
+    }
+
+    @Test
+    public void testBlockWaitsForRelease() throws Exception {
+        final AdmissionController admission = new AdmissionController(1, AdmissionController.Policy.BLOCK, 5000);
+        admission.acquire();
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sleep(50);
+                admission.release();
+            }
+        });
+        releaser.start();
+        admission.acquire();
+        releaser.join();
+        assertEquals(1, admission.getInFlight());
+        assertEquals(0, admission.getWaiting());
+        assertEquals(1, admission.getStats().getWaitedCount());
+        assertTrue(admission.getStats().getWaitTime().getMaxMicros() >= 10000);
+    }
+
+    @Test
+    public void testBlockTimesOut() {
+        AdmissionController admission = new AdmissionController(1, AdmissionController.Policy.BLOCK, 30);
+        admission.acquire();
+        long start = System.nanoTime();
+        try {
+            admission.acquire();
+            fail("should be rejected");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(1, admission.getStats().getRejectedCount());
+        assertEquals(0, admission.getWaiting());
+    }
+
+    @Test
+    public void testAsyncAdmitsInOrder() {
+        AdmissionController admission = new AdmissionController(1, AdmissionController.Policy.ASYNC, 5000);
+        assertTrue(admission.acquireAsync().isDone());
+        CompletableFuture<Void> first = admission.acquireAsync();
+        CompletableFuture<Void> second = admission.acquireAsync();
+        assertFalse(first.isDone());
+        assertEquals(2, admission.getWaiting());
+        // 有等待者时不能插队
+        assertFalse(admission.tryAcquire());
+
+        admission.release();
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        admission.release();
+        assertTrue(second.isDone());
+        assertEquals(1, admission.getInFlight());
+        assertEquals(2, admission.getStats().getWaitedCount());
+    }
+
+    @Test
+    public void testAsyncExpires() throws Exception {
+        AdmissionController admission = new AdmissionController(1, AdmissionController.Policy.ASYNC, 30);
+        admission.acquire();
+        CompletableFuture<Void> waiting = admission.acquireAsync();
+        try {
+            waiting.get(5, TimeUnit.SECONDS);
+            fail("should be rejected");
+        } catch (ExecutionException e) {
+            // expected
+        }
+        assertEquals(0, admission.getWaiting());
+        assertEquals(1, admission.getStats().getRejectedCount());
+        admission.release();
+        assertEquals(0, admission.getInFlight());
+    }
+
+    @Test
+    public void testWaitsUntilWritable() {
+        AdmissionController admission = new AdmissionController(10, AdmissionController.Policy.ASYNC, 5000);
+        admission.setWritable(false);
+        assertFalse(admission.tryAcquire());
+        CompletableFuture<Void> waiting = admission.acquireAsync();
+        assertFalse(waiting.isDone());
+        admission.setWritable(true);
+        assertTrue(waiting.isDone());
+        assertEquals(1, admission.getInFlight());
+    }
+
+    @Test
+    public void testCancelledWaiterReturnsPermit() {
+        AdmissionController admission = new AdmissionController(1, AdmissionController.Policy.ASYNC, 5000);
+        admission.acquire();
+        CompletableFuture<Void> waiting = admission.acquireAsync();
+        waiting.cancel(false);
+        admission.release();
+        assertEquals(0, admission.getInFlight());
+        assertTrue(admission.tryAcquire());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.zjzcn.test.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class AsciiRequestWriterTest {
+
+    /**
+     * 原来NettyEncoder的拼接方式
+     */
+    private static String legacy(String command, Map<String, Object> params, long requestId) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(command).append("?");
+        if (params != null) {
+            for (String key : params.keySet()) {
+                sb.append(key).append("=").append(params.get(key)).append("&");
+            }
+        }
+        sb.append("uuid=").append(requestId);
+        return sb.toString();
+    }
+
+    private static String write(AsciiRequestWriter writer, String command, Map<String, Object> params, long requestId) {
+        ByteBuf out = Unpooled.buffer(4);
+        try {
+            writer.write(out, command, params, requestId);
+            return out.toString(StandardCharsets.UTF_8);
+        } finally {
+            out.release();
+        }
+    }
+
+    @Test
+    public void testMatchesLegacyFormat() {
+        AsciiRequestWriter writer = new AsciiRequestWriter("/api/move");
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("marker", "大堂1");
+        params.put("int", -42);
+        params.put("long", Long.MAX_VALUE);
+        params.put("short", (short) 7);
+        params.put("double", 0.0001);
+        params.put("float", 1.5f);
+        params.put("flag", true);
+        params.put("missing", null);
+
+        long[] ids = {0, 1, 9, 10, 1234567890123L, -5, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (long id : ids) {
+            assertEquals(legacy("/api/move", params, id), write(writer, "/api/move", params, id));
+        }
+        assertEquals(legacy("/api/robot_status", null, 3), write(writer, "/api/robot_status", null, 3));
+        assertEquals(legacy(null, new LinkedHashMap<String, Object>(), 3), write(writer, null, new LinkedHashMap<String, Object>(), 3));
+    }
+
+    @Test
+    public void testUnknownCommandsAreCachedUpToLimit() {
+        AsciiRequestWriter writer = new AsciiRequestWriter("/api/move");
+        assertEquals(1, writer.getCachedCommandCount());
+        write(writer, "/api/robot_status", null, 1);
+        write(writer, "/api/robot_status", null, 2);
+        assertEquals(2, writer.getCachedCommandCount());
+
+        for (int i = 0; i < AsciiRequestWriter.MAX_CACHED_COMMANDS * 2; i++) {
+            assertEquals("/api/cmd" + i + "?uuid=" + i, write(writer, "/api/cmd" + i, null, i));
+        }
+        assertEquals(AsciiRequestWriter.MAX_CACHED_COMMANDS, writer.getCachedCommandCount());
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.zjzcn.test.transport;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CallbackManagerTest {
+
+    private static ResponseFuture newFuture(long requestId, int timeoutMillis) {
+        Request request = new Request();
+        request.setRequestId(requestId);
+        return new ResponseFuture(request, timeoutMillis);
+    }
+
+    @Test
+    public void testTimeoutExpiresCallback() throws Exception {
+        CallbackManager callbackManager = new CallbackManager();
+        ResponseFuture future = newFuture(1L, 50);
+        callbackManager.registerCallback(1L, future);
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!future.isCancelled() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(future.isCancelled());
+        assertNull(callbackManager.removeCallback(1L));
+    }
+
+    @Test
+    public void testFailAll() {
+        CallbackManager callbackManager = new CallbackManager();
+        ResponseFuture first = newFuture(3L, 10000);
+        ResponseFuture second = newFuture(4L, 10000);
+        callbackManager.registerCallback(3L, first);
+        callbackManager.registerCallback(4L, second);
+
+        RuntimeException cause = new RuntimeException("channel inactive");
+        assertEquals(2, callbackManager.failAll(cause));
+        assertTrue(first.isDone());
+        assertFalse(first.isSuccess());
+        assertSame(cause, second.getException());
+        assertNull(callbackManager.removeCallback(3L));
+    }
+
+    @Test
+    public void testCompletedFutureIsNotExpired() throws Exception {
+        CallbackManager callbackManager = new CallbackManager();
+        ResponseFuture future = newFuture(2L, 50);
+        callbackManager.registerCallback(2L, future);
+
+        assertSame(future, callbackManager.removeCallback(2L));
+        Response response = new Response();
+        response.setData("ok");
+        future.onSuccess(response);
+
+        Thread.sleep(150);
+        assertTrue(future.isSuccess());
+        assertFalse(future.isCancelled());
+    }
+}
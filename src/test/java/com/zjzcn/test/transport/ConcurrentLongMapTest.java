@@ -0,0 +1,77 @@
+package com.zjzcn.test.transport;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentLongMapTest {
+
+    @Test
+    public void testBasic() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1L, "a"));
+        assertEquals("a", map.put(1L, "b"));
+        assertEquals("b", map.get(1L));
+        assertEquals(1, map.size());
+        assertEquals("b", map.remove(1L));
+        assertNull(map.remove(1L));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testDrain() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        long sum = 0;
+        for (long i = 1; i <= 1000; i++) {
+            map.put(i, i);
+            sum += i;
+        }
+        List<Long> drained = map.drain();
+        assertEquals(1000, drained.size());
+        long drainedSum = 0;
+        for (Long value : drained) {
+            drainedSum += value;
+        }
+        assertEquals(sum, drainedSum);
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroKeyRejected() {
+        new ConcurrentLongMap<String>().put(0L, "a");
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap() {
+        // 小容量 + 小key空间，覆盖扩容和删除后的探测链前移
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(2, 4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(123456);
+        for (int i = 0; i < 200000; i++) {
+            long key = 1 + random.nextInt(2000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), map.get(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.zjzcn.test.transport;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsAreContiguous() {
+        for (int i = 1; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long lower = LatencyHistogram.bucketUpperBound(i - 1) + 1;
+            assertEquals("bucket " + i, i, LatencyHistogram.bucketIndex(lower));
+            assertEquals("bucket " + i, i, LatencyHistogram.bucketIndex(LatencyHistogram.bucketUpperBound(i)));
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1000, snapshot.getMaxMicros());
+        assertEquals(500.5, snapshot.getMeanMicros(), 0.001);
+        assertWithin(500, snapshot.getPercentileMicros(50));
+        assertWithin(990, snapshot.getPercentileMicros(99));
+        assertEquals(1000, snapshot.getPercentileMicros(100));
+    }
+
+    @Test
+    public void testClientMetricsSnapshot() {
+        ClientMetrics metrics = new ClientMetrics();
+        metrics.record("/api/move", 2000000, ClientMetrics.Outcome.SUCCESS);
+        metrics.record("/api/move", 3000000, ClientMetrics.Outcome.ERROR);
+        metrics.record("/api/move", 5000000000L, ClientMetrics.Outcome.TIMEOUT);
+        metrics.record(null, 1000, ClientMetrics.Outcome.SUCCESS);
+        metrics.recordDisconnect();
+        metrics.recordReconnect();
+
+        ClientMetrics.Snapshot snapshot = metrics.snapshot(3, 128);
+        assertEquals(3, snapshot.getInFlight());
+        assertEquals(128, snapshot.getPendingWriteBytes());
+        assertEquals(1, snapshot.getReconnectCount());
+        assertEquals(1, snapshot.getDisconnectCount());
+
+        ClientMetrics.CommandSnapshot move = snapshot.getCommands().get("/api/move");
+        assertEquals(3, move.getRequests());
+        assertEquals(1, move.getErrors());
+        assertEquals(1, move.getTimeouts());
+        assertEquals(2, move.getLatency().getCount());
+        assertEquals(3000, move.getLatency().getMaxMicros());
+        assertEquals(1, snapshot.getCommands().get("unknown").getRequests());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        // 桶的相对误差不超过12.5%，且百分位取上界
+        assertTrue("expected~" + expected + ", actual=" + actual, actual >= expected && actual <= expected * 1.125);
+    }
+}
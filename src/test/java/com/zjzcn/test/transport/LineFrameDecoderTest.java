@@ -0,0 +1,75 @@
+package com.zjzcn.test.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class LineFrameDecoderTest {
+
+    private static ByteBuf bytes(String s) {
+        return Unpooled.copiedBuffer(s, StandardCharsets.UTF_8);
+    }
+
+    private static String readLine(EmbeddedChannel channel) {
+        ByteBuf frame = channel.readInbound();
+        if (frame == null) {
+            return null;
+        }
+        try {
+            return frame.toString(StandardCharsets.UTF_8);
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    public void testSplitsLinesAndStripsCr() {
+        EmbeddedChannel channel = new EmbeddedChannel(new LineFrameDecoder());
+        channel.writeInbound(bytes("{\"a\":1}\n{\"b\":2}\r\n\n{\"c\""));
+        assertEquals("{\"a\":1}", readLine(channel));
+        assertEquals("{\"b\":2}", readLine(channel));
+        assertNull(readLine(channel));
+
+        channel.writeInbound(bytes(":3}\n"));
+        assertEquals("{\"c\":3}", readLine(channel));
+        assertEquals(false, channel.finish());
+    }
+
+    @Test
+    public void testLargeLineInManyChunks() {
+        EmbeddedChannel channel = new EmbeddedChannel(new LineFrameDecoder());
+        StringBuilder line = new StringBuilder("{\"data\":\"");
+        channel.writeInbound(bytes(line.toString()));
+        for (int i = 0; i < 1000; i++) {
+            channel.writeInbound(bytes("xxxxxxxxxx"));
+            line.append("xxxxxxxxxx");
+            assertNull(readLine(channel));
+        }
+        line.append("\"}");
+        channel.writeInbound(bytes("\"}\n{\"next\""));
+        assertEquals(line.toString(), readLine(channel));
+        assertNull(readLine(channel));
+    }
+
+    @Test
+    public void testTooLongFrameIsDiscardedUntilNextLine() {
+        EmbeddedChannel channel = new EmbeddedChannel(new LineFrameDecoder(8));
+        try {
+            channel.writeInbound(bytes("0123456789"));
+            channel.writeInbound(bytes("abc\nok\n"));
+            fail("should throw TooLongFrameException");
+        } catch (TooLongFrameException e) {
+            // expected
+        }
+        channel.writeInbound(Unpooled.EMPTY_BUFFER);
+        assertEquals("ok", readLine(channel));
+    }
+}
@@ -0,0 +1,31 @@
+package com.zjzcn.test.transport;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReconnectBackoffTest {
+
+    @Test
+    public void testDelayGrowsAndIsCapped() {
+        ReconnectBackoff backoff = new ReconnectBackoff(100, 1000);
+        long[] ceilings = {100, 200, 400, 800, 1000, 1000};
+        for (long ceiling : ceilings) {
+            long delay = backoff.nextDelayMillis();
+            assertTrue("delay=" + delay + ", ceiling=" + ceiling, delay >= ceiling / 2 && delay <= ceiling);
+        }
+        assertEquals(ceilings.length, backoff.getAttempts());
+    }
+
+    @Test
+    public void testReset() {
+        ReconnectBackoff backoff = new ReconnectBackoff(100, 1000);
+        for (int i = 0; i < 40; i++) {
+            backoff.nextDelayMillis();
+        }
+        assertTrue(backoff.nextDelayMillis() >= 500);
+        backoff.reset();
+        assertTrue(backoff.nextDelayMillis() <= 100);
+    }
+}
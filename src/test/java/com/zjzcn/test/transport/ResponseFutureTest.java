@@ -0,0 +1,137 @@
+package com.zjzcn.test.transport;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResponseFutureTest {
+
+    @Test
+    public void testListenersNotifiedInOrder() {
+        ResponseFuture future = new ResponseFuture(newRequest(), 1000);
+        final List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final int index = i;
+            future.addListener(new FutureListener() {
+                @Override
+                public void onComplete(Future future) {
+                    order.add(index);
+                }
+            });
+        }
+        future.onSuccess(newResponse("ok"));
+        assertEquals("[0, 1, 2]", order.toString());
+
+        // 完成后注册的listener立即通知
+        future.addListener(new FutureListener() {
+            @Override
+            public void onComplete(Future future) {
+                order.add(3);
+            }
+        });
+        assertEquals(4, order.size());
+        assertEquals("ok", future.get());
+    }
+
+    @Test
+    public void testFirstCompletionWins() {
+        ResponseFuture future = new ResponseFuture(newRequest(), 1000);
+        future.onSuccess(newResponse("ok"));
+        future.onFailure(new RuntimeException("late"));
+        assertFalse(future.cancel());
+        assertTrue(future.isSuccess());
+        assertEquals(FutureState.DONE, future.getState());
+        assertEquals("ok", future.get());
+    }
+
+    @Test
+    public void testGetTimesOutWithStacklessException() {
+        ResponseFuture future = new ResponseFuture(newRequest(), 20);
+        try {
+            future.get();
+            fail("should time out");
+        } catch (RequestCancelledException e) {
+            assertTrue(e.isTimeout());
+            assertEquals(0, e.getStackTrace().length);
+            assertTrue(e.getMessage().contains("requestId="));
+        }
+        assertTrue(future.isCancelled());
+        assertEquals(FutureState.CANCELLED, future.getState());
+    }
+
+    @Test
+    public void testGetWakesOnCompletion() throws Exception {
+        final ResponseFuture future = new ResponseFuture(newRequest(), 5000);
+        Thread completer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                future.onSuccess(newResponse("ok"));
+            }
+        });
+        completer.start();
+        assertEquals("ok", future.get());
+        completer.join();
+    }
+
+    @Test
+    public void testConcurrentCompletionNotifiesOnce() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            final ResponseFuture future = new ResponseFuture(newRequest(), 1000);
+            final AtomicInteger notified = new AtomicInteger();
+            future.addListener(new FutureListener() {
+                @Override
+                public void onComplete(Future future) {
+                    notified.incrementAndGet();
+                }
+            });
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread canceller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    await(start);
+                    future.cancel();
+                }
+            });
+            canceller.start();
+            start.countDown();
+            future.onSuccess(newResponse("ok"));
+            canceller.join();
+
+            assertEquals(1, notified.get());
+            assertTrue(future.isDone() != future.isCancelled());
+        }
+    }
+
+    private static Request newRequest() {
+        Request request = new Request();
+        request.setRequestId(RequestId.newId());
+        return request;
+    }
+
+    private static Response newResponse(Object data) {
+        Response response = new Response();
+        response.setData(data);
+        return response;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
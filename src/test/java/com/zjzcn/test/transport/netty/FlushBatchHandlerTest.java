@@ -0,0 +1,90 @@
+package com.zjzcn.test.transport.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class FlushBatchHandlerTest {
+
+	@Test
+	public void testFlushWhenMessageBudgetReached() {
+		FlushBatchConfig config = new FlushBatchConfig();
+		config.setMaxMessages(3);
+		config.setWindowMicros(1000000);
+		FlushBatchStats stats = new FlushBatchStats();
+		final AtomicInteger flushes = new AtomicInteger();
+		EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+			@Override
+			public void flush(ChannelHandlerContext ctx) throws Exception {
+				flushes.incrementAndGet();
+				ctx.flush();
+			}
+		}, new FlushBatchHandler(config, stats));
+		int baseline = flushes.get();
+
+		channel.write(buf(10));
+		channel.write(buf(10));
+		assertEquals(baseline, flushes.get());
+		channel.write(buf(10));
+		assertEquals(baseline + 1, flushes.get());
+
+		assertEquals(1, stats.getFlushCount());
+		assertEquals(3, stats.getMessageCount());
+		assertEquals(30, stats.getByteCount());
+		assertEquals(3, stats.getMaxBatchSize());
+		releaseOutbound(channel, 3);
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void testFlushWhenByteBudgetReached() {
+		FlushBatchConfig config = new FlushBatchConfig();
+		config.setMaxBytes(100);
+		config.setWindowMicros(1000000);
+		FlushBatchStats stats = new FlushBatchStats();
+		EmbeddedChannel channel = new EmbeddedChannel(new FlushBatchHandler(config, stats));
+
+		channel.write(buf(60));
+		assertEquals(0, stats.getFlushCount());
+		channel.write(buf(60));
+		assertEquals(1, stats.getFlushCount());
+		assertEquals(120, stats.getByteCount());
+		releaseOutbound(channel, 2);
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void testFlushAfterPendingTasks() {
+		FlushBatchConfig config = new FlushBatchConfig();
+		FlushBatchStats stats = new FlushBatchStats();
+		EmbeddedChannel channel = new EmbeddedChannel(new FlushBatchHandler(config, stats));
+
+		// EmbeddedChannel每次写都会执行排队的任务，这里只写一次
+		channel.write(buf(8));
+		assertEquals(0, stats.getFlushCount());
+		channel.runPendingTasks();
+		assertEquals(1, stats.getFlushCount());
+		assertEquals(1, stats.getMessageCount());
+		releaseOutbound(channel, 1);
+		channel.finishAndReleaseAll();
+	}
+
+	private static ByteBuf buf(int size) {
+		return Unpooled.buffer(size).writeZero(size);
+	}
+
+	private static void releaseOutbound(EmbeddedChannel channel, int expected) {
+		for (int i = 0; i < expected; i++) {
+			ByteBuf out = channel.readOutbound();
+			assertEquals(true, out != null);
+			out.release();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.zjzcn.test.transport.netty;
+
+import com.zjzcn.test.transport.Decoder;
+import com.zjzcn.test.transport.Encoder;
+import com.zjzcn.test.transport.Message;
+import com.zjzcn.test.transport.Request;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class NettyFrameCodecTest {
+
+    private static final Encoder ENCODER = new Encoder() {
+        @Override
+        public byte[] encode(Message msg) {
+            return ((String) msg.getData()).getBytes(StandardCharsets.UTF_8);
+        }
+    };
+
+    private static final Decoder DECODER = new Decoder() {
+        @Override
+        public Message decode(byte[] data) {
+            Request request = new Request();
+            request.setData(new String(data, StandardCharsets.UTF_8));
+            return request;
+        }
+    };
+
+    private static ByteBuf encode(long requestId, String data) {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyFrameEncoder(ENCODER));
+        Request request = new Request();
+        request.setRequestId(requestId);
+        request.setData(data);
+        channel.writeOutbound(request);
+        return channel.readOutbound();
+    }
+
+    @Test
+    public void testHeartbeatFrame() {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new NettyFrameEncoder(ENCODER));
+        encoderChannel.writeOutbound(Heartbeat.REQUEST);
+        ByteBuf frame = encoderChannel.readOutbound();
+        assertEquals(16, frame.readableBytes());
+
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyFrameDecoder(DECODER));
+        channel.writeInbound(frame);
+        assertSame(Heartbeat.REQUEST, channel.readInbound());
+    }
+
+    @Test
+    public void testFragmentedFrame() {
+        ByteBuf frame = encode(42L, "hello");
+        assertEquals(16 + 5, frame.readableBytes());
+
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyFrameDecoder(DECODER));
+        channel.writeInbound(frame.readRetainedSlice(7));
+        assertNull(channel.readInbound());
+        channel.writeInbound(frame.readRetainedSlice(10));
+        assertNull(channel.readInbound());
+        channel.writeInbound(frame);
+
+        Message msg = channel.readInbound();
+        assertEquals(42L, msg.getRequestId());
+        assertEquals("hello", msg.getData());
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    public void testCoalescedFrames() {
+        ByteBuf frames = Unpooled.wrappedBuffer(encode(1L, "a"), encode(2L, ""), encode(3L, "ccc"));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyFrameDecoder(DECODER));
+        channel.writeInbound(frames);
+
+        assertEquals("a", ((Message) channel.readInbound()).getData());
+        assertEquals("", ((Message) channel.readInbound()).getData());
+        Message third = channel.readInbound();
+        assertEquals(3L, third.getRequestId());
+        assertEquals("ccc", third.getData());
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    public void testInvalidMagic() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyFrameDecoder(DECODER));
+        try {
+            channel.writeInbound(Unpooled.wrappedBuffer(new byte[16]));
+            fail("invalid magic accepted");
+        } catch (DecoderException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.zjzcn.test.transport.netty;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestDispatcherTest {
+
+	@Test
+	public void testOrderedKeepsPerChannelOrder() throws Exception {
+		RequestDispatcher dispatcher = new RequestDispatcher(RequestDispatcher.Mode.ORDERED, 4, 10000);
+		EmbeddedChannel first = new EmbeddedChannel();
+		EmbeddedChannel second = new EmbeddedChannel();
+		final List<Integer> firstSeen = new CopyOnWriteArrayList<>();
+		final List<Integer> secondSeen = new CopyOnWriteArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(2000);
+
+		for (int i = 0; i < 1000; i++) {
+			final int seq = i;
+			assertTrue(dispatcher.dispatch(first, new Runnable() {
+				@Override
+				public void run() {
+					firstSeen.add(seq);
+					latch.countDown();
+				}
+			}));
+			assertTrue(dispatcher.dispatch(second, new Runnable() {
+				@Override
+				public void run() {
+					secondSeen.add(seq);
+					latch.countDown();
+				}
+			}));
+		}
+
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, (int) firstSeen.get(i));
+			assertEquals(i, (int) secondSeen.get(i));
+		}
+		dispatcher.shutdown();
+	}
+
+	@Test
+	public void testRejectWhenPendingFull() throws Exception {
+		RequestDispatcher dispatcher = new RequestDispatcher(RequestDispatcher.Mode.POOLED, 1, 2);
+		EmbeddedChannel channel = new EmbeddedChannel();
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(2);
+		Runnable blocking = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				done.countDown();
+			}
+		};
+
+		assertTrue(dispatcher.dispatch(channel, blocking));
+		assertTrue(dispatcher.dispatch(channel, blocking));
+		assertFalse(dispatcher.dispatch(channel, blocking));
+		assertEquals(1, dispatcher.getStats().getRejectedCount());
+
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		long deadline = System.currentTimeMillis() + 2000;
+		while (dispatcher.getStats().getPending() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(0, dispatcher.getStats().getPending());
+		assertEquals(2, dispatcher.getStats().getDispatchedCount());
+		dispatcher.shutdown();
+	}
+
+	@Test
+	public void testInlineRunsOnCaller() {
+		RequestDispatcher dispatcher = new RequestDispatcher(RequestDispatcher.Mode.INLINE, 0, 0);
+		final Thread caller = Thread.currentThread();
+		final boolean[] ran = new boolean[1];
+		assertTrue(dispatcher.dispatch(new EmbeddedChannel(), new Runnable() {
+			@Override
+			public void run() {
+				ran[0] = Thread.currentThread() == caller;
+			}
+		}));
+		assertTrue(ran[0]);
+		assertEquals(1, dispatcher.getStats().getDispatchedCount());
+	}
+}
@@ -0,0 +1,137 @@
+package com.zjzcn.test.transport.netty;
+
+import com.zjzcn.test.transport.Decoder;
+import com.zjzcn.test.transport.Encoder;
+import com.zjzcn.test.transport.Message;
+import com.zjzcn.test.transport.MessageHandler;
+import com.zjzcn.test.transport.Request;
+import com.zjzcn.test.transport.RequestTimer;
+import com.zjzcn.test.transport.Response;
+import io.netty.channel.EventLoopGroup;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransportResourcesTest {
+
+    private static final Encoder ENCODER = new Encoder() {
+        @Override
+        public byte[] encode(Message msg) {
+            return String.valueOf(msg.getData()).getBytes(StandardCharsets.UTF_8);
+        }
+    };
+
+    private static final Decoder DECODER = new Decoder() {
+        @Override
+        public Message decode(byte[] data) {
+            Response response = new Response();
+            response.setData(new String(data, StandardCharsets.UTF_8));
+            return response;
+        }
+    };
+
+    @Test
+    public void testReferenceCounted() {
+        NettyConfig config = new NettyConfig();
+        TransportResources first = TransportResources.acquire(config);
+        TransportResources second = TransportResources.acquire(config);
+        assertSame(first, second);
+        assertEquals(2, first.refCnt());
+        assertSame(RequestTimer.getTimer(), first.getTimer());
+        assertSame(NettyTransport.allocator(config), first.getAllocator(config));
+
+        EventLoopGroup group = first.getEventLoopGroup();
+        first.release();
+        assertFalse(group.isShuttingDown());
+        second.release();
+        assertTrue(group.isShuttingDown());
+        try {
+            second.release();
+            fail("should throw IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        TransportResources next = TransportResources.acquire(config);
+        assertNotSame(first, next);
+        assertFalse(next.getEventLoopGroup().isShuttingDown());
+        next.release();
+    }
+
+    @Test
+    public void testClientsAndServerShareOneGroup() throws Exception {
+        NettyConfig config = new NettyConfig();
+        NettyServer server = new NettyServer(ENCODER, DECODER, new MessageHandler() {
+            @Override
+            public Response handleRequest(Request request) {
+                return null;
+            }
+
+            @Override
+            public void handleResponse(Response response) {
+            }
+        });
+        server.bind("127.0.0.1", 0);
+        int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+
+        NettyClient[] clients = new NettyClient[20];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = new NettyClient("127.0.0.1", port, ENCODER, DECODER, config);
+            clients[i].connect();
+        }
+        TransportResources resources = TransportResources.acquire(config);
+        assertEquals(clients.length + 2, resources.refCnt());
+        resources.release();
+
+        for (NettyClient client : clients) {
+            assertTrue(client.isConnected());
+            client.close();
+            client.close();
+        }
+        EventLoopGroup group = resources.getEventLoopGroup();
+        assertEquals(1, resources.refCnt());
+        server.close();
+        assertEquals(0, resources.refCnt());
+        assertTrue(group.isShuttingDown());
+    }
+
+    @Test
+    public void testServerCloseDisconnectsRemainingClients() throws Exception {
+        NettyConfig config = new NettyConfig();
+        NettyServer server = new NettyServer(ENCODER, DECODER, new MessageHandler() {
+            @Override
+            public Response handleRequest(Request request) {
+                return null;
+            }
+
+            @Override
+            public void handleResponse(Response response) {
+            }
+        });
+        server.bind("127.0.0.1", 0);
+        NettyClient client = new NettyClient("127.0.0.1", ((InetSocketAddress) server.getLocalAddress()).getPort(), ENCODER, DECODER, config);
+        try {
+            client.connect();
+            assertTrue(client.isConnected());
+
+            // 客户端还持有共享的EventLoopGroup，服务端关闭时要自己关掉已接受的连接
+            server.close();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (client.isConnected() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertFalse(client.isConnected());
+        } finally {
+            client.close();
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.zjzcn.test.transport.serialization;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class AttachmentsSerializerTest {
+
+	private static final AttachmentsSerializer SERIALIZER = new AttachmentsSerializer("marker", "map_name", "floor", "linear_velocity", "angular_velocity");
+
+	@Test
+	public void testRoundTrip() {
+		Map<String, Object> data = new HashMap<>();
+		data.put("marker", "大堂-电梯口");
+		data.put("floor", -3);
+		data.put("linear_velocity", 0.35);
+		data.put("angular_velocity", 1.5f);
+		data.put("uuid", Long.MIN_VALUE);
+		data.put("emoji", "😀");
+		data.put("charging", true);
+		data.put("map_name", null);
+
+		Map<String, Object> decoded = SERIALIZER.deserialize(SERIALIZER.serialize(data), null);
+		assertEquals(data, decoded);
+	}
+
+	@Test
+	public void testByteBufRoundTrip() {
+		Map<String, Object> data = new HashMap<>();
+		data.put("map_name", "hotel_1001");
+		data.put("floor", 12);
+
+		ByteBuf out = Unpooled.buffer();
+		out.writeByte(0x7F);
+		SERIALIZER.serialize(data, out);
+		out.writeByte(0x7F);
+
+		out.skipBytes(1);
+		assertEquals(data, SERIALIZER.deserialize(out, null));
+		assertEquals(0x7F, out.readByte());
+		// 2个条目，每个key只占1字节的序号
+		assertEquals(1 + (1 + 1 + 1 + 10) + (1 + 1 + 1), SERIALIZER.serialize(data).length);
+	}
+
+	@Test
+	public void testSelectByMessageType() {
+		SerializerFactory.register("/api/move", SERIALIZER);
+		try {
+			assertSame(SERIALIZER, SerializerFactory.create("/api/move"));
+			// 没有注册的类型key全部内联，仍然能编码任意attachments
+			Serializer<Map<String, Object>> fallback = SerializerFactory.create("/api/robot_status");
+			assertSame(fallback, SerializerFactory.create(null));
+			Map<String, Object> data = new HashMap<>();
+			data.put("marker", "m1");
+			assertEquals(data, fallback.deserialize(fallback.serialize(data), null));
+		} finally {
+			SerializerFactory.unregister("/api/move");
+		}
+		assertSame(SerializerFactory.create("/api/robot_status"), SerializerFactory.create("/api/move"));
+	}
+}
@@ -0,0 +1,119 @@
+package com.zjzcn.test.transport.serialization;
+
+import com.zjzcn.test.transport.MessageHandler;
+import com.zjzcn.test.transport.Request;
+import com.zjzcn.test.transport.RequestId;
+import com.zjzcn.test.transport.Response;
+import com.zjzcn.test.transport.netty.NettyClient;
+import com.zjzcn.test.transport.netty.NettyConfig;
+import com.zjzcn.test.transport.netty.NettyFrameDecoder;
+import com.zjzcn.test.transport.netty.NettyFrameEncoder;
+import com.zjzcn.test.transport.netty.NettyServer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MessageCodecTest {
+
+	private static Request newMoveRequest(long requestId) {
+		Request request = new Request();
+		request.setRequestId(requestId);
+		request.setMessageType("/api/move");
+		request.addAttachment("marker", "大堂-电梯口");
+		request.addAttachment("floor", 3);
+		request.setData("payload");
+		return request;
+	}
+
+	private static ByteBuf encode(Object msg) {
+		EmbeddedChannel channel = new EmbeddedChannel(new NettyFrameEncoder());
+		channel.writeOutbound(msg);
+		return channel.readOutbound();
+	}
+
+	@Test
+	public void testFramedRoundTrip() {
+		Request request = newMoveRequest(42);
+		EmbeddedChannel channel = new EmbeddedChannel(new NettyFrameDecoder());
+		channel.writeInbound(encode(request));
+		Request decoded = channel.readInbound();
+		assertEquals(42, decoded.getRequestId());
+		assertEquals("/api/move", decoded.getMessageType());
+		assertEquals(request.getAttachments(), decoded.getAttachments());
+		assertEquals("payload", decoded.getData());
+
+		Response response = new Response();
+		response.setRequestId(43);
+		response.setMessageType("/api/move");
+		response.setException(new IllegalStateException("marker not found"));
+		channel.writeInbound(encode(response));
+		Response decodedResponse = channel.readInbound();
+		assertEquals(43, decodedResponse.getRequestId());
+		assertEquals("marker not found", decodedResponse.getException().getMessage());
+		assertTrue(decodedResponse.getAttachments().isEmpty());
+		assertNull(decodedResponse.getData());
+	}
+
+	@Test
+	public void testRegisteredSchemaShrinksFrame() {
+		int inline = encode(newMoveRequest(1)).readableBytes();
+		AttachmentsSerializer schema = new AttachmentsSerializer("marker", "floor");
+		SerializerFactory.register("/api/move", schema);
+		try {
+			ByteBuf frame = encode(newMoveRequest(1));
+			// "marker"和"floor"从 0 + 长度 + 字符串 变成1字节的序号
+			assertEquals(inline - ("marker".length() + 1) - ("floor".length() + 1), frame.readableBytes());
+
+			EmbeddedChannel channel = new EmbeddedChannel(new NettyFrameDecoder());
+			channel.writeInbound(frame);
+			Request decoded = channel.readInbound();
+			assertEquals(newMoveRequest(1).getAttachments(), decoded.getAttachments());
+		} finally {
+			SerializerFactory.unregister("/api/move");
+		}
+	}
+
+	@Test
+	public void testLoopbackWithDefaultCodec() throws Exception {
+		NettyConfig config = new NettyConfig();
+		NettyServer server = new NettyServer(new MessageHandler() {
+			@Override
+			public Response handleRequest(Request request) {
+				Response response = new Response();
+				response.setRequestId(request.getRequestId());
+				Map<String, Object> attachments = new HashMap<>(request.getAttachments());
+				attachments.put("status", "OK");
+				response.setAttachments(attachments);
+				response.setMessageType(request.getMessageType());
+				response.setData(request.getData());
+				return response;
+			}
+
+			@Override
+			public void handleResponse(Response response) {
+			}
+		}, config);
+		server.bind("127.0.0.1", 0);
+		NettyClient client = new NettyClient("127.0.0.1", ((InetSocketAddress) server.getLocalAddress()).getPort(), config);
+		try {
+			client.connect();
+			Response response = client.sendAsync(newMoveRequest(RequestId.newId()), 5000).get(5, TimeUnit.SECONDS);
+			assertEquals("OK", response.getAttachments().get("status"));
+			assertEquals("大堂-电梯口", response.getAttachments().get("marker"));
+			assertEquals(3, response.getAttachments().get("floor"));
+			assertEquals("payload", response.getData());
+		} finally {
+			client.close();
+			server.close();
+		}
+	}
+}